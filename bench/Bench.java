@@ -0,0 +1,46 @@
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+// Mesure commune aux bancs d'essai de bench/ : échauffement, puis médiane du temps
+// et des octets alloués par opération sur plusieurs itérations
+public final class Bench {
+    private static final int WARMUP_ITERATIONS = 5;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static long sink; // empêche le JIT de supprimer le travail mesuré
+
+    public interface Operation {
+        long run() throws Exception;
+    }
+
+    private Bench() {
+    }
+
+    public static void run(String name, int iterations, int operations, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            measure(operations, operation);
+        }
+        double[] nanos = new double[iterations];
+        double[] bytes = new double[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long threadId = Thread.currentThread().getId();
+            long allocatedBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            measure(operations, operation);
+            nanos[i] = (System.nanoTime() - start) / (double) operations;
+            bytes[i] = (THREADS.getThreadAllocatedBytes(threadId) - allocatedBefore) / (double) operations;
+        }
+        Arrays.sort(nanos);
+        Arrays.sort(bytes);
+        System.out.printf("%-32s %8.1f ns/op (min %.1f)  %8.1f octets/op%n",
+                name, nanos[iterations / 2], nanos[0], bytes[iterations / 2]);
+    }
+
+    private static void measure(int operations, Operation operation) throws Exception {
+        for (int i = 0; i < operations; i++) {
+            sink += operation.run();
+        }
+    }
+}
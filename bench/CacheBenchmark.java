@@ -0,0 +1,81 @@
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Microbancs du chemin d'une requête servie par le cache (temps et octets alloués par opération) :
+// - analyse des paramètres (HttpRequestParser.parseQuery) ;
+// - clé + recherche d'une CacheEntry dans un cache de ENTRIES pages (comme usableEntry) ;
+// - nettoyage des entrées expirées : balayage complet du cache (ancien nettoyage périodique)
+//   contre un tick de la roue d'expiration (insertion d'une échéance + avance d'un tick).
+// CacheKeyBenchmark compare en plus l'ancienne clé en chaîne.
+// Lancement : java -cp out:bench CacheBenchmark [itérations de mesure]
+public class CacheBenchmark {
+    private static final int ENTRIES = 100_000;
+    private static final long TICK = 100;
+    // Échéances étalées pour qu'une entrée arrive et une expire à chaque tick : ENTRIES restent programmées
+    private static final int SPREAD = (int) (ENTRIES * TICK);
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        String query = "query=caf%C3%A9+cr%C3%A8me&page=12&sort=date&filtre=";
+        Map<String, String> params = new HashMap<>();
+        Bench.run("parseQuery", iterations, 200_000, () -> {
+            params.clear();
+            HttpRequestParser.parseQuery(query, params);
+            return params.size();
+        });
+
+        // Cache d'un utilisateur rempli de pages de 1 Ko
+        CacheMemory memory = new CacheMemory(CacheMemory.Mode.HEAP, Long.MAX_VALUE);
+        byte[] page = "<html>page</html>".repeat(60).getBytes(StandardCharsets.UTF_8);
+        ConcurrentHashMap<CacheKey, ServeurWeb.CacheEntry> cache = new ConcurrentHashMap<>();
+        Map<String, String> lookupParams = new HashMap<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            lookupParams.put("page", String.valueOf(i));
+            cache.put(CacheKey.of("GET", "/search.php", lookupParams), new ServeurWeb.CacheEntry(
+                    memory.store(page), "text/html", false, true, null, null, CachePolicy.HEURISTIC_TTL, false));
+        }
+        Random random = new Random(1);
+        Bench.run("clé + recherche CacheEntry", iterations, 200_000, () -> {
+            lookupParams.put("page", String.valueOf(random.nextInt(ENTRIES)));
+            ServeurWeb.CacheEntry entry = cache.get(CacheKey.of("GET", "/search.php", lookupParams));
+            if (entry == null || entry.isExpired() || !entry.retain()) {
+                return 0;
+            }
+            entry.release();
+            return entry.getCreationTime();
+        });
+
+        // Échéances réparties comme des pages insérées au fil de l'eau
+        long start = System.currentTimeMillis();
+        Map<Integer, Long> deadlines = new HashMap<>();
+        for (int i = 0; i < ENTRIES; i++) {
+            deadlines.put(i, start + random.nextInt(SPREAD));
+        }
+        long[] sweepTime = { start };
+        Bench.run("balayage complet (" + ENTRIES + ")", iterations, 20, () -> {
+            sweepTime[0] += TICK;
+            long now = sweepTime[0];
+            int expired = 0;
+            for (Map.Entry<Integer, Long> entry : deadlines.entrySet()) {
+                if (entry.getValue() <= now) {
+                    expired++;
+                }
+            }
+            return expired;
+        });
+
+        ExpirationWheel<Integer> wheel = new ExpirationWheel<>(TICK, start);
+        for (Map.Entry<Integer, Long> entry : deadlines.entrySet()) {
+            wheel.schedule(entry.getKey(), entry.getValue());
+        }
+        long[] wheelTime = { start };
+        int[] nextKey = { ENTRIES };
+        Bench.run("roue d'expiration (tick)", iterations, 20_000, () -> {
+            wheelTime[0] += TICK;
+            wheel.schedule(nextKey[0]++, wheelTime[0] + random.nextInt(SPREAD));
+            return wheel.advance(wheelTime[0]).size();
+        });
+    }
+}
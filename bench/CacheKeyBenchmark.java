@@ -0,0 +1,67 @@
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Mesure de la construction et de la recherche d'une clé de cache (temps et octets alloués par opération).
+// Compare l'ancienne clé (Stream + Collectors.joining, copie des paramètres, comparaison des Map)
+// avec CacheKey.of.
+// Lancement : java -cp out:bench CacheKeyBenchmark [itérations de mesure]
+public class CacheKeyBenchmark {
+    private static final int OPERATIONS = 200_000;
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("query", "test");
+        params.put("page", "1");
+        params.put("sort", "date");
+        String path = "/search.php";
+
+        // Caches pré-remplis comme le ferait le proxy
+        Map<String, LegacyEntry> legacyCache = new HashMap<>();
+        Map<CacheKey, Object> cache = new HashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            Map<String, String> p = new HashMap<>(params);
+            p.put("page", String.valueOf(i));
+            legacyCache.put(legacyKey(path, p), new LegacyEntry("GET", p));
+            cache.put(CacheKey.of("GET", path, p), Boolean.TRUE);
+        }
+
+        Bench.run("ancienne clé (Stream)", iterations, OPERATIONS, () -> {
+            String key = legacyKey(path, params);
+            LegacyEntry entry = legacyCache.get(key);
+            return entry != null && entry.matches("GET", params) ? 1 : key.length();
+        });
+        Bench.run("CacheKey.of", iterations, OPERATIONS, () -> {
+            CacheKey key = CacheKey.of("GET", path, params);
+            return cache.containsKey(key) ? 1 : key.hashCode();
+        });
+    }
+
+    // Clé telle qu'elle était construite avant CacheKey
+    private static String legacyKey(String path, Map<String, String> params) {
+        if (params.isEmpty()) {
+            return path;
+        }
+        String paramString = params.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .map(e -> e.getKey() + "=" + e.getValue())
+                .collect(Collectors.joining("&"));
+        return path + "?" + paramString;
+    }
+
+    // Entrée avant CacheKey : méthode et copie des paramètres comparées à chaque accès
+    private static final class LegacyEntry {
+        private final String method;
+        private final Map<String, String> parameters;
+
+        LegacyEntry(String method, Map<String, String> parameters) {
+            this.method = method;
+            this.parameters = new HashMap<>(parameters);
+        }
+
+        boolean matches(String requestMethod, Map<String, String> requestParams) {
+            return method.equals(requestMethod) && parameters.equals(new HashMap<>(requestParams));
+        }
+    }
+}
@@ -0,0 +1,194 @@
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Vérification de bout en bout des requêtes HEAD (faux XAMPP + ServeurWeb dans ce processus) :
+// - HEAD après un GET : servi par l'entrée du GET, mêmes en-têtes, sans corps, sans appel à XAMPP ;
+// - HEAD sur cache froid : relayé à XAMPP sans corps et sans rien stocker (le GET suivant va chez XAMPP
+//   et reçoit la page complète, puis un nouveau HEAD est servi par le cache).
+// Les requêtes passent sur une seule connexion persistante : un corps envoyé à tort après un HEAD
+// ferait échouer la lecture de la réponse suivante.
+// Lancement : java -cp out:bench:json.jar HeadRequestCheck [--conf src/conf.json] [--port 18081] [--backend-port 8098]
+public class HeadRequestCheck {
+    private static final byte[] PAGE = "<html><body><p>Page de test HEAD</p></body></html>\n".repeat(40)
+            .getBytes(StandardCharsets.UTF_8);
+
+    private static final AtomicLong backendGets = new AtomicLong();
+    private static final AtomicLong backendHeads = new AtomicLong();
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        int port = Integer.parseInt(options.getOrDefault("port", "18081"));
+        HttpServer backend = startBackend(Integer.parseInt(options.getOrDefault("backend-port", "8098")));
+        try {
+            LoadTest.startEmbeddedProxy(options, port, backend.getAddress().getPort());
+            try (Connection connection = new Connection(port)) {
+                headAfterGet(connection);
+                headOnColdCache(connection);
+            }
+        } finally {
+            backend.stop(0);
+        }
+
+        System.out.println(failures == 0 ? "OK" : failures + " échec(s)");
+        // System.exit : les threads du proxy embarqué ne s'arrêtent pas d'eux-mêmes
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    private static void headAfterGet(Connection connection) throws IOException {
+        Response get = connection.send("GET", "/tete/apres-get.html");
+        check(get.status == 200 && get.body == PAGE.length, "GET : page complète attendue, obtenu " + get);
+        long gets = backendGets.get();
+        long heads = backendHeads.get();
+
+        Response head = connection.send("HEAD", "/tete/apres-get.html");
+        check(head.status == 200, "HEAD après GET : statut " + head.status);
+        check(String.valueOf(PAGE.length).equals(head.header("content-length")),
+                "HEAD après GET : Content-Length du GET attendu, obtenu " + head.header("content-length"));
+        check(get.header("content-type").equals(head.header("content-type")),
+                "HEAD après GET : Content-Type différent du GET");
+        check(backendGets.get() == gets && backendHeads.get() == heads, "HEAD après GET : XAMPP appelé");
+    }
+
+    private static void headOnColdCache(Connection connection) throws IOException {
+        Response head = connection.send("HEAD", "/tete/froide.html");
+        check(head.status == 200, "HEAD à froid : statut " + head.status);
+        check(backendHeads.get() == 1, "HEAD à froid : un HEAD relayé à XAMPP attendu, " + backendHeads.get());
+
+        long gets = backendGets.get();
+        Response get = connection.send("GET", "/tete/froide.html");
+        check(get.status == 200 && get.body == PAGE.length, "GET après HEAD à froid : page complète attendue, obtenu " + get);
+        check(backendGets.get() == gets + 1, "GET après HEAD à froid : la réponse du HEAD a été mise en cache");
+
+        Response again = connection.send("HEAD", "/tete/froide.html");
+        check(String.valueOf(PAGE.length).equals(again.header("content-length")),
+                "HEAD après mise en cache : Content-Length " + again.header("content-length"));
+        check(backendHeads.get() == 1 && backendGets.get() == gets + 1, "HEAD après mise en cache : XAMPP appelé");
+    }
+
+    private static HttpServer startBackend(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 64);
+        server.createContext("/", exchange -> {
+            boolean head = "HEAD".equals(exchange.getRequestMethod());
+            (head ? backendHeads : backendGets).incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=3600");
+            if (head) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(PAGE.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            exchange.sendResponseHeaders(200, PAGE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAGE);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            System.out.println("ÉCHEC " + message);
+        }
+    }
+
+    private static final class Response {
+        int status;
+        int body; // octets de corps lus (jamais lus pour un HEAD)
+        final Map<String, String> headers = new HashMap<>();
+
+        String header(String name) {
+            return headers.getOrDefault(name, "");
+        }
+
+        @Override
+        public String toString() {
+            return status + " " + body + " octets " + headers;
+        }
+    }
+
+    // Connexion HTTP/1.1 persistante : corps lu seulement pour un GET (Content-Length ou chunked)
+    private static final class Connection implements Closeable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+
+        Connection(int port) throws IOException {
+            socket = new Socket("127.0.0.1", port);
+            socket.setSoTimeout(10_000);
+            in = new BufferedInputStream(socket.getInputStream());
+            out = socket.getOutputStream();
+        }
+
+        Response send(String method, String path) throws IOException {
+            out.write((method + " " + path + " HTTP/1.1\r\nHost: 127.0.0.1\r\nUser-Agent: HeadRequestCheck\r\n\r\n")
+                    .getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            Response response = new Response();
+            String statusLine = readLine();
+            if (!statusLine.startsWith("HTTP/1.1 ")) {
+                throw new IOException("Ligne de statut inattendue : " + statusLine);
+            }
+            response.status = Integer.parseInt(statusLine.substring(9, 12));
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                response.headers.put(line.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        line.substring(colon + 1).trim());
+            }
+            if (!"HEAD".equals(method)) {
+                response.body = "chunked".equals(response.header("transfer-encoding")) ? readChunked()
+                        : skip(Integer.parseInt(response.header("content-length")));
+            }
+            return response;
+        }
+
+        private int readChunked() throws IOException {
+            int total = 0;
+            int size;
+            while ((size = Integer.parseInt(readLine().trim(), 16)) > 0) {
+                total += skip(size);
+                readLine();
+            }
+            readLine();
+            return total;
+        }
+
+        private int skip(int length) throws IOException {
+            return in.readNBytes(length).length;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c == -1) {
+                    throw new EOFException("Connexion fermée par le proxy");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
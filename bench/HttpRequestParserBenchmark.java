@@ -0,0 +1,77 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStreamReader;
+import java.net.InetAddress;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+// Coût d'analyse d'une requête typique de navigateur : ancienne lecture par lignes (BufferedReader,
+// split, URLDecoder) contre HttpRequestParser, la requête arrivant d'un bloc ou par morceaux de 16 octets.
+// Lancement : java -cp out:bench HttpRequestParserBenchmark [itérations de mesure]
+public class HttpRequestParserBenchmark {
+    private static final int OPERATIONS = 100_000;
+
+    private static final byte[] REQUEST = ("GET /search.php?query=caf%C3%A9+cr%C3%A8me&page=2&sort=date HTTP/1.1\r\n" +
+            "Host: localhost:1567\r\n" +
+            "User-Agent: Mozilla/5.0 (X11; Linux x86_64; rv:128.0) Gecko/20100101 Firefox/128.0\r\n" +
+            "Accept: text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8\r\n" +
+            "Accept-Language: fr,fr-FR;q=0.8,en-US;q=0.5,en;q=0.3\r\n" +
+            "Accept-Encoding: gzip, deflate, br\r\n" +
+            "Connection: keep-alive\r\n" +
+            "Cookie: PHPSESSID=0b4c9a3e-5f1d-4c43-9f0e-2b8d7c6a5e41\r\n" +
+            "Upgrade-Insecure-Requests: 1\r\n" +
+            "Sec-Fetch-Dest: document\r\n" +
+            "Sec-Fetch-Mode: navigate\r\n" +
+            "Sec-Fetch-Site: none\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        InetAddress address = InetAddress.getLoopbackAddress();
+        HttpRequestParser parser = new HttpRequestParser();
+        ByteBuffer buffer = ByteBuffer.wrap(REQUEST);
+
+        Bench.run("ancienne lecture (split)", iterations, OPERATIONS, () -> legacyParse(REQUEST));
+        Bench.run("HttpRequestParser (1 bloc)", iterations, OPERATIONS, () -> {
+            buffer.clear();
+            HttpRequest request = parser.parse(buffer, address);
+            Map<String, String> params = new HashMap<>();
+            String target = request.getTarget();
+            HttpRequestParser.parseQuery(target.substring(target.indexOf('?') + 1), params);
+            return params.size() + request.getHeaders().size();
+        });
+        Bench.run("HttpRequestParser (16 octets)", iterations, OPERATIONS, () -> {
+            HttpRequest request = null;
+            for (int offset = 0; request == null; offset += 16) {
+                request = parser.parse(ByteBuffer.wrap(REQUEST, offset, Math.min(16, REQUEST.length - offset)), address);
+            }
+            return request.getHeaders().size();
+        });
+    }
+
+    // Lecture telle qu'elle était faite par ClientHandler et RequestHandler avant HttpRequestParser
+    private static long legacyParse(byte[] bytes) throws Exception {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(bytes)));
+        String[] requestParts = in.readLine().split(" ");
+        String target = requestParts[1];
+        Map<String, String> headers = new HashMap<>();
+        String headerLine;
+        while ((headerLine = in.readLine()) != null && !headerLine.isEmpty()) {
+            String[] headerParts = headerLine.split(": ", 2);
+            if (headerParts.length == 2) {
+                headers.put(headerParts[0].toLowerCase(), headerParts[1]);
+            }
+        }
+        Map<String, String> params = new HashMap<>();
+        for (String param : target.split("\\?")[1].split("&")) {
+            String[] keyValue = param.split("=");
+            if (keyValue.length == 2) {
+                params.put(URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8.toString()),
+                        URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8.toString()));
+            }
+        }
+        return params.size() + headers.size();
+    }
+}
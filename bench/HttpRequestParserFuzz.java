@@ -0,0 +1,179 @@
+import java.io.ByteArrayOutputStream;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Fuzzing de HttpRequestParser :
+// - des requêtes valides (pipelinées) découpées au hasard donnent le même résultat que lues d'un bloc ;
+// - des requêtes mutées ne provoquent jamais d'autre exception que MalformedRequestException ;
+// - les limites (ligne, nombre d'en-têtes, corps) renvoient le bon statut ;
+// - parseQuery sur quelques cas limites, et clés de cache distinctes pour des paramètres encodés.
+// Lancement : java -cp out:bench HttpRequestParserFuzz [graine] [nombre de cas]
+public class HttpRequestParserFuzz {
+    private static final InetAddress ADDRESS = InetAddress.getLoopbackAddress();
+    private static final String[] METHODS = { "GET", "POST", "HEAD", "PUT" };
+    private static final String[] HEADER_NAMES = { "Host", "User-Agent", "accept", "X-Custom", "COOKIE", "Referer" };
+
+    private static int failures;
+
+    public static void main(String[] args) throws Exception {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        int cases = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+        Random random = new Random(seed);
+        System.out.println("Graine : " + seed);
+
+        for (int i = 0; i < cases; i++) {
+            splitInvariance(random);
+            mutation(random);
+        }
+        limits();
+        queries();
+
+        System.out.println(failures == 0 ? "OK (" + cases + " cas)" : failures + " échec(s)");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    // Le découpage des lectures ne change pas les requêtes obtenues
+    private static void splitInvariance(Random random) throws Exception {
+        int count = 1 + random.nextInt(3);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String method = METHODS[random.nextInt(METHODS.length)];
+            String target = "/p" + random.nextInt(1000) + (random.nextBoolean() ? "?a=" + random.nextInt(10) + "&b=" : "");
+            byte[] body = new byte[random.nextInt(3) == 0 ? random.nextInt(64) : 0];
+            random.nextBytes(body);
+            StringBuilder head = new StringBuilder(method + " " + target + " HTTP/1.1\r\n");
+            Map<String, String> headers = new TreeMap<>();
+            for (int h = random.nextInt(5); h > 0; h--) {
+                String name = HEADER_NAMES[random.nextInt(HEADER_NAMES.length)];
+                String value = "v" + random.nextInt(100);
+                head.append(name).append(random.nextBoolean() ? ": " : ":\t ").append(value).append(" \r\n");
+                headers.put(name.toLowerCase(), value);
+            }
+            if (body.length > 0) {
+                head.append("Content-Length: ").append(body.length).append("\r\n");
+                headers.put("content-length", String.valueOf(body.length));
+            }
+            head.append("\r\n");
+            bytes.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+            bytes.write(body);
+            expected.add(describe(method, target, headers, body));
+        }
+        byte[] input = bytes.toByteArray();
+
+        List<String> actual = new ArrayList<>();
+        HttpRequestParser parser = new HttpRequestParser();
+        int offset = 0;
+        while (offset < input.length) {
+            int length = Math.min(input.length - offset, 1 + random.nextInt(random.nextBoolean() ? 4 : 200));
+            ByteBuffer chunk = ByteBuffer.wrap(input, offset, length);
+            HttpRequest request;
+            while ((request = parser.parse(chunk, ADDRESS)) != null) {
+                actual.add(describe(request.getMethod(), request.getTarget(), new TreeMap<>(request.getHeaders()),
+                        request.getBody()));
+            }
+            offset += length;
+        }
+        check(expected.equals(actual), "découpage : attendu " + expected + ", obtenu " + actual);
+        check(!parser.hasPartialRequest(), "découpage : octets restants après la dernière requête");
+    }
+
+    // Une entrée corrompue est refusée proprement ou lue comme une requête ; jamais d'autre exception
+    private static void mutation(Random random) {
+        byte[] input = ("POST /form.php?x=1 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\n\r\nab=cd" +
+                "GET / HTTP/1.0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1);
+        input = Arrays.copyOf(input, input.length + random.nextInt(8));
+        for (int m = 1 + random.nextInt(4); m > 0; m--) {
+            input[random.nextInt(input.length)] = (byte) random.nextInt(256);
+        }
+        HttpRequestParser parser = new HttpRequestParser(256, 8, 1024);
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(input);
+            while (parser.parse(buffer, ADDRESS) != null) {
+                // requêtes lues
+            }
+        } catch (HttpRequestParser.MalformedRequestException e) {
+            check(e.getStatus() != null, "mutation : statut absent");
+        } catch (RuntimeException e) {
+            check(false, "mutation : " + e + " pour " + new String(input, StandardCharsets.ISO_8859_1));
+        }
+    }
+
+    private static void limits() {
+        expectStatus("414 URI Too Long", "GET /" + "a".repeat(300) + " HTTP/1.1\r\n\r\n");
+        expectStatus("431 Request Header Fields Too Large", "GET / HTTP/1.1\r\nX-Long: " + "b".repeat(300) + "\r\n\r\n");
+        expectStatus("431 Request Header Fields Too Large", "GET / HTTP/1.1\r\n" + "X: 1\r\n".repeat(9) + "\r\n");
+        expectStatus("413 Payload Too Large", "POST / HTTP/1.1\r\nContent-Length: 1025\r\n\r\n");
+        expectStatus("413 Payload Too Large", "POST / HTTP/1.1\r\nContent-Length: 99999999999999999999\r\n\r\n");
+        expectStatus("411 Length Required", "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n");
+        expectStatus("400 Bad Request", "POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n");
+        expectStatus("400 Bad Request", "get / HTTP/1.1\r\n\r\n");
+        expectStatus("400 Bad Request", "GET / HTTP/x\r\n\r\n");
+        expectStatus("400 Bad Request", "GET / HTTP/1.1\r\nsans deux-points\r\n\r\n");
+        expectStatus("400 Bad Request", "GET / HTTP/1.1\r\nNom : valeur\r\n\r\n");
+    }
+
+    private static void expectStatus(String status, String input) {
+        try {
+            new HttpRequestParser(256, 8, 1024).parse(
+                    ByteBuffer.wrap(input.getBytes(StandardCharsets.ISO_8859_1)), ADDRESS);
+            check(false, "limite : " + status + " attendu pour " + input.substring(0, Math.min(40, input.length())));
+        } catch (HttpRequestParser.MalformedRequestException e) {
+            check(status.equals(e.getStatus()), "limite : " + status + " attendu, obtenu " + e.getStatus());
+        }
+    }
+
+    private static void queries() {
+        expectQuery("a=1&b=2", "{a=1, b=2}");
+        expectQuery("a=&b", "{a=, b=}");
+        expectQuery("expr=x=y", "{expr=x=y}");
+        expectQuery("&&a=1&", "{a=1}");
+        expectQuery("=1&q=caf%C3%A9+cr%c3%a8me", "{q=café crème}");
+        expectQuery("bad=%zz%4&pct=100%", "{bad=%zz%4, pct=100%}");
+        expectQuery("k%3D=v%26w", "{k==v&w}");
+
+        // Les '&', '=', '%', '#' décodés d'une valeur ne doivent pas rendre deux requêtes identiques en cache
+        expectDistinctKeys("a=1%26b%3D2", "a=1&b=2");
+        expectDistinctKeys("a=1%26b=2", "a=1&b=2");
+        expectDistinctKeys("q=50%2525", "q=50%25");
+        expectDistinctKeys("v=x%23y", "v=x");
+        Map<String, String> variant = new HashMap<>();
+        HttpRequestParser.parseQuery("v=x%23y", variant);
+        CacheKey key = CacheKey.of("GET", "/p.php", variant);
+        check(CacheKey.parse(key.toString()).base().equals(key),
+                "'#' dans une valeur pris pour une variante : " + key);
+    }
+
+    private static void expectDistinctKeys(String first, String second) {
+        Map<String, String> firstParams = new HashMap<>();
+        Map<String, String> secondParams = new HashMap<>();
+        HttpRequestParser.parseQuery(first, firstParams);
+        HttpRequestParser.parseQuery(second, secondParams);
+        CacheKey firstKey = CacheKey.of("GET", "/p.php", firstParams);
+        CacheKey secondKey = CacheKey.of("GET", "/p.php", secondParams);
+        check(!firstKey.equals(secondKey), "clés identiques pour ?" + first + " et ?" + second + " : " + firstKey);
+    }
+
+    private static void expectQuery(String query, String expected) {
+        Map<String, String> params = new TreeMap<>();
+        HttpRequestParser.parseQuery(query, params);
+        check(expected.equals(params.toString()), "query " + query + " : attendu " + expected + ", obtenu " + params);
+    }
+
+    private static String describe(String method, String target, Map<String, String> headers, byte[] body) {
+        return method + " " + target + " " + headers + " " + Arrays.hashCode(body);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            failures++;
+            if (failures <= 10) {
+                System.out.println("ÉCHEC " + message);
+            }
+        }
+    }
+}
@@ -0,0 +1,367 @@
+import com.sun.net.httpserver.HttpServer;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Test de charge de bout en bout : un faux XAMPP (HttpServer du JDK) derrière le proxy, et des clients
+// HTTP/1.1 persistants qui demandent une part réglable de pages déjà en cache (les autres URL ne sont
+// demandées qu'une fois). Affiche le débit et les latences p50/p99/p999 vues par les clients.
+//
+// Sans --proxy, ServeurWeb est démarré dans ce processus avec une copie de --conf pointant vers le faux XAMPP.
+// Lancement : java -cp out:bench:json.jar LoadTest [--concurrency 32] [--duration 20] [--warmup 5]
+//             [--hit-ratio 0.9] [--size 4096] [--hot 200] [--backend-delay 0] [--gzip]
+//             [--proxy host:port] [--backend-port 8099] [--conf src/conf.json] [--port 18080] [--io blocking|nio]
+public class LoadTest {
+    private static final String USER_AGENT = "LoadTest";
+
+    private final Map<String, String> options;
+    private final int concurrency;
+    private final double hitRatio;
+    private final int hotPages;
+    private final boolean gzip;
+    private final String proxyHost;
+    private final int proxyPort;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder responses = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final AtomicLong missCounter = new AtomicLong();
+    private volatile boolean recording;
+    private volatile boolean running = true;
+
+    private LoadTest(Map<String, String> options, String proxyHost, int proxyPort) {
+        this.options = options;
+        this.concurrency = Integer.parseInt(options.getOrDefault("concurrency", "32"));
+        this.hitRatio = Double.parseDouble(options.getOrDefault("hit-ratio", "0.9"));
+        this.hotPages = Math.max(1, Integer.parseInt(options.getOrDefault("hot", "200")));
+        this.gzip = options.containsKey("gzip");
+        this.proxyHost = proxyHost;
+        this.proxyPort = proxyPort;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        int size = Integer.parseInt(options.getOrDefault("size", "4096"));
+        int delay = Integer.parseInt(options.getOrDefault("backend-delay", "0"));
+        int backendPort = Integer.parseInt(options.getOrDefault("backend-port", "8099"));
+
+        AtomicLong backendRequests = new AtomicLong();
+        HttpServer backend = startBackend(backendPort, size, delay, backendRequests);
+
+        String proxyHost = "127.0.0.1";
+        int proxyPort;
+        if (options.containsKey("proxy")) {
+            String[] proxy = options.get("proxy").split(":");
+            proxyHost = proxy[0];
+            proxyPort = Integer.parseInt(proxy[1]);
+        } else {
+            proxyPort = Integer.parseInt(options.getOrDefault("port", "18080"));
+            startEmbeddedProxy(options, proxyPort, backend.getAddress().getPort());
+        }
+
+        // System.exit : les threads du proxy embarqué ne s'arrêtent pas d'eux-mêmes
+        LoadTest test = new LoadTest(options, proxyHost, proxyPort);
+        try {
+            test.run(backendRequests);
+        } catch (Exception e) {
+            e.printStackTrace();
+            System.exit(1);
+        } finally {
+            backend.stop(0);
+        }
+        System.exit(test.responses.sum() > 0 ? 0 : 1);
+    }
+
+    private void run(AtomicLong backendCounter) throws Exception {
+        int warmup = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "20"));
+        System.out.printf("Proxy %s:%d | %d clients | %.0f %% de hits visés | pages de %s octets | %d pages en cache%s%n",
+                proxyHost, proxyPort, concurrency, hitRatio * 100, options.getOrDefault("size", "4096"), hotPages,
+                gzip ? " | Accept-Encoding: gzip" : "");
+
+        // Pages « chaudes » mises en cache avant la mesure
+        HttpConnection connection = new HttpConnection();
+        try {
+            for (int i = 0; i < hotPages; i++) {
+                if (connection.closed) {
+                    connection.close();
+                    connection = new HttpConnection();
+                }
+                connection.get(hotPath(i));
+            }
+        } finally {
+            connection.close();
+        }
+
+        Thread[] clients = new Thread[concurrency];
+        for (int i = 0; i < concurrency; i++) {
+            clients[i] = new Thread(this::client, "client-" + i);
+            clients[i].start();
+        }
+        Thread.sleep(warmup * 1000L);
+
+        long backendBefore = backendCounter.get();
+        recording = true;
+        long start = System.nanoTime();
+        Thread.sleep(duration * 1000L);
+        recording = false;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long backendDuring = backendCounter.get() - backendBefore;
+        running = false;
+        for (Thread client : clients) {
+            client.join();
+        }
+
+        long count = responses.sum();
+        System.out.printf("Requêtes : %d en %.1f s | Débit : %.0f req/s, %.1f Mo/s | Erreurs : %d%n",
+                count, seconds, count / seconds, bytes.sum() / seconds / 1e6, errors.sum());
+        System.out.printf("Latence : p50 %.3f ms | p99 %.3f ms | p999 %.3f ms | max %.3f ms%n",
+                latency.quantileSeconds(0.5) * 1000, latency.quantileSeconds(0.99) * 1000,
+                latency.quantileSeconds(0.999) * 1000, latency.quantileSeconds(1) * 1000);
+        System.out.printf("Appels au faux XAMPP : %d (hits observés %.1f %%)%n",
+                backendDuring, count > 0 ? 100.0 * (count - backendDuring) / count : 0);
+    }
+
+    // Un client : une connexion persistante, rouverte quand le proxy la ferme
+    private void client() {
+        HttpConnection connection = null;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            String path = random.nextDouble() < hitRatio
+                    ? hotPath(random.nextInt(hotPages))
+                    : "/miss/" + missCounter.incrementAndGet() + ".html";
+            long start = System.nanoTime();
+            try {
+                if (connection == null) {
+                    connection = new HttpConnection();
+                }
+                int length = connection.get(path);
+                if (recording) {
+                    latency.recordSince(start);
+                    responses.increment();
+                    bytes.add(length);
+                }
+                if (connection.closed) {
+                    connection.close();
+                    connection = null;
+                }
+            } catch (IOException e) {
+                if (recording) {
+                    errors.increment();
+                }
+                if (connection != null) {
+                    connection.close();
+                    connection = null;
+                }
+            }
+        }
+        if (connection != null) {
+            connection.close();
+        }
+    }
+
+    private static String hotPath(int index) {
+        return "/hot/" + index + ".html";
+    }
+
+    // Connexion HTTP/1.1 minimale : en-têtes lus octet par octet, corps avec Content-Length ou chunked
+    private final class HttpConnection implements Closeable {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private boolean closed;
+
+        HttpConnection() throws IOException {
+            socket = new Socket(proxyHost, proxyPort);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(30_000);
+            in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        // Taille du corps reçu ; IOException si le statut n'est pas 200
+        int get(String path) throws IOException {
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: " + proxyHost + "\r\nUser-Agent: " + USER_AGENT + "\r\n" +
+                    (gzip ? "Accept-Encoding: gzip\r\n" : "") + "\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+
+            String statusLine = readLine();
+            long contentLength = -1;
+            boolean chunked = false;
+            String line;
+            while (!(line = readLine()).isEmpty()) {
+                int colon = line.indexOf(':');
+                String name = line.substring(0, Math.max(colon, 0)).trim();
+                String value = line.substring(colon + 1).trim();
+                if (name.equalsIgnoreCase("content-length")) {
+                    contentLength = Long.parseLong(value);
+                } else if (name.equalsIgnoreCase("transfer-encoding")) {
+                    chunked = value.equalsIgnoreCase("chunked");
+                } else if (name.equalsIgnoreCase("connection")) {
+                    closed = value.equalsIgnoreCase("close");
+                }
+            }
+            long length;
+            if (chunked) {
+                length = 0;
+                long chunk;
+                while ((chunk = Long.parseLong(readLine().trim(), 16)) > 0) {
+                    skip(chunk);
+                    readLine();
+                    length += chunk;
+                }
+                readLine();
+            } else if (contentLength >= 0) {
+                skip(contentLength);
+                length = contentLength;
+            } else {
+                throw new IOException("Réponse sans longueur : " + statusLine);
+            }
+            if (!statusLine.startsWith("HTTP/1.1 200")) {
+                throw new IOException(statusLine);
+            }
+            return (int) length;
+        }
+
+        private String readLine() throws IOException {
+            StringBuilder line = new StringBuilder(64);
+            int c;
+            while ((c = in.read()) != '\n') {
+                if (c < 0) {
+                    throw new EOFException("Connexion fermée par le proxy");
+                }
+                if (c != '\r') {
+                    line.append((char) c);
+                }
+            }
+            return line.toString();
+        }
+
+        private void skip(long count) throws IOException {
+            while (count > 0) {
+                long skipped = in.skip(count);
+                if (skipped <= 0) {
+                    if (in.read() < 0) {
+                        throw new EOFException("Corps incomplet");
+                    }
+                    skipped = 1;
+                }
+                count -= skipped;
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // rien à faire
+            }
+        }
+    }
+
+    // Faux XAMPP : pages HTML de size octets, cachables une heure, après delay ms
+    private static HttpServer startBackend(int port, int size, int delay, AtomicLong requests) throws IOException {
+        byte[] body = "<p>Lorem ipsum dolor sit amet, consectetur adipiscing elit.</p>\n".repeat(size / 64 + 1)
+                .substring(0, size).getBytes(StandardCharsets.UTF_8);
+        // Comme Apache : TCP_NODELAY, sinon en-têtes et corps écrits séparément attendent l'ACK retardé (~40 ms)
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(Executors.newFixedThreadPool(64));
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=UTF-8");
+            exchange.getResponseHeaders().set("Cache-Control", "public, max-age=3600");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    // ServeurWeb dans ce processus, avec une copie de la configuration pointant vers le faux XAMPP
+    // (aussi utilisé par HeadRequestCheck)
+    @SuppressWarnings("unchecked")
+    static void startEmbeddedProxy(Map<String, String> options, int port, int backendPort) throws Exception {
+        JSONObject config;
+        try (Reader reader = Files.newBufferedReader(Path.of(options.getOrDefault("conf", "src/conf.json")))) {
+            config = (JSONObject) new JSONParser().parse(reader);
+        }
+        JSONObject server = (JSONObject) config.get("server");
+        server.put("port", (long) port);
+        server.put("xampp_server_url", "http://127.0.0.1:" + backendPort);
+        server.put("io_mode", options.getOrDefault("io", (String) server.getOrDefault("io_mode", "blocking")));
+        JSONObject logging = new JSONObject();
+        logging.put("level", "WARN");
+        JSONObject accessLog = new JSONObject();
+        accessLog.put("enabled", options.containsKey("access-log"));
+        logging.put("access_log", accessLog);
+        config.put("logging", logging);
+
+        // Un proxy déjà lancé sur ce port fausserait la mesure
+        new ServerSocket(port).close();
+
+        Path file = Files.createTempFile("loadtest-conf", ".json");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, config.toJSONString());
+        System.setProperty("serveur.conf", file.toString());
+
+        Thread proxy = new Thread(() -> {
+            try {
+                ServeurWeb.main(new String[0]);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }, "proxy");
+        proxy.setDaemon(true);
+        proxy.start();
+
+        // Attendre que le port d'écoute soit ouvert
+        for (int attempt = 0; ; attempt++) {
+            try {
+                new Socket("127.0.0.1", port).close();
+                return;
+            } catch (IOException e) {
+                if (attempt > 100) {
+                    throw new IOException("Le proxy n'a pas démarré sur le port " + port, e);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Option inattendue : " + args[i]);
+            }
+            String name = args[i].substring(2);
+            boolean flag = i + 1 >= args.length || args[i + 1].startsWith("--");
+            options.put(name, flag ? "true" : args[++i]);
+        }
+        return options;
+    }
+}
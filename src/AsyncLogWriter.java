@@ -0,0 +1,225 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Écriture des journaux par un seul thread : les threads des requêtes déposent leurs événements
+// dans un anneau borné (sans verrou) et repartent ; le thread écrivain les met en forme et les écrit
+// par lots. Anneau plein : l'événement est abandonné (compté) ou le dépôt attend qu'une case se libère.
+public class AsyncLogWriter implements Runnable {
+    private static final long IDLE_PARK_NANOS = 100_000_000; // 100 ms sans événement
+    private static final long FULL_PARK_NANOS = 50_000; // attente d'une case en mode bloquant
+
+    // Destination d'un événement mis en forme par Log
+    public interface Event {
+        void writeTo(AsyncLogWriter writer) throws IOException;
+    }
+
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+    private final boolean blockWhenFull;
+    private final AtomicLong claimed = new AtomicLong(); // prochaine case à réserver
+    private volatile long consumed; // cases déjà lues par l'écrivain
+    private volatile boolean sleeping;
+    private volatile boolean running = true;
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicLong written = new AtomicLong();
+    private final Thread thread;
+
+    private final PrintStream console;
+    private final PrintStream errors;
+    private final RotatingFile accessLog; // null : journal d'accès désactivé
+
+    public AsyncLogWriter(int capacity, boolean blockWhenFull, PrintStream console, PrintStream errors,
+                          RotatingFile accessLog) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // puissance de 2
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+        this.blockWhenFull = blockWhenFull;
+        this.console = console;
+        this.errors = errors;
+        this.accessLog = accessLog;
+        this.thread = new Thread(this, "journal");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    // Déposer un événement ; faux s'il a été abandonné (anneau plein ou écrivain arrêté)
+    public boolean publish(Event event) {
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed >= slots.length()) {
+                if (!blockWhenFull || !running) {
+                    dropped.increment();
+                    return false;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+                continue;
+            }
+            if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+        slots.set((int) (sequence & mask), event);
+        if (sleeping) {
+            LockSupport.unpark(thread);
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        long next = 0;
+        while (true) {
+            int index = (int) (next & mask);
+            Event event = slots.get(index);
+            if (event == null) {
+                flush(); // anneau vide : fin du lot
+                if (!running && claimed.get() == next) {
+                    break;
+                }
+                sleeping = true;
+                if (slots.get(index) == null) {
+                    LockSupport.parkNanos(running ? IDLE_PARK_NANOS : FULL_PARK_NANOS);
+                }
+                sleeping = false;
+                continue;
+            }
+            slots.set(index, null);
+            consumed = ++next;
+            try {
+                event.writeTo(this);
+                written.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                errors.println("Erreur d'écriture du journal : " + e);
+            }
+        }
+        if (accessLog != null) {
+            accessLog.close();
+        }
+    }
+
+    // Arrêt : les événements déjà déposés sont écrits avant de rendre la main
+    public void shutdown(long timeoutMillis) {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    void writeConsole(String line) {
+        console.println(line);
+    }
+
+    void writeError(String line, Throwable error) {
+        errors.println(line);
+        if (error != null) {
+            error.printStackTrace(errors);
+        }
+    }
+
+    void writeAccess(String line) throws IOException {
+        if (accessLog != null) {
+            accessLog.writeLine(line);
+        }
+    }
+
+    boolean hasAccessLog() {
+        return accessLog != null;
+    }
+
+    private void flush() {
+        console.flush();
+        errors.flush();
+        if (accessLog != null) {
+            try {
+                accessLog.flush();
+            } catch (IOException e) {
+                errors.println("Erreur d'écriture du journal d'accès : " + e.getMessage());
+            }
+        }
+    }
+
+    public int getCapacity() { return slots.length(); }
+    public long getPendingCount() { return claimed.get() - consumed; }
+    public long getDroppedCount() { return dropped.sum(); }
+    public long getWrittenCount() { return written.get(); }
+    public boolean isBlockWhenFull() { return blockWhenFull; }
+
+    // Fichier journal avec rotation par taille : access.log -> access.log.1 -> ... -> access.log.<maxFiles>
+    public static class RotatingFile {
+        private final Path path;
+        private final long maxBytes;
+        private final int maxFiles;
+        private OutputStream out;
+        private long size;
+        private volatile long rotations;
+
+        public RotatingFile(Path path, long maxBytes, int maxFiles) throws IOException {
+            this.path = path;
+            this.maxBytes = maxBytes;
+            this.maxFiles = Math.max(1, maxFiles);
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            open();
+        }
+
+        // Appelé uniquement depuis le thread écrivain
+        void writeLine(String line) throws IOException {
+            byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+            if (size > 0 && size + bytes.length > maxBytes) {
+                rotate();
+            }
+            out.write(bytes);
+            size += bytes.length;
+        }
+
+        void flush() throws IOException {
+            out.flush();
+        }
+
+        private void rotate() throws IOException {
+            out.close();
+            Files.deleteIfExists(archive(maxFiles));
+            for (int i = maxFiles - 1; i >= 1; i--) {
+                if (Files.exists(archive(i))) {
+                    Files.move(archive(i), archive(i + 1), StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+            Files.move(path, archive(1), StandardCopyOption.REPLACE_EXISTING);
+            rotations++;
+            open();
+        }
+
+        private Path archive(int index) {
+            return path.resolveSibling(path.getFileName() + "." + index);
+        }
+
+        private void open() throws IOException {
+            out = new BufferedOutputStream(Files.newOutputStream(path,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND), 64 * 1024);
+            size = Files.size(path);
+        }
+
+        void close() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // fermeture à l'arrêt : rien à faire
+            }
+        }
+
+        public Path getPath() { return path; }
+        public long getRotations() { return rotations; }
+    }
+}
@@ -0,0 +1,251 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Serveurs XAMPP derrière le proxy et choix du serveur pour chaque requête :
+// - répartition tourniquet, moins de requêtes en cours, ou collante (session PHP gardée sur son serveur) ;
+// - sondes actives périodiques (GET healthPath) : un serveur qui échoue healthyThreshold fois est retiré ;
+// - éjection passive : après consecutiveFailures erreurs (connexion ou 5xx), le serveur est écarté
+//   un temps qui grandit à chaque éjection (baseEjection * n, au plus maxEjection).
+// Si aucun serveur n'est disponible, tous sont utilisés quand même (mieux qu'un 502 certain).
+public class BackendPool {
+
+    public enum Policy {
+        ROUND_ROBIN, LEAST_OUTSTANDING, STICKY;
+
+        public static Policy fromConfig(String value) {
+            if (value == null) {
+                return ROUND_ROBIN;
+            }
+            switch (value.trim().toLowerCase()) {
+                case "least_outstanding":
+                case "least-outstanding":
+                    return LEAST_OUTSTANDING;
+                case "sticky":
+                    return STICKY;
+                default:
+                    return ROUND_ROBIN;
+            }
+        }
+    }
+
+    public static final class Backend {
+        private final String url;
+        private final String host;
+        private final int port;
+        private final String hostHeader;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicLong requests = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong ejections = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram(); // jusqu'aux en-têtes de la réponse
+        private volatile boolean healthy = true; // résultat des sondes actives
+        private volatile long ejectedUntil; // éjection passive
+        private int consecutiveFailures; // requêtes (protégé par this)
+        private int consecutiveEjections;
+        private int probeFailures; // sondes (thread des sondes uniquement)
+        private int probeSuccesses;
+
+        Backend(String url) throws IOException {
+            URL parsed = new URL(url);
+            this.url = url;
+            this.host = parsed.getHost();
+            this.port = parsed.getPort() != -1 ? parsed.getPort() : parsed.getDefaultPort();
+            this.hostHeader = port == 80 ? host : host + ":" + port;
+        }
+
+        boolean isAvailable(long now) {
+            return healthy && now >= ejectedUntil;
+        }
+
+        public String getUrl() { return url; }
+        public boolean isHealthy() { return healthy; }
+        public boolean isEjected() { return System.currentTimeMillis() < ejectedUntil; }
+        public int getOutstanding() { return outstanding.get(); }
+        public long getRequestCount() { return requests.get(); }
+        public long getFailureCount() { return failures.get(); }
+        public long getEjectionCount() { return ejections.get(); }
+        public LatencyHistogram getLatency() { return latency; }
+    }
+
+    private final List<Backend> backends;
+    private final Policy policy;
+    private final int consecutiveFailures;
+    private final long baseEjection;
+    private final long maxEjection;
+    private final AtomicInteger nextIndex = new AtomicInteger();
+    private final AtomicLong panicCount = new AtomicLong(); // choix faits sans serveur disponible
+    private ScheduledExecutorService prober;
+
+    public BackendPool(List<String> urls, Policy policy, int consecutiveFailures, long baseEjection,
+                       long maxEjection) throws IOException {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("Aucun serveur XAMPP configuré");
+        }
+        List<Backend> list = new ArrayList<>();
+        for (String url : urls) {
+            list.add(new Backend(url));
+        }
+        this.backends = Collections.unmodifiableList(list);
+        this.policy = policy;
+        this.consecutiveFailures = Math.max(1, consecutiveFailures);
+        this.baseEjection = baseEjection;
+        this.maxEjection = Math.max(baseEjection, maxEjection);
+    }
+
+    // Serveur pour une requête. preferred : serveur de la session (politique collante), ou null ;
+    // excluded : serveur qui vient d'échouer pour cette requête, ou null
+    public Backend choose(String preferred, Backend excluded) {
+        long now = System.currentTimeMillis();
+        if (preferred != null) {
+            for (Backend backend : backends) {
+                if (backend.url.equals(preferred) && backend != excluded && backend.isAvailable(now)) {
+                    return backend;
+                }
+            }
+        }
+        Backend chosen = pick(now, excluded, true);
+        if (chosen == null) {
+            panicCount.incrementAndGet();
+            chosen = pick(now, excluded, false);
+        }
+        return chosen != null ? chosen : excluded;
+    }
+
+    private Backend pick(long now, Backend excluded, boolean availableOnly) {
+        int size = backends.size();
+        int start = Math.floorMod(nextIndex.getAndIncrement(), size);
+        Backend best = null;
+        for (int i = 0; i < size; i++) {
+            Backend candidate = backends.get((start + i) % size);
+            if (candidate == excluded || availableOnly && !candidate.isAvailable(now)) {
+                continue;
+            }
+            if (policy == Policy.ROUND_ROBIN) {
+                return candidate;
+            }
+            // Moins de requêtes en cours ; à égalité, le premier après le point de départ tournant
+            if (best == null || candidate.outstanding.get() < best.outstanding.get()) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    // Requête envoyée à backend
+    public void begin(Backend backend) {
+        backend.outstanding.incrementAndGet();
+        backend.requests.incrementAndGet();
+    }
+
+    // En-têtes de la réponse reçus après nanos
+    public void recordLatency(Backend backend, long nanos) {
+        backend.latency.recordNanos(nanos);
+    }
+
+    // Fin de l'échange : success faux si le serveur n'a pas répondu ou a répondu 5xx
+    public void complete(Backend backend, boolean success) {
+        backend.outstanding.decrementAndGet();
+        if (success) {
+            synchronized (backend) {
+                backend.consecutiveFailures = 0;
+                if (System.currentTimeMillis() >= backend.ejectedUntil) {
+                    backend.consecutiveEjections = 0;
+                }
+            }
+            return;
+        }
+        backend.failures.incrementAndGet();
+        long ejection = 0;
+        synchronized (backend) {
+            if (++backend.consecutiveFailures >= consecutiveFailures && System.currentTimeMillis() >= backend.ejectedUntil) {
+                backend.consecutiveFailures = 0;
+                backend.consecutiveEjections++;
+                ejection = Math.min(maxEjection, baseEjection * backend.consecutiveEjections);
+                backend.ejectedUntil = System.currentTimeMillis() + ejection;
+                backend.ejections.incrementAndGet();
+            }
+        }
+        if (ejection > 0) {
+            Log.warn("Serveur XAMPP {} écarté pendant {} ms après {} erreurs consécutives", backend.url, ejection,
+                    consecutiveFailures);
+        }
+    }
+
+    // Sondes actives toutes les interval ms sur un thread dédié (une sonde peut attendre timeout ms)
+    public void startHealthChecks(String path, long interval, int timeout, int unhealthyThreshold,
+                                  int healthyThreshold) {
+        prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sondes-xampp");
+            thread.setDaemon(true);
+            return thread;
+        });
+        prober.scheduleWithFixedDelay(() -> {
+            for (Backend backend : backends) {
+                probe(backend, path, timeout, Math.max(1, unhealthyThreshold), Math.max(1, healthyThreshold));
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    private void probe(Backend backend, String path, int timeout, int unhealthyThreshold, int healthyThreshold) {
+        boolean ok;
+        try (Socket socket = new Socket()) {
+            socket.connect(new InetSocketAddress(backend.host, backend.port), timeout);
+            socket.setSoTimeout(timeout);
+            OutputStream out = socket.getOutputStream();
+            out.write(("GET " + path + " HTTP/1.1\r\nHost: " + backend.hostHeader + "\r\n" +
+                    "User-Agent: ServeurWeb-sonde\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+            String statusLine = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.ISO_8859_1)).readLine();
+            String[] parts = statusLine != null ? statusLine.split(" ", 3) : new String[0];
+            ok = parts.length >= 2 && parts[1].length() == 3 && parts[1].charAt(0) < '5';
+        } catch (IOException e) {
+            ok = false;
+        }
+
+        if (ok) {
+            backend.probeFailures = 0;
+            if (!backend.healthy && ++backend.probeSuccesses >= healthyThreshold) {
+                backend.healthy = true;
+                Log.info("Serveur XAMPP {} de nouveau disponible", backend.url);
+            }
+        } else {
+            backend.probeSuccesses = 0;
+            if (backend.healthy && ++backend.probeFailures >= unhealthyThreshold) {
+                backend.healthy = false;
+                Log.warn("Serveur XAMPP {} indisponible (sonde {} en échec)", backend.url, path);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (prober != null) {
+            prober.shutdownNow();
+        }
+    }
+
+    public List<Backend> getBackends() { return backends; }
+    public Policy getPolicy() { return policy; }
+    public int size() { return backends.size(); }
+    public long getPanicCount() { return panicCount.get(); }
+
+    public int getAvailableCount() {
+        long now = System.currentTimeMillis();
+        int available = 0;
+        for (Backend backend : backends) {
+            if (backend.isAvailable(now)) {
+                available++;
+            }
+        }
+        return available;
+    }
+}
@@ -0,0 +1,126 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// Index inverse des entrées en cache, tous utilisateurs confondus :
+// - chemin canonique (clé sans méthode, paramètres ni variante) -> entrées ;
+// - tag de substitution envoyé par XAMPP (en-tête Surrogate-Key par défaut) -> entrées.
+// Les chemins sont aussi gardés triés pour retrouver un préfixe (/produits/*) sans parcourir tout le cache :
+// une invalidation coûte le nombre d'entrées concernées, pas la taille du cache.
+// Une entrée est indexée avant d'être visible dans le cache et désindexée après en avoir été retirée.
+public class CacheIndex<T> {
+    private final ConcurrentHashMap<String, Set<T>> byPath = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<String> paths = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<String, Set<T>> byTag = new ConcurrentHashMap<>();
+
+    public void add(String path, List<String> tags, T entry) {
+        byPath.compute(path, (p, set) -> {
+            if (set == null) {
+                set = ConcurrentHashMap.newKeySet();
+                paths.add(p);
+            }
+            set.add(entry);
+            return set;
+        });
+        for (String tag : tags) {
+            byTag.compute(tag, (t, set) -> {
+                if (set == null) {
+                    set = ConcurrentHashMap.newKeySet();
+                }
+                set.add(entry);
+                return set;
+            });
+        }
+    }
+
+    public void remove(String path, List<String> tags, T entry) {
+        byPath.computeIfPresent(path, (p, set) -> {
+            set.remove(entry);
+            if (set.isEmpty()) {
+                paths.remove(p);
+                return null;
+            }
+            return set;
+        });
+        for (String tag : tags) {
+            byTag.computeIfPresent(tag, (t, set) -> {
+                set.remove(entry);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    // Entrées d'un chemin exact (toutes méthodes, paramètres et variantes)
+    public List<T> withPath(String path) {
+        Set<T> set = byPath.get(path);
+        return set != null ? new ArrayList<>(set) : Collections.emptyList();
+    }
+
+    // Chemins indexés dans l'ordre, à partir de start (inclus) ; vue parcourue au fil de l'eau
+    public NavigableSet<String> pathsFrom(String start) {
+        return paths.tailSet(start, true);
+    }
+
+    // Entrées dont le chemin commence par prefix
+    public List<T> withPrefix(String prefix) {
+        List<T> entries = new ArrayList<>();
+        for (String path : paths.tailSet(prefix)) {
+            if (!path.startsWith(prefix)) {
+                break;
+            }
+            Set<T> set = byPath.get(path);
+            if (set != null) {
+                entries.addAll(set);
+            }
+        }
+        return entries;
+    }
+
+    public List<T> withTag(String tag) {
+        Set<T> set = byTag.get(tag);
+        return set != null ? new ArrayList<>(set) : Collections.emptyList();
+    }
+
+    public void clear() {
+        byPath.clear();
+        paths.clear();
+        byTag.clear();
+    }
+
+    public int getPathCount() { return byPath.size(); }
+    public int getTagCount() { return byTag.size(); }
+
+    // "POST /login.php?user=john#gzip" -> "/login.php"
+    public static String pathOf(String key) {
+        int start = key.indexOf('/');
+        if (start < 0) {
+            start = 0;
+        }
+        int end = key.length();
+        int query = key.indexOf('?', start);
+        if (query >= 0) {
+            end = query;
+        }
+        int variant = key.indexOf('#', start);
+        if (variant >= 0 && variant < end) {
+            end = variant;
+        }
+        return key.substring(start, end);
+    }
+
+    // Valeur de l'en-tête des tags : séparés par des espaces (Surrogate-Key) ou des virgules (Cache-Tag)
+    public static List<String> parseTags(List<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> tags = new ArrayList<>();
+        for (String value : values) {
+            for (String tag : value.split("[\\s,]+")) {
+                if (!tag.isEmpty() && !tags.contains(tag)) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return tags;
+    }
+}
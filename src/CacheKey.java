@@ -0,0 +1,121 @@
+import java.util.Arrays;
+import java.util.Map;
+
+// Clé canonique d'une page en cache : méthode (sauf GET), chemin, paramètres triés par nom et,
+// pour une page à variantes (Vary), les valeurs des en-têtes concernés après '#'.
+// Construite une seule fois par requête ; le hash est calculé à la construction.
+// Exemple : /search.php?page=1&query=test ou POST /login.php?user=john
+// Les noms et valeurs (décodés par parseQuery) sont réencodés : a="1&b=2" donne a=1%26b%3D2, distinct de a=1&b=2.
+public final class CacheKey {
+    private static final char VARIANT_SEPARATOR = '#';
+
+    private final String value;
+    private final int baseLength; // longueur de la clé sans la variante
+    private final int hash;
+
+    private CacheKey(String value, int baseLength) {
+        this.value = value;
+        this.baseLength = baseLength;
+        this.hash = value.hashCode();
+    }
+
+    public static CacheKey of(String method, String path, Map<String, String> params) {
+        boolean get = "GET".equals(method);
+        if (get && params.isEmpty() && path.indexOf(VARIANT_SEPARATOR) < 0) {
+            return new CacheKey(path, path.length());
+        }
+
+        StringBuilder key = new StringBuilder(path.length() + 24 * params.size() + 8);
+        if (!get) {
+            key.append(method).append(' ');
+        }
+        appendEscaped(key, path, false);
+        if (params.size() == 1) {
+            Map.Entry<String, String> param = params.entrySet().iterator().next();
+            key.append('?');
+            appendEscaped(key, param.getKey(), true);
+            key.append('=');
+            appendEscaped(key, param.getValue(), true);
+        } else if (!params.isEmpty()) {
+            // Trier les noms pour que l'ordre des paramètres dans l'URL ne change pas la clé
+            String[] names = params.keySet().toArray(new String[0]);
+            Arrays.sort(names);
+            key.append('?');
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) {
+                    key.append('&');
+                }
+                appendEscaped(key, names[i], true);
+                key.append('=');
+                appendEscaped(key, params.get(names[i]), true);
+            }
+        }
+        String value = key.toString();
+        return new CacheKey(value, value.length());
+    }
+
+    // Encoder les caractères qui délimitent la clé : '#' (variante) partout ; '%', '&', '=' et '?' dans
+    // les paramètres, décodés par parseQuery (le chemin, jamais décodé, garde ses '%' tels quels)
+    private static void appendEscaped(StringBuilder key, String text, boolean param) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == VARIANT_SEPARATOR) {
+                key.append("%23");
+            } else if (param && (c == '%' || c == '&' || c == '=' || c == '?')) {
+                key.append(c == '%' ? "%25" : c == '&' ? "%26" : c == '=' ? "%3D" : "%3F");
+            } else {
+                key.append(c);
+            }
+        }
+    }
+
+    // Clé sous sa forme texte (saisie à la console, relue sur disque)
+    public static CacheKey parse(String value) {
+        int separator = value.indexOf(VARIANT_SEPARATOR);
+        return new CacheKey(value, separator < 0 ? value.length() : separator);
+    }
+
+    // Variante de cette clé ; variant vide : la clé elle-même
+    public CacheKey withVariant(String variant) {
+        if (variant.isEmpty()) {
+            return base();
+        }
+        return new CacheKey(value.substring(0, baseLength) + VARIANT_SEPARATOR + variant, baseLength);
+    }
+
+    public CacheKey base() {
+        return baseLength == value.length() ? this : new CacheKey(value.substring(0, baseLength), baseLength);
+    }
+
+    // Chemin seul, sans méthode, paramètres ni variante (entrée de CacheIndex)
+    public String path() {
+        return CacheIndex.pathOf(value);
+    }
+
+    // Vrai si cette clé est une variante (ou la clé elle-même) de base
+    public boolean isVariantOf(CacheKey base) {
+        return baseLength == base.value.length() && value.startsWith(base.value);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey key = (CacheKey) other;
+        return hash == key.hash && value.equals(key.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return value;
+    }
+}
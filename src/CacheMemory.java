@@ -0,0 +1,275 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Stockage des corps de pages en cache avec un budget mémoire global.
+// HEAP : tableaux d'octets ; OFF_HEAP : blocs taillés dans des slabs de ByteBuffer directs
+// (classes de tailles en puissances de 2, comme memcached), hors du tas Java.
+public class CacheMemory {
+
+    public enum Mode {
+        HEAP, OFF_HEAP;
+
+        public static Mode fromConfig(String value) {
+            return value != null && value.trim().equalsIgnoreCase("off_heap") ? OFF_HEAP : HEAP;
+        }
+    }
+
+    private static final int SLAB_SIZE = 1024 * 1024; // 1 Mo par slab
+    private static final int MIN_CHUNK_SIZE = 512;
+    private static final int COPY_BUFFER_SIZE = 16 * 1024;
+
+    private final Mode mode;
+    private final long maxBytes;
+    private final AtomicLong usedBytes = new AtomicLong(); // octets réservés par les corps en cache
+    private final AtomicLong slabBytes = new AtomicLong(); // octets directs alloués (mode OFF_HEAP), grands corps compris
+    private final AtomicLong largeBytes = new AtomicLong(); // dont grands corps (tampons dédiés, rendus à leur libération)
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final SizeClass[] sizeClasses;
+
+    public CacheMemory(Mode mode, long maxBytes) {
+        this.mode = mode;
+        this.maxBytes = maxBytes;
+
+        int classCount = Integer.numberOfTrailingZeros(SLAB_SIZE / MIN_CHUNK_SIZE) + 1;
+        this.sizeClasses = new SizeClass[classCount];
+        for (int i = 0; i < classCount; i++) {
+            sizeClasses[i] = new SizeClass(MIN_CHUNK_SIZE << i);
+        }
+    }
+
+    // Copier data dans le stockage du cache ; null si le budget mémoire est épuisé
+    public Body store(byte[] data) {
+        if (mode == Mode.HEAP) {
+            if (!reserve(data.length)) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            return new HeapBody(data);
+        }
+
+        ByteBuffer chunk;
+        long reserved;
+        if (data.length > SLAB_SIZE) {
+            // Grand corps : tampon direct dédié, compté tel quel dans le budget et dans la mémoire directe
+            reserved = data.length;
+            if (!reserve(reserved)) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            if (slabBytes.addAndGet(reserved) > maxBytes) {
+                slabBytes.addAndGet(-reserved);
+                usedBytes.addAndGet(-reserved);
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            largeBytes.addAndGet(reserved);
+            chunk = ByteBuffer.allocateDirect(data.length);
+        } else {
+            SizeClass sizeClass = sizeClassFor(data.length);
+            reserved = sizeClass.chunkSize;
+            if (!reserve(reserved)) {
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+            chunk = sizeClass.take();
+            if (chunk == null) {
+                usedBytes.addAndGet(-reserved);
+                rejectedCount.incrementAndGet();
+                return null;
+            }
+        }
+
+        chunk.clear();
+        chunk.put(data);
+        chunk.flip();
+        return new OffHeapBody(chunk, data.length, reserved);
+    }
+
+    // Vrai si libérer d'autres corps peut permettre de stocker length octets. En OFF_HEAP, un slab reste
+    // à sa classe de taille : une fois tous les slabs alloués, une classe sans bloc libre ne gagne rien
+    // à l'éviction d'entrées d'autres classes, et un grand corps ne récupère que la place des grands corps.
+    public boolean canReclaimFor(int length) {
+        if (mode == Mode.HEAP) {
+            return length <= maxBytes;
+        }
+        long slabsOnly = slabBytes.get() - largeBytes.get();
+        if (length > SLAB_SIZE) {
+            return slabsOnly + length <= maxBytes;
+        }
+        SizeClass sizeClass = sizeClassFor(length);
+        return !sizeClass.freeChunks.isEmpty() || slabBytes.get() + SLAB_SIZE <= maxBytes ||
+                largeBytes.get() > 0 && slabsOnly + SLAB_SIZE <= maxBytes;
+    }
+
+    private boolean reserve(long bytes) {
+        while (true) {
+            long current = usedBytes.get();
+            if (current + bytes > maxBytes) {
+                return false;
+            }
+            if (usedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private SizeClass sizeClassFor(int length) {
+        int size = Math.max(length, MIN_CHUNK_SIZE);
+        int index = 32 - Integer.numberOfLeadingZeros(size - 1) - Integer.numberOfTrailingZeros(MIN_CHUNK_SIZE);
+        return sizeClasses[Math.max(0, index)];
+    }
+
+    // Blocs libres d'une même taille, taillés à la demande dans de nouveaux slabs
+    private class SizeClass {
+        private final int chunkSize;
+        private final ConcurrentLinkedQueue<ByteBuffer> freeChunks = new ConcurrentLinkedQueue<>();
+
+        SizeClass(int chunkSize) {
+            this.chunkSize = chunkSize;
+        }
+
+        ByteBuffer take() {
+            ByteBuffer chunk = freeChunks.poll();
+            if (chunk != null) {
+                return chunk;
+            }
+            // Nouveau slab seulement si la mémoire directe totale reste dans le budget
+            long allocated = slabBytes.addAndGet(SLAB_SIZE);
+            if (allocated > maxBytes) {
+                slabBytes.addAndGet(-SLAB_SIZE);
+                return freeChunks.poll();
+            }
+            ByteBuffer slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+            for (int offset = chunkSize; offset < SLAB_SIZE; offset += chunkSize) {
+                slab.limit(offset + chunkSize).position(offset);
+                freeChunks.add(slab.slice());
+            }
+            slab.limit(chunkSize).position(0);
+            return slab.slice();
+        }
+
+        void give(ByteBuffer chunk) {
+            freeChunks.add(chunk);
+        }
+    }
+
+    // Corps d'une entrée du cache. Compteur de références : la mémoire n'est rendue qu'une fois
+    // l'entrée retirée du cache ET toutes les réponses en cours d'envoi terminées.
+    public abstract class Body {
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        public abstract int length();
+
+        public abstract void writeTo(OutputStream out) throws IOException;
+
+        public abstract byte[] toByteArray();
+
+        // Prendre une référence avant de lire ; faux si le corps a déjà été libéré
+        public boolean retain() {
+            while (true) {
+                int current = references.get();
+                if (current <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        public void release() {
+            if (references.decrementAndGet() == 0) {
+                free();
+            }
+        }
+
+        protected abstract void free();
+    }
+
+    private class HeapBody extends Body {
+        private final byte[] data;
+
+        HeapBody(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public int length() {
+            return data.length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(data);
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            return data;
+        }
+
+        @Override
+        protected void free() {
+            usedBytes.addAndGet(-data.length);
+        }
+    }
+
+    private class OffHeapBody extends Body {
+        private final ByteBuffer chunk;
+        private final int length;
+        private final long reserved;
+
+        OffHeapBody(ByteBuffer chunk, int length, long reserved) {
+            this.chunk = chunk;
+            this.length = length;
+            this.reserved = reserved;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            ByteBuffer view = chunk.duplicate();
+            view.position(0).limit(length);
+            byte[] copy = new byte[Math.min(length, COPY_BUFFER_SIZE)];
+            while (view.hasRemaining()) {
+                int count = Math.min(copy.length, view.remaining());
+                view.get(copy, 0, count);
+                out.write(copy, 0, count);
+            }
+        }
+
+        @Override
+        public byte[] toByteArray() {
+            byte[] data = new byte[length];
+            ByteBuffer view = chunk.duplicate();
+            view.position(0).limit(length);
+            view.get(data);
+            return data;
+        }
+
+        @Override
+        protected void free() {
+            if (length <= SLAB_SIZE) {
+                sizeClassFor(length).give(chunk);
+            } else {
+                largeBytes.addAndGet(-reserved);
+                slabBytes.addAndGet(-reserved);
+            }
+            usedBytes.addAndGet(-reserved);
+        }
+    }
+
+    public Mode getMode() { return mode; }
+    public long getMaxBytes() { return maxBytes; }
+    public long getUsedBytes() { return usedBytes.get(); }
+    public long getSlabBytes() { return slabBytes.get(); }
+    public long getRejectedCount() { return rejectedCount.get(); }
+}
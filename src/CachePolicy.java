@@ -0,0 +1,169 @@
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+
+// Politique de cache d'une réponse de XAMPP, lue dans ses en-têtes :
+// Cache-Control (no-store, no-cache, private, public, max-age, s-maxage, must-revalidate),
+// Expires (par rapport à Date), Pragma et Vary.
+// Sans Cache-Control, Expires ni Pragma, la réponse est "heuristique" : le proxy garde
+// ses règles habituelles (mots-clés, paramètres, durées globales).
+public class CachePolicy {
+    public static final long HEURISTIC_TTL = -1; // durée fixée par le type de page (dynamique / statique)
+
+    private final boolean explicit;
+    private final boolean storable;
+    private final boolean shareable;
+    private final boolean explicitlyPublic;
+    private final boolean mustRevalidate;
+    private final long ttl;
+    private final long sharedTtl;
+    private final List<String> varyHeaders;
+
+    private CachePolicy(boolean explicit, boolean storable, boolean shareable, boolean explicitlyPublic,
+                        boolean mustRevalidate, long ttl, long sharedTtl, List<String> varyHeaders) {
+        this.explicit = explicit;
+        this.storable = storable;
+        this.shareable = shareable;
+        this.explicitlyPublic = explicitlyPublic;
+        this.mustRevalidate = mustRevalidate;
+        this.ttl = ttl;
+        this.sharedTtl = sharedTtl;
+        this.varyHeaders = varyHeaders;
+    }
+
+    // headers : en-têtes de la réponse, noms en minuscules
+    public static CachePolicy fromResponse(Map<String, List<String>> headers) {
+        Map<String, String> directives = directives(headers.get("cache-control"));
+        String expires = first(headers.get("expires"));
+        String pragma = first(headers.get("pragma"));
+        boolean explicit = !directives.isEmpty() || expires != null ||
+                (pragma != null && pragma.toLowerCase().contains("no-cache"));
+
+        boolean storable = !directives.containsKey("no-store");
+        boolean isPrivate = directives.containsKey("private");
+        boolean noCache = directives.containsKey("no-cache") ||
+                (directives.isEmpty() && pragma != null && pragma.toLowerCase().contains("no-cache"));
+        boolean mustRevalidate = noCache || directives.containsKey("must-revalidate") ||
+                directives.containsKey("proxy-revalidate");
+
+        long ttl = HEURISTIC_TTL;
+        long maxAge = seconds(directives.get("max-age"));
+        if (noCache) {
+            ttl = 0; // à revalider à chaque utilisation
+        } else if (maxAge >= 0) {
+            ttl = maxAge * 1000;
+        } else if (expires != null) {
+            ttl = untilExpires(expires, first(headers.get("date")));
+        }
+        long sMaxAge = seconds(directives.get("s-maxage"));
+        long sharedTtl = noCache ? 0 : sMaxAge >= 0 ? sMaxAge * 1000 : ttl;
+
+        // Le proxy gère lui-même la session : Vary: Cookie ou Set-Cookie rendent la réponse propre à l'utilisateur
+        boolean shareable = !isPrivate && first(headers.get("set-cookie")) == null;
+        List<String> varyHeaders = new ArrayList<>();
+        List<String> vary = headers.get("vary");
+        if (vary != null) {
+            for (String value : vary) {
+                for (String name : value.split(",")) {
+                    String header = name.trim().toLowerCase();
+                    if (header.equals("*")) {
+                        storable = false;
+                    } else if (header.equals("cookie")) {
+                        shareable = false;
+                    } else if (!header.isEmpty() && !varyHeaders.contains(header)) {
+                        varyHeaders.add(header);
+                    }
+                }
+            }
+        }
+        Collections.sort(varyHeaders);
+
+        boolean explicitlyPublic = directives.containsKey("public") || sMaxAge >= 0;
+        return new CachePolicy(explicit, storable, shareable, explicitlyPublic, mustRevalidate, ttl, sharedTtl,
+                varyHeaders);
+    }
+
+    private static Map<String, String> directives(List<String> values) {
+        Map<String, String> directives = new HashMap<>();
+        if (values == null) {
+            return directives;
+        }
+        for (String value : values) {
+            for (String directive : value.split(",")) {
+                String trimmed = directive.trim();
+                if (trimmed.isEmpty()) {
+                    continue;
+                }
+                int equals = trimmed.indexOf('=');
+                if (equals < 0) {
+                    directives.put(trimmed.toLowerCase(), "");
+                } else {
+                    String argument = trimmed.substring(equals + 1).trim();
+                    if (argument.length() >= 2 && argument.startsWith("\"") && argument.endsWith("\"")) {
+                        argument = argument.substring(1, argument.length() - 1);
+                    }
+                    directives.put(trimmed.substring(0, equals).trim().toLowerCase(), argument);
+                }
+            }
+        }
+        return directives;
+    }
+
+    private static String first(List<String> values) {
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    // Nombre de secondes d'une directive, -1 si absent ou invalide
+    private static long seconds(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Math.max(0, Long.parseLong(value.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Durée de vie donnée par Expires, relative à la date de XAMPP si elle est connue ;
+    // une date invalide (par exemple "0") vaut "déjà expiré"
+    private static long untilExpires(String expires, String date) {
+        try {
+            ZonedDateTime expiresAt = ZonedDateTime.parse(expires.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            long origin = System.currentTimeMillis();
+            if (date != null) {
+                try {
+                    origin = ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+                } catch (DateTimeParseException e) {
+                    // horloge du proxy
+                }
+            }
+            return Math.max(0, expiresAt.toInstant().toEpochMilli() - origin);
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
+    // Des en-têtes de cache ont été fournis (sinon : heuristiques du proxy)
+    public boolean isExplicit() { return explicit; }
+
+    public boolean isStorable() { return storable; }
+
+    // Peut aller dans le cache partagé entre utilisateurs
+    public boolean isShareable() { return shareable; }
+
+    // public ou s-maxage : partageable même si les heuristiques la jugent dynamique
+    public boolean isExplicitlyPublic() { return explicitlyPublic; }
+
+    // no-cache / must-revalidate : jamais servie expirée sans revalidation
+    public boolean isMustRevalidate() { return mustRevalidate; }
+
+    // Durée de vie en ms pour le cache partagé ou un cache d'utilisateur, ou HEURISTIC_TTL
+    public long ttlFor(boolean shared) {
+        return shared ? sharedTtl : ttl;
+    }
+
+    // En-têtes de la requête qui distinguent les variantes (noms en minuscules, triés)
+    public List<String> getVaryHeaders() { return varyHeaders; }
+}
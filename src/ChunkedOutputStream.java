@@ -0,0 +1,47 @@
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Codage "Transfer-Encoding: chunked" : permet d'envoyer un corps dont la taille
+// n'est pas connue d'avance sans fermer la connexion
+public class ChunkedOutputStream extends FilterOutputStream {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private boolean finished;
+
+    public ChunkedOutputStream(OutputStream out) {
+        super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return; // un bloc vide marquerait la fin du corps
+        }
+        out.write(Integer.toHexString(length).getBytes(StandardCharsets.US_ASCII));
+        out.write(CRLF);
+        out.write(buffer, offset, length);
+        out.write(CRLF);
+    }
+
+    // Écrire le bloc final ; le flux sous-jacent reste ouvert pour la requête suivante
+    public void finish() throws IOException {
+        if (!finished) {
+            finished = true;
+            out.write('0');
+            out.write(CRLF);
+            out.write(CRLF);
+            out.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+    }
+}
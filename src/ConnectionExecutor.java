@@ -0,0 +1,134 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Couche d'exécution des connexions : remplace le "un thread par connexion"
+// par un exécuteur borné, avec contrôle d'admission (503 quand saturé)
+public class ConnectionExecutor {
+
+    public enum Mode {
+        VIRTUAL,       // un thread virtuel par tâche (JDK 21+), sinon pool fixe (FIXED)
+        FIXED,         // pool fixe avec file d'attente bornée
+        WORK_STEALING; // ForkJoinPool en mode asynchrone
+
+        public static Mode fromConfig(String value) {
+            if (value == null) {
+                return VIRTUAL;
+            }
+            switch (value.trim().toLowerCase()) {
+                case "fixed":
+                    return FIXED;
+                case "work-stealing":
+                case "work_stealing":
+                    return WORK_STEALING;
+                default:
+                    return VIRTUAL;
+            }
+        }
+    }
+
+    private final Mode mode;
+    private final ExecutorService executor;
+    private final int maxInFlight; // nombre max de gestionnaires actifs + en attente
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger activeHandlers = new AtomicInteger();
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+
+    public ConnectionExecutor(Mode mode, int poolSize, int queueCapacity, int maxInFlight) {
+        int threads = poolSize > 0 ? poolSize : Runtime.getRuntime().availableProcessors() * 2;
+        ExecutorService virtualThreads = mode == Mode.VIRTUAL ? createVirtualThreadExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtualThreads == null) {
+            // Pas de retour au "un thread par connexion" : même pool borné que le mode FIXED
+            Log.warn("Threads virtuels indisponibles sur ce JDK (21+ requis), pool fixe de {} threads", threads);
+            mode = Mode.FIXED;
+        }
+        this.mode = mode;
+
+        switch (mode) {
+            case FIXED:
+                // La file bornée fait partie de la limite : pool + file
+                this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                        namedThreadFactory("client-handler"),
+                        new ThreadPoolExecutor.AbortPolicy());
+                this.maxInFlight = maxInFlight > 0 ? Math.min(maxInFlight, threads + Math.max(1, queueCapacity))
+                        : threads + Math.max(1, queueCapacity);
+                break;
+            case WORK_STEALING:
+                this.executor = Executors.newWorkStealingPool(threads);
+                this.maxInFlight = maxInFlight > 0 ? maxInFlight : threads + Math.max(1, queueCapacity);
+                break;
+            default:
+                this.executor = virtualThreads;
+                this.maxInFlight = maxInFlight > 0 ? maxInFlight : 10_000;
+        }
+    }
+
+    // Threads virtuels si le JDK les propose, sinon null
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static ThreadFactory namedThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Soumettre une tâche : retourne false si l'exécuteur est saturé
+    public boolean submit(Runnable task) {
+        if (inFlight.incrementAndGet() > maxInFlight) {
+            inFlight.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+
+        queuedTasks.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                queuedTasks.decrementAndGet();
+                activeHandlers.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    activeHandlers.decrementAndGet();
+                    inFlight.decrementAndGet();
+                    completedCount.incrementAndGet();
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            queuedTasks.decrementAndGet();
+            inFlight.decrementAndGet();
+            rejectedCount.incrementAndGet();
+            return false;
+        }
+    }
+
+    // Des connexions attendent un thread du pool, ou la prochaine sera refusée (503)
+    public boolean isSaturated() {
+        return mode != Mode.VIRTUAL && queuedTasks.get() > 0 || inFlight.get() >= maxInFlight;
+    }
+
+    public Mode getMode() { return mode; }
+    public int getActiveHandlers() { return activeHandlers.get(); }
+    public int getQueueDepth() { return queuedTasks.get(); }
+    public int getMaxInFlight() { return maxInFlight; }
+    public long getRejectedCount() { return rejectedCount.get(); }
+    public long getCompletedCount() { return completedCount.get(); }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,823 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// Second niveau du cache sur disque : segments de taille fixe projetés en mémoire (mmap),
+// remplis en ajout seul. L'index (en mémoire) est reconstruit au démarrage en relisant les segments,
+// ce qui permet de redémarrer à chaud. Une entrée supprimée est seulement marquée dans son segment ;
+// la compaction recopie les entrées vivantes des segments trop creux puis les réutilise.
+// Concurrence : lectures (index, corps) sous verrou partagé ; écritures, suppressions et recopies
+// entrée par entrée sous verrou exclusif, tenu le temps d'une copie en mémoire projetée.
+// put() ne fait que déposer l'entrée dans une file bornée vidée par un thread écrivain ; une suppression
+// annule aussi les écritures en attente qu'elle concerne.
+public class DiskCache {
+    private static final int MAGIC = 0xCAC4E023;
+    private static final byte FLAG_DELETED = 1;
+    private static final int FLAGS_OFFSET = 4;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final double COMPACTION_THRESHOLD = 0.5; // compacter sous 50 % d'octets vivants
+    private static final int MAX_PENDING_WRITES = 1024; // au-delà, les nouvelles écritures sont abandonnées
+    private static final long MAX_PENDING_BYTES = 64L * 1024 * 1024;
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final int maxSegments;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Champs suivants protégés par lock (lecture seule sous verrou partagé)
+    private final Map<String, Record> index = new HashMap<>();
+    private final CacheIndex<Record> keys = new CacheIndex<>(); // chemins et tags -> enregistrements
+    private final Deque<Segment> segments = new ArrayDeque<>(); // du plus ancien au segment actif
+    private final Deque<Segment> freeSegments = new ArrayDeque<>();
+    private int compactingSegments; // retirés de segments le temps de leur compaction
+    private int nextSegmentNumber;
+    private long nextSequence;
+    // Écritures en attente du thread écrivain, par clé d'index (la plus récente remplace l'ancienne)
+    private final LinkedHashMap<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+    private final Condition writesPending = lock.writeLock().newCondition();
+    private long pendingBytes;
+    private boolean closed;
+    private final Thread writer;
+
+    private final AtomicLong reads = new AtomicLong();
+    private final AtomicLong promotions = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong(); // segments pleins réutilisés en perdant leurs entrées (disque plein)
+    private final AtomicLong droppedWrites = new AtomicLong(); // écritures abandonnées (file pleine)
+
+    // Entrée du cache disque : métadonnées gardées dans l'index et position du corps dans son segment
+    public static final class Record {
+        private final String owner;
+        private final String key;
+        private final String contentType;
+        private final boolean compressed; // corps stocké en gzip
+        private final boolean isDynamic;
+        private final String etag;
+        private final String lastModified;
+        private final long ttl;
+        private final boolean mustRevalidate;
+        private final List<String> tags;
+        private final long creationTime;
+        private final long sequence;
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+        private final int bodyOffset;
+        private final int bodyLength;
+        private final AtomicInteger hits = new AtomicInteger();
+
+        private Record(String owner, String key, String contentType, boolean compressed, boolean isDynamic,
+                       String etag, String lastModified, long ttl, boolean mustRevalidate, List<String> tags,
+                       long creationTime, long sequence, Segment segment, int offset,
+                       int length, int bodyOffset, int bodyLength) {
+            this.owner = owner;
+            this.key = key;
+            this.contentType = contentType;
+            this.compressed = compressed;
+            this.isDynamic = isDynamic;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.ttl = ttl;
+            this.mustRevalidate = mustRevalidate;
+            this.tags = tags;
+            this.creationTime = creationTime;
+            this.sequence = sequence;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.bodyOffset = bodyOffset;
+            this.bodyLength = bodyLength;
+        }
+
+        public String getOwner() { return owner; }
+        public String getKey() { return key; }
+        public String getContentType() { return contentType; }
+        public boolean isCompressed() { return compressed; }
+        public boolean isDynamic() { return isDynamic; }
+        public String getEtag() { return etag; }
+        public String getLastModified() { return lastModified; }
+        public long getTtl() { return ttl; }
+        public boolean isMustRevalidate() { return mustRevalidate; }
+        public List<String> getTags() { return tags; }
+        public long getCreationTime() { return creationTime; }
+        public int getBodyLength() { return bodyLength; }
+        public int getHits() { return hits.get(); }
+    }
+
+    // Entrée déposée par put(), écrite par le thread écrivain
+    private static final class PendingWrite {
+        final String owner;
+        final String key;
+        final String contentType;
+        final boolean compressed;
+        final boolean isDynamic;
+        final String etag;
+        final String lastModified;
+        final long ttl;
+        final boolean mustRevalidate;
+        final List<String> tags;
+        final long creationTime;
+        final byte[] body;
+
+        PendingWrite(String owner, String key, String contentType, boolean compressed, boolean isDynamic,
+                     String etag, String lastModified, long ttl, boolean mustRevalidate, List<String> tags,
+                     long creationTime, byte[] body) {
+            this.owner = owner;
+            this.key = key;
+            this.contentType = contentType;
+            this.compressed = compressed;
+            this.isDynamic = isDynamic;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.ttl = ttl;
+            this.mustRevalidate = mustRevalidate;
+            this.tags = tags;
+            this.creationTime = creationTime;
+            this.body = body;
+        }
+    }
+
+    private static final class Segment {
+        final int number;
+        final Path path;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        int writePosition;
+        long liveBytes;
+        final Set<Record> records = new HashSet<>(); // entrées indexées de ce segment
+
+        Segment(int number, Path path, FileChannel channel, MappedByteBuffer buffer) {
+            this.number = number;
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+
+    public DiskCache(Path directory, int segmentBytes, long maxBytes) throws IOException {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = (int) Math.max(2, maxBytes / segmentBytes);
+        Files.createDirectories(directory);
+        load();
+        writer = new Thread(this::writeLoop, "cache-disque-ecriture");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Reconstruire l'index à partir des segments existants
+    private void load() throws IOException {
+        List<Segment> loaded = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    int number = Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                    loaded.add(open(number, file));
+                    nextSegmentNumber = Math.max(nextSegmentNumber, number + 1);
+                } catch (NumberFormatException e) {
+                    // fichier étranger au cache : ignoré
+                }
+            }
+        }
+
+        Map<Segment, Long> firstSequence = new HashMap<>();
+        for (Segment segment : loaded) {
+            firstSequence.put(segment, scan(segment));
+        }
+        loaded.sort(Comparator.comparingLong(firstSequence::get));
+        for (Segment segment : loaded) {
+            if (segment.writePosition == 0) {
+                freeSegments.add(segment);
+            } else {
+                segments.add(segment);
+            }
+        }
+    }
+
+    // Relire les enregistrements d'un segment ; retourne la plus petite séquence rencontrée
+    private long scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        long first = Long.MAX_VALUE;
+        int position = 0;
+        while (position + 4 <= buffer.capacity() && buffer.getInt(position) == MAGIC) {
+            Record record;
+            try {
+                record = parse(segment, buffer, position);
+            } catch (RuntimeException e) {
+                break; // enregistrement tronqué (arrêt brutal pendant l'écriture) : fin du segment
+            }
+            first = Math.min(first, record.sequence);
+            nextSequence = Math.max(nextSequence, record.sequence + 1);
+            if (buffer.get(position + FLAGS_OFFSET) != FLAG_DELETED) {
+                String indexKey = indexKey(record.owner, record.key);
+                Record previous = index.get(indexKey);
+                if (previous == null || previous.sequence < record.sequence) {
+                    if (previous != null) {
+                        unindex(previous);
+                        markDeleted(previous);
+                    }
+                    index.put(indexKey, record);
+                    indexRecord(record);
+                    segment.liveBytes += record.length;
+                } else {
+                    buffer.put(position + FLAGS_OFFSET, FLAG_DELETED); // version plus récente déjà indexée
+                }
+            }
+            position += record.length;
+        }
+        segment.writePosition = position;
+        return first;
+    }
+
+    private Record parse(Segment segment, ByteBuffer buffer, int offset) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(offset + FLAGS_OFFSET + 1);
+        int length = view.getInt();
+        if (length <= 0 || offset + length > buffer.capacity()) {
+            throw new IllegalStateException("Longueur d'enregistrement invalide");
+        }
+        long sequence = view.getLong();
+        long creationTime = view.getLong();
+        boolean isDynamic = view.get() != 0;
+        String owner = getString(view);
+        String key = getString(view);
+        String contentType = getString(view);
+        boolean compressed = view.get() != 0;
+        String etag = getString(view);
+        String lastModified = getString(view);
+        long ttl = view.getLong();
+        boolean mustRevalidate = view.get() != 0;
+        String tags = getString(view);
+        int bodyLength = view.getInt();
+        int bodyOffset = view.position();
+        if (bodyOffset + bodyLength != offset + length) {
+            throw new IllegalStateException("Enregistrement incohérent");
+        }
+        return new Record(owner, key, contentType, compressed, isDynamic, etag, lastModified, ttl, mustRevalidate,
+                tags != null ? CacheIndex.parseTags(Collections.singletonList(tags)) : Collections.emptyList(),
+                creationTime, sequence, segment, offset, length, bodyOffset, bodyLength);
+    }
+
+    private static String getString(ByteBuffer view) {
+        int length = view.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        view.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String indexKey(String owner, String key) {
+        return owner + '\n' + key;
+    }
+
+    private Segment open(int number, Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(segmentBytes, channel.size());
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        return new Segment(number, path, channel, buffer);
+    }
+
+    // Déposer une entrée (nouvelle ou remplaçante) pour le thread écrivain ; faux si elle ne tiendrait pas
+    // dans un segment ou si la file d'attente est pleine (la page reste seulement en mémoire)
+    public boolean put(String owner, String key, String contentType, boolean compressed,
+                       boolean isDynamic, String etag, String lastModified, long ttl,
+                       boolean mustRevalidate, List<String> tags, long creationTime, byte[] body) {
+        if (body.length + 1024 > segmentBytes) {
+            return false;
+        }
+        PendingWrite write = new PendingWrite(owner, key, contentType, compressed, isDynamic, etag, lastModified,
+                ttl, mustRevalidate, tags, creationTime, body);
+        lock.writeLock().lock();
+        try {
+            String indexKey = indexKey(owner, key);
+            PendingWrite replaced = pendingWrites.remove(indexKey);
+            if (replaced != null) {
+                pendingBytes -= replaced.body.length;
+            }
+            if (closed || pendingWrites.size() >= MAX_PENDING_WRITES || pendingBytes + body.length > MAX_PENDING_BYTES) {
+                droppedWrites.incrementAndGet();
+                return false;
+            }
+            pendingWrites.put(indexKey, write);
+            pendingBytes += body.length;
+            writesPending.signal();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Thread écrivain : une entrée à la fois, retirée de la file et écrite sous le même verrou exclusif
+    // (une suppression ne peut pas s'intercaler entre les deux)
+    private void writeLoop() {
+        lock.writeLock().lock();
+        try {
+            while (true) {
+                while (pendingWrites.isEmpty() && !closed) {
+                    writesPending.awaitUninterruptibly();
+                }
+                if (pendingWrites.isEmpty()) {
+                    return; // fermé, tout est écrit
+                }
+                Iterator<PendingWrite> first = pendingWrites.values().iterator();
+                PendingWrite write = first.next();
+                first.remove();
+                pendingBytes -= write.body.length;
+                append(write.owner, write.key, write.contentType, write.compressed, write.isDynamic, write.etag,
+                        write.lastModified, write.ttl, write.mustRevalidate, write.tags, write.creationTime,
+                        write.body, null);
+                if (pendingWrites.isEmpty()) {
+                    writesPending.signalAll(); // close() attend la fin des écritures
+                } else {
+                    // Laisser passer lectures et suppressions entre deux écritures
+                    lock.writeLock().unlock();
+                    lock.writeLock().lock();
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.error("Thread d'écriture du cache disque arrêté", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Écrire une entrée dans le segment actif (verrou exclusif tenu). replacing : enregistrement recopié
+    // par la compaction, écrit seulement s'il est encore celui de l'index. Faux si rien n'a été écrit.
+    private boolean append(String owner, String key, String contentType, boolean compressed,
+                           boolean isDynamic, String etag, String lastModified, long ttl,
+                           boolean mustRevalidate, List<String> tags, long creationTime, byte[] body,
+                           Record replacing) {
+        String indexKey = indexKey(owner, key);
+        if (replacing != null && index.get(indexKey) != replacing) {
+            return false;
+        }
+        try {
+            ByteArrayOutputStream headerBytes = new ByteArrayOutputStream(256);
+            DataOutputStream header = new DataOutputStream(headerBytes);
+            long sequence = nextSequence++;
+            header.writeLong(sequence);
+            header.writeLong(creationTime);
+            header.writeByte(isDynamic ? 1 : 0);
+            putString(header, owner);
+            putString(header, key);
+            putString(header, contentType);
+            header.writeByte(compressed ? 1 : 0);
+            putString(header, etag);
+            putString(header, lastModified);
+            header.writeLong(ttl);
+            header.writeByte(mustRevalidate ? 1 : 0);
+            putString(header, tags.isEmpty() ? null : String.join(" ", tags));
+            header.writeInt(body.length);
+            header.flush();
+
+            int length = FLAGS_OFFSET + 1 + 4 + headerBytes.size() + body.length;
+            if (length + 4 > segmentBytes) {
+                return false;
+            }
+            Segment segment = segmentWithRoom(length + 4);
+            if (replacing != null && index.get(indexKey) != replacing) {
+                return false; // perdue pendant le recyclage d'un segment
+            }
+            int offset = segment.writePosition;
+            ByteBuffer view = segment.buffer.duplicate();
+            view.position(offset);
+            view.putInt(MAGIC);
+            view.put((byte) 0);
+            view.putInt(length);
+            view.put(headerBytes.toByteArray());
+            int bodyOffset = view.position();
+            view.put(body);
+            view.putInt(0); // fin des données du segment (écrase d'éventuels restes d'un usage précédent)
+            segment.writePosition = offset + length;
+            segment.liveBytes += length;
+
+            Record record = new Record(owner, key, contentType, compressed, isDynamic, etag, lastModified, ttl,
+                    mustRevalidate, tags, creationTime, sequence, segment, offset, length, bodyOffset, body.length);
+            Record previous = index.put(indexKey, record);
+            if (previous != null) {
+                unindex(previous);
+                markDeleted(previous);
+            }
+            indexRecord(record);
+            return true;
+        } catch (IOException e) {
+            Log.warn("Erreur d'écriture du cache disque : {}", e.getMessage());
+            return false;
+        }
+    }
+
+    // Segment actif s'il reste la place nécessaire, sinon un segment libre, nouveau ou recyclé
+    private Segment segmentWithRoom(int needed) throws IOException {
+        Segment active = segments.peekLast();
+        if (active != null && active.writePosition + needed <= segmentBytes) {
+            return active;
+        }
+        Segment next = freeSegments.poll();
+        if (next == null && segments.size() + compactingSegments < maxSegments) {
+            int number = nextSegmentNumber++;
+            next = open(number, directory.resolve(String.format("%s%05d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX)));
+        }
+        if (next == null) {
+            // Disque plein : le plus ancien segment est réutilisé, ses entrées sont perdues
+            next = segments.poll();
+            dropEntries(next);
+            recycled.incrementAndGet();
+        }
+        reset(next);
+        segments.add(next);
+        return next;
+    }
+
+    // Oublier les entrées d'un segment sans parcourir tout l'index
+    private void dropEntries(Segment segment) {
+        for (Record record : new ArrayList<>(segment.records)) {
+            index.remove(indexKey(record.owner, record.key), record);
+            unindex(record);
+        }
+    }
+
+    private void indexRecord(Record record) {
+        keys.add(CacheIndex.pathOf(record.key), record.tags, record);
+        record.segment.records.add(record);
+    }
+
+    private void unindex(Record record) {
+        keys.remove(CacheIndex.pathOf(record.key), record.tags, record);
+        record.segment.records.remove(record);
+    }
+
+    private void reset(Segment segment) {
+        segment.buffer.putInt(0, 0);
+        segment.writePosition = 0;
+        segment.liveBytes = 0;
+    }
+
+    private void markDeleted(Record record) {
+        record.segment.buffer.put(record.offset + FLAGS_OFFSET, FLAG_DELETED);
+        record.segment.liveBytes -= record.length;
+    }
+
+    // Entrée de owner pour key (compte une lecture), ou null
+    public Record get(String owner, String key) {
+        Record record;
+        lock.readLock().lock();
+        try {
+            record = index.get(indexKey(owner, key));
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (record != null) {
+            record.hits.incrementAndGet();
+            reads.incrementAndGet();
+        }
+        return record;
+    }
+
+    // Entrée présente (ou en attente d'écriture) pour owner et key, sans compter de lecture
+    public boolean contains(String owner, String key) {
+        String indexKey = indexKey(owner, key);
+        lock.readLock().lock();
+        try {
+            return index.containsKey(indexKey) || pendingWrites.containsKey(indexKey);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Copie du corps, ou null si l'entrée a été remplacée ou supprimée entre-temps
+    public byte[] readBody(Record record) {
+        lock.readLock().lock();
+        try {
+            if (index.get(indexKey(record.owner, record.key)) != record) {
+                return null;
+            }
+            byte[] body = new byte[record.bodyLength];
+            ByteBuffer view = record.segment.buffer.duplicate();
+            view.position(record.bodyOffset);
+            view.get(body);
+            return body;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public boolean remove(String owner, String key) {
+        lock.writeLock().lock();
+        try {
+            boolean pending = cancelPending(write -> write.owner.equals(owner) && write.key.equals(key));
+            Record record = index.remove(indexKey(owner, key));
+            if (record == null) {
+                return pending;
+            }
+            unindex(record);
+            markDeleted(record);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Supprimer key (et ses variantes "key#...") chez tous les propriétaires ; retourne les propriétaires concernés
+    public Set<String> removeKey(String key) {
+        Set<String> owners = new HashSet<>();
+        String variantPrefix = key + "#";
+        lock.writeLock().lock();
+        try {
+            cancelPending(write -> write.key.equals(key) || write.key.startsWith(variantPrefix));
+            for (Record record : keys.withPath(CacheIndex.pathOf(key))) {
+                if ((record.key.equals(key) || record.key.startsWith(variantPrefix)) && removeRecord(record)) {
+                    owners.add(record.owner);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return owners;
+    }
+
+    // Invalidation groupée : toutes les entrées d'un chemin, d'un préfixe de chemin ou d'un tag.
+    // Retourne les enregistrements supprimés.
+    public List<Record> removePath(String path) {
+        lock.writeLock().lock();
+        try {
+            cancelPending(write -> CacheIndex.pathOf(write.key).equals(path));
+            return removeAll(keys.withPath(path));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Record> removePrefix(String prefix) {
+        lock.writeLock().lock();
+        try {
+            cancelPending(write -> CacheIndex.pathOf(write.key).startsWith(prefix));
+            return removeAll(keys.withPrefix(prefix));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<Record> removeTag(String tag) {
+        lock.writeLock().lock();
+        try {
+            cancelPending(write -> write.tags.contains(tag));
+            return removeAll(keys.withTag(tag));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Écritures en attente annulées par une suppression (verrou exclusif tenu) ; vrai si au moins une l'a été
+    private boolean cancelPending(Predicate<PendingWrite> removed) {
+        boolean cancelled = false;
+        Iterator<PendingWrite> writes = pendingWrites.values().iterator();
+        while (writes.hasNext()) {
+            PendingWrite write = writes.next();
+            if (removed.test(write)) {
+                writes.remove();
+                pendingBytes -= write.body.length;
+                cancelled = true;
+            }
+        }
+        return cancelled;
+    }
+
+    private List<Record> removeAll(List<Record> records) {
+        List<Record> removed = new ArrayList<>(records.size());
+        for (Record record : records) {
+            if (removeRecord(record)) {
+                removed.add(record);
+            }
+        }
+        return removed;
+    }
+
+    private boolean removeRecord(Record record) {
+        if (!index.remove(indexKey(record.owner, record.key), record)) {
+            return false;
+        }
+        unindex(record);
+        markDeleted(record);
+        return true;
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            pendingWrites.clear();
+            pendingBytes = 0;
+            for (Record record : index.values()) {
+                markDeleted(record);
+                record.segment.records.remove(record);
+            }
+            index.clear();
+            keys.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Marquer les entrées expirées puis recopier les entrées vivantes des segments trop creux
+    // dans le segment actif ; les segments vidés redeviennent libres. Retourne le nombre de segments compactés.
+    // Le verrou exclusif n'est tenu que par entrée : les lectures continuent pendant la compaction.
+    public int compact(Predicate<Record> expired) {
+        List<Record> expiredRecords = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Record record : index.values()) {
+                if (expired.test(record)) {
+                    expiredRecords.add(record);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Record record : expiredRecords) {
+            lock.writeLock().lock();
+            try {
+                removeRecord(record);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        // Segments retirés de la liste : ni recyclés ni écrits pendant leur compaction
+        List<Segment> candidates = new ArrayList<>();
+        lock.writeLock().lock();
+        try {
+            Segment active = segments.peekLast();
+            for (Segment segment : segments) {
+                if (segment != active && segment.liveBytes < segment.writePosition * COMPACTION_THRESHOLD) {
+                    candidates.add(segment);
+                }
+            }
+            segments.removeAll(candidates);
+            compactingSegments += candidates.size();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        for (Segment segment : candidates) {
+            List<Record> live;
+            lock.readLock().lock();
+            try {
+                live = new ArrayList<>(segment.records);
+            } finally {
+                lock.readLock().unlock();
+            }
+            live.sort(Comparator.comparingLong(record -> record.sequence));
+            for (Record record : live) {
+                byte[] body = readBody(record); // le segment ne change plus : copie sous verrou partagé
+                if (body == null) {
+                    continue;
+                }
+                lock.writeLock().lock();
+                try {
+                    append(record.owner, record.key, record.contentType, record.compressed, record.isDynamic,
+                            record.etag, record.lastModified, record.ttl, record.mustRevalidate, record.tags,
+                            record.creationTime, body, record);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            lock.writeLock().lock();
+            try {
+                dropEntries(segment); // entrées qui n'ont pas pu être recopiées
+                reset(segment);
+                freeSegments.add(segment);
+                compactingSegments--;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        compactions.addAndGet(candidates.size());
+        flush();
+        return candidates.size();
+    }
+
+    // Forcer l'écriture des pages modifiées sur le disque (msync hors verrou : requêtes non bloquées)
+    public void flush() {
+        List<Segment> written;
+        lock.readLock().lock();
+        try {
+            written = new ArrayList<>(segments);
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (Segment segment : written) {
+            segment.buffer.force();
+        }
+    }
+
+    // Écrire les entrées en attente, puis fermer les segments
+    public void close() {
+        lock.writeLock().lock();
+        try {
+            closed = true;
+            writesPending.signalAll();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+        lock.writeLock().lock();
+        try {
+            for (Segment segment : segments) {
+                closeQuietly(segment);
+            }
+            for (Segment segment : freeSegments) {
+                closeQuietly(segment);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void closeQuietly(Segment segment) {
+        try {
+            segment.channel.close();
+        } catch (IOException e) {
+            // rien à faire à l'arrêt
+        }
+    }
+
+    public void recordPromotion() {
+        promotions.incrementAndGet();
+    }
+
+    public int getEntryCount() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getSegmentCount() {
+        lock.readLock().lock();
+        try {
+            return segments.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getPendingWriteCount() {
+        lock.readLock().lock();
+        try {
+            return pendingWrites.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getReadCount() { return reads.get(); }
+    public long getPromotionCount() { return promotions.get(); }
+    public long getCompactionCount() { return compactions.get(); }
+    public long getRecycledCount() { return recycled.get(); }
+    public long getDroppedWriteCount() { return droppedWrites.get(); }
+    public int getMaxSegments() { return maxSegments; }
+
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            long total = 0;
+            for (Segment segment : segments) {
+                total += segment.liveBytes;
+            }
+            return total;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,435 @@
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Politique d'éviction du cache : choisit la victime quand la limite d'entrées ou d'octets
+// est atteinte à l'insertion. Compteurs de hits/misses pour comparer les politiques.
+// Les méthodes publiques prennent le verrou de la politique : les implémentations n'ont pas à être
+// thread-safe. Exception : recordHit ne fait que déposer l'accès dans un tampon par groupe de threads,
+// rejoué sous le verrou avant chaque insertion, suppression ou choix de victime (ou dès qu'un tampon
+// se remplit, si le verrou est libre). Tampon plein ou concurrence sur l'emplacement : l'accès est perdu,
+// l'ordre des entrées reste approché sans bloquer les lectures.
+public abstract class EvictionPolicy<K> {
+    private static final int READ_BUFFER_SIZE = 16; // accès en attente par tampon (puissance de 2)
+    private static final int READ_BUFFER_MASK = READ_BUFFER_SIZE - 1;
+    private static final int DRAIN_THRESHOLD = READ_BUFFER_SIZE / 2;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ReadBuffer[] readBuffers = new ReadBuffer[readBufferCount()];
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    protected EvictionPolicy() {
+        for (int i = 0; i < readBuffers.length; i++) {
+            readBuffers[i] = new ReadBuffer();
+        }
+    }
+
+    public static <K> EvictionPolicy<K> create(String name, long maximumEntries) {
+        if (name == null) {
+            return new TinyLfu<>(maximumEntries);
+        }
+        switch (name.trim().toLowerCase()) {
+            case "lru":
+                return new Lru<>();
+            case "lfu":
+                return new Lfu<>();
+            default:
+                return new TinyLfu<>(maximumEntries);
+        }
+    }
+
+    public abstract String getName();
+
+    protected abstract void onAccess(K key);
+
+    protected void onMiss(K key) {
+    }
+
+    protected abstract void onInsert(K key);
+
+    protected abstract void onRemove(K key);
+
+    // Prochaine entrée à évincer, ou null si la politique ne suit aucune entrée
+    protected abstract K victim();
+
+    // Filtre d'admission : faux si la nouvelle entrée vaut moins que la victime
+    protected boolean shouldAdmit(K candidate, K victim) {
+        return true;
+    }
+
+    // Chemin des hits : sans verrou, sauf vidage opportuniste d'un tampon à moitié plein
+    public void recordHit(K key) {
+        hits.increment();
+        ReadBuffer buffer = readBuffers[stripe()];
+        boolean recorded = buffer.offer(key);
+        if ((!recorded || buffer.pending() >= DRAIN_THRESHOLD) && lock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    public void recordMiss(K key) {
+        misses.increment();
+        lock.lock();
+        try {
+            drainReadBuffers();
+            onMiss(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordInsert(K key) {
+        lock.lock();
+        try {
+            drainReadBuffers();
+            onInsert(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordRemoval(K key) {
+        lock.lock();
+        try {
+            drainReadBuffers();
+            onRemove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void recordEviction() {
+        evictions.increment();
+    }
+
+    public K selectVictim() {
+        lock.lock();
+        try {
+            drainReadBuffers();
+            return victim();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean admit(K candidate, K victim) {
+        lock.lock();
+        try {
+            if (shouldAdmit(candidate, victim)) {
+                return true;
+            }
+        } finally {
+            lock.unlock();
+        }
+        rejections.increment();
+        return false;
+    }
+
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getEvictions() { return evictions.sum(); }
+    public long getRejections() { return rejections.sum(); }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    // Rejouer les accès en attente (verrou tenu)
+    @SuppressWarnings("unchecked")
+    private void drainReadBuffers() {
+        for (ReadBuffer buffer : readBuffers) {
+            long head = buffer.readCounter;
+            long tail = buffer.writeCounter.get();
+            for (; head < tail; head++) {
+                int slot = (int) (head & READ_BUFFER_MASK);
+                Object key = buffer.slots.get(slot);
+                if (key == null) {
+                    break; // écriture réservée mais pas encore visible : reprise au prochain vidage
+                }
+                buffer.slots.lazySet(slot, null);
+                onAccess((K) key); // entrée supprimée entre-temps : ignorée par les politiques
+            }
+            buffer.readCounter = head;
+        }
+    }
+
+    // Tampon d'un groupe de threads, choisi par identifiant de thread
+    private int stripe() {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9e3779b9;
+        return (hash ^ (hash >>> 16)) & (readBuffers.length - 1);
+    }
+
+    private static int readBufferCount() {
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 4 - 1) << 1;
+        return Math.min(64, Math.max(4, stripes));
+    }
+
+    // Anneau à écritures concurrentes (une réservation par compareAndSet), lu sous le verrou
+    private static final class ReadBuffer {
+        final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(READ_BUFFER_SIZE);
+        final AtomicLong writeCounter = new AtomicLong();
+        volatile long readCounter; // écrit seulement sous le verrou
+
+        // Faux si le tampon est plein ou si un autre thread vient de prendre l'emplacement
+        boolean offer(Object key) {
+            long tail = writeCounter.get();
+            if (tail - readCounter >= READ_BUFFER_SIZE || !writeCounter.compareAndSet(tail, tail + 1)) {
+                return false;
+            }
+            slots.lazySet((int) (tail & READ_BUFFER_MASK), key);
+            return true;
+        }
+
+        long pending() {
+            return writeCounter.get() - readCounter;
+        }
+    }
+
+    // Moins récemment utilisée
+    static class Lru<K> extends EvictionPolicy<K> {
+        private final LinkedHashMap<K, Boolean> order = new LinkedHashMap<>(16, 0.75f, true);
+
+        @Override
+        public String getName() { return "LRU"; }
+
+        @Override
+        protected void onAccess(K key) {
+            order.get(key);
+        }
+
+        @Override
+        protected void onInsert(K key) {
+            order.put(key, Boolean.TRUE);
+        }
+
+        @Override
+        protected void onRemove(K key) {
+            order.remove(key);
+        }
+
+        @Override
+        protected K victim() {
+            return order.isEmpty() ? null : order.keySet().iterator().next();
+        }
+    }
+
+    // Moins fréquemment utilisée (à fréquence égale, la plus ancienne)
+    static class Lfu<K> extends EvictionPolicy<K> {
+        private static class Node<K> {
+            final K key;
+            long frequency;
+            long sequence;
+
+            Node(K key, long sequence) {
+                this.key = key;
+                this.sequence = sequence;
+            }
+        }
+
+        private final Map<K, Node<K>> nodes = new HashMap<>();
+        private final TreeSet<Node<K>> byFrequency = new TreeSet<>(
+                Comparator.<Node<K>>comparingLong(node -> node.frequency).thenComparingLong(node -> node.sequence));
+        private long sequence;
+
+        @Override
+        public String getName() { return "LFU"; }
+
+        @Override
+        protected void onAccess(K key) {
+            Node<K> node = nodes.get(key);
+            if (node != null) {
+                byFrequency.remove(node);
+                node.frequency++;
+                node.sequence = ++sequence;
+                byFrequency.add(node);
+            }
+        }
+
+        @Override
+        protected void onInsert(K key) {
+            onRemove(key);
+            Node<K> node = new Node<>(key, ++sequence);
+            node.frequency = 1;
+            nodes.put(key, node);
+            byFrequency.add(node);
+        }
+
+        @Override
+        protected void onRemove(K key) {
+            Node<K> node = nodes.remove(key);
+            if (node != null) {
+                byFrequency.remove(node);
+            }
+        }
+
+        @Override
+        protected K victim() {
+            return byFrequency.isEmpty() ? null : byFrequency.first().key;
+        }
+    }
+
+    // W-TinyLFU : petite fenêtre LRU pour les nouvelles entrées, segment principal SLRU
+    // (probation / protégé) et esquisse de fréquences (count-min) pour décider qui,
+    // du candidat sortant de la fenêtre ou de la victime du segment principal, reste en cache.
+    static class TinyLfu<K> extends EvictionPolicy<K> {
+        private static final double WINDOW_RATIO = 0.01;
+        private static final double PROTECTED_RATIO = 0.8;
+
+        private final LinkedHashMap<K, Boolean> window = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Boolean> probation = new LinkedHashMap<>(16, 0.75f, true);
+        private final LinkedHashMap<K, Boolean> protectedSegment = new LinkedHashMap<>(16, 0.75f, true);
+        private final FrequencySketch sketch;
+
+        TinyLfu(long maximumEntries) {
+            this.sketch = new FrequencySketch(maximumEntries);
+        }
+
+        @Override
+        public String getName() { return "W-TinyLFU"; }
+
+        private int size() {
+            return window.size() + probation.size() + protectedSegment.size();
+        }
+
+        @Override
+        protected void onAccess(K key) {
+            sketch.increment(key);
+            if (window.containsKey(key)) {
+                window.get(key);
+            } else if (probation.remove(key) != null) {
+                // Seconde utilisation : promotion dans le segment protégé
+                protectedSegment.put(key, Boolean.TRUE);
+                int protectedCapacity = Math.max(1, (int) ((size() - window.size()) * PROTECTED_RATIO));
+                while (protectedSegment.size() > protectedCapacity) {
+                    K demoted = eldest(protectedSegment);
+                    protectedSegment.remove(demoted);
+                    probation.put(demoted, Boolean.TRUE);
+                }
+            } else {
+                protectedSegment.get(key);
+            }
+        }
+
+        @Override
+        protected void onMiss(K key) {
+            sketch.increment(key);
+        }
+
+        @Override
+        protected void onInsert(K key) {
+            onRemove(key);
+            window.put(key, Boolean.TRUE);
+            // Fenêtre pleine : sa plus ancienne entrée passe en probation
+            int windowCapacity = Math.max(1, (int) (size() * WINDOW_RATIO));
+            while (window.size() > windowCapacity) {
+                K candidate = eldest(window);
+                window.remove(candidate);
+                probation.put(candidate, Boolean.TRUE);
+            }
+        }
+
+        @Override
+        protected void onRemove(K key) {
+            if (window.remove(key) == null && probation.remove(key) == null) {
+                protectedSegment.remove(key);
+            }
+        }
+
+        @Override
+        protected K victim() {
+            K windowCandidate = eldest(window);
+            K mainVictim = probation.isEmpty() ? eldest(protectedSegment) : eldest(probation);
+            if (mainVictim == null) {
+                return windowCandidate;
+            }
+            if (windowCandidate == null) {
+                return mainVictim;
+            }
+            // Le candidat de la fenêtre n'entre dans le segment principal que s'il est plus fréquent
+            if (sketch.frequency(windowCandidate) > sketch.frequency(mainVictim)) {
+                window.remove(windowCandidate);
+                probation.put(windowCandidate, Boolean.TRUE);
+                return mainVictim;
+            }
+            return windowCandidate;
+        }
+
+        @Override
+        protected boolean shouldAdmit(K candidate, K victim) {
+            // Une nouvelle entrée n'évince pas une entrée protégée plus populaire qu'elle
+            return !protectedSegment.containsKey(victim) || sketch.frequency(candidate) >= sketch.frequency(victim);
+        }
+
+        private static <K> K eldest(LinkedHashMap<K, Boolean> segment) {
+            return segment.isEmpty() ? null : segment.keySet().iterator().next();
+        }
+    }
+
+    // Esquisse count-min à 4 lignes, compteurs plafonnés à 15 et divisés par deux
+    // périodiquement pour oublier les anciennes popularités
+    static class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int[] SEEDS = {0x97cb3127, 0xc3a5c85c, 0x31848bab, 0x8e7c5a4d};
+
+        private final byte[][] table;
+        private final int mask;
+        private final long resetThreshold;
+        private long additions;
+
+        FrequencySketch(long maximumEntries) {
+            int width = Integer.highestOneBit((int) Math.max(64, Math.min(maximumEntries, 1 << 24)) - 1) << 1;
+            this.table = new byte[DEPTH][width];
+            this.mask = width - 1;
+            this.resetThreshold = 10L * width;
+        }
+
+        private int index(Object key, int row) {
+            int hash = key.hashCode() * SEEDS[row];
+            hash ^= hash >>> 16;
+            return hash & mask;
+        }
+
+        void increment(Object key) {
+            boolean incremented = false;
+            for (int row = 0; row < DEPTH; row++) {
+                int i = index(key, row);
+                if (table[row][i] < 15) {
+                    table[row][i]++;
+                    incremented = true;
+                }
+            }
+            if (incremented && ++additions >= resetThreshold) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int min = 15;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, table[row][index(key, row)]);
+            }
+            return min;
+        }
+
+        private void reset() {
+            for (byte[] row : table) {
+                for (int i = 0; i < row.length; i++) {
+                    row[i] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+import java.util.*;
+
+// Roue temporelle hiérarchique pour l'expiration des entrées du cache.
+// 4 niveaux de 64 cases : une case du niveau 0 couvre un tick, une case du niveau n couvre 64^n ticks.
+// À chaque tick, seule la case courante est traitée : le coût est proportionnel aux entrées
+// qui expirent (plus quelques cascades), et non à la taille du cache.
+public class ExpirationWheel<K> {
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SIZE - 1;
+    private static final int LEVELS = 4;
+
+    private static final class Timer<K> {
+        final K key;
+        final long deadline; // date d'expiration (ms)
+        int level;
+        int slot;
+
+        Timer(K key, long deadline) {
+            this.key = key;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickMillis;
+    private final List<List<Set<Timer<K>>>> wheels = new ArrayList<>();
+    private final Map<K, Timer<K>> timers = new HashMap<>();
+    private long currentTick;
+    private long expiredCount;
+    private volatile long now; // horloge mise à jour à chaque tick (évite currentTimeMillis à chaque lecture)
+
+    public ExpirationWheel(long tickMillis, long startTime) {
+        this.tickMillis = tickMillis;
+        this.currentTick = startTime / tickMillis;
+        this.now = startTime;
+        for (int level = 0; level < LEVELS; level++) {
+            List<Set<Timer<K>>> slots = new ArrayList<>(WHEEL_SIZE);
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                slots.add(new LinkedHashSet<>());
+            }
+            wheels.add(slots);
+        }
+    }
+
+    // Heure courante à la résolution du tick
+    public long now() {
+        return now;
+    }
+
+    // Programmer (ou reprogrammer) l'expiration de key
+    public synchronized void schedule(K key, long deadline) {
+        cancel(key);
+        Timer<K> timer = new Timer<>(key, deadline);
+        timers.put(key, timer);
+        place(timer);
+    }
+
+    public synchronized void cancel(K key) {
+        Timer<K> timer = timers.remove(key);
+        if (timer != null) {
+            wheels.get(timer.level).get(timer.slot).remove(timer);
+        }
+    }
+
+    public synchronized int getScheduledCount() { return timers.size(); }
+    public synchronized long getExpiredCount() { return expiredCount; }
+
+    // Ranger le minuteur au niveau dont la portée couvre son échéance
+    private void place(Timer<K> timer) {
+        long deadlineTick = Math.max(currentTick + 1, (timer.deadline + tickMillis - 1) / tickMillis);
+        long delta = deadlineTick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (WHEEL_BITS * (level + 1))) {
+            level++;
+        }
+        // Au-delà de la portée du dernier niveau, la case est revisitée et le minuteur reprogrammé
+        timer.level = level;
+        timer.slot = (int) ((deadlineTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+        wheels.get(level).get(timer.slot).add(timer);
+    }
+
+    // Avancer jusqu'à time et retourner les clés arrivées à échéance
+    public synchronized List<K> advance(long time) {
+        now = time;
+        List<K> expired = new ArrayList<>();
+        long targetTick = time / tickMillis;
+        while (currentTick < targetTick) {
+            currentTick++;
+            // Cascade : quand un niveau fait un tour complet, la case suivante du niveau supérieur redescend
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) == 0) {
+                    int slot = (int) ((currentTick >>> (WHEEL_BITS * level)) & WHEEL_MASK);
+                    redistribute(wheels.get(level).get(slot), expired);
+                }
+            }
+            redistribute(wheels.get(0).get((int) (currentTick & WHEEL_MASK)), expired);
+        }
+        return expired;
+    }
+
+    private void redistribute(Set<Timer<K>> bucket, List<K> expired) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        List<Timer<K>> timersInBucket = new ArrayList<>(bucket);
+        bucket.clear();
+        long tickStart = currentTick * tickMillis;
+        for (Timer<K> timer : timersInBucket) {
+            // Jamais en avance : une échéance au milieu du tick part au tick suivant
+            if (timer.deadline <= tickStart) {
+                timers.remove(timer.key);
+                expired.add(timer.key);
+                expiredCount++;
+            } else {
+                place(timer);
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Compression gzip des pages en cache : faite une fois à l'insertion, les octets compressés
+// sont envoyés tels quels aux navigateurs qui acceptent gzip et décompressés pour les autres.
+public final class GzipCodec {
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private GzipCodec() {
+    }
+
+    // Types textuels qui gagnent à être compressés (les images, archives... le sont déjà)
+    public static boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase();
+        return type.startsWith("text/") || type.contains("javascript") || type.contains("json") ||
+                type.contains("xml") || type.contains("svg");
+    }
+
+    // Vrai si Accept-Encoding autorise gzip ("gzip", "gzip;q=0.5", "*" ; pas "gzip;q=0")
+    public static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        boolean wildcard = false;
+        for (String candidate : acceptEncoding.split(",")) {
+            String[] parts = candidate.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            boolean allowed = true;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        allowed = Double.parseDouble(parameter.substring(2).trim()) > 0;
+                    } catch (NumberFormatException e) {
+                        allowed = false;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                return allowed; // gzip cité explicitement : prioritaire sur "*"
+            }
+            if (coding.equals("*")) {
+                wildcard = allowed;
+            }
+        }
+        return wildcard;
+    }
+
+    public static byte[] compress(byte[] data, int level) {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed, BUFFER_SIZE) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // impossible en mémoire
+        }
+        return compressed.toByteArray();
+    }
+
+    public static byte[] decompress(byte[] data) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data), BUFFER_SIZE)) {
+            return gzip.readAllBytes();
+        }
+    }
+
+    // Niveau de conf.json borné aux valeurs de Deflater
+    public static int level(long configured) {
+        if (configured < Deflater.BEST_SPEED || configured > Deflater.BEST_COMPRESSION) {
+            return Deflater.DEFAULT_COMPRESSION;
+        }
+        return (int) configured;
+    }
+}
@@ -0,0 +1,34 @@
+import java.net.InetAddress;
+import java.util.Collections;
+import java.util.Map;
+
+// Requête HTTP complète, indépendante de la façon dont elle a été lue (socket bloquante ou NIO)
+public class HttpRequest {
+    private final String method; // GET, POST...
+    private final String target; // chemin brut avec la query : /search.php?query=test
+    private final String version; // HTTP/1.1
+    private final Map<String, String> headers; // noms d'en-têtes en minuscules
+    private final byte[] body;
+    private final InetAddress remoteAddress;
+
+    public HttpRequest(String method, String target, String version, Map<String, String> headers,
+                       byte[] body, InetAddress remoteAddress) {
+        this.method = method;
+        this.target = target;
+        this.version = version;
+        this.headers = headers;
+        this.body = body;
+        this.remoteAddress = remoteAddress;
+    }
+
+    public String getMethod() { return method; }
+    public String getTarget() { return target; }
+    public String getVersion() { return version; }
+    public Map<String, String> getHeaders() { return Collections.unmodifiableMap(headers); }
+    public byte[] getBody() { return body; }
+    public InetAddress getRemoteAddress() { return remoteAddress; }
+
+    public String getHeader(String name) {
+        return headers.get(name.toLowerCase());
+    }
+}
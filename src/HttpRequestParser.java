@@ -0,0 +1,416 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Analyseur HTTP incrémental : consomme des ByteBuffer au fil des lectures (NIO ou socket bloquante)
+// et ne rend une requête que lorsqu'elle est complète (ligne, en-têtes et corps).
+// L'analyse se fait octet par octet, en une passe, sans découpage en chaînes intermédiaires ;
+// la taille d'une ligne, le nombre d'en-têtes et la taille du corps sont bornés.
+public class HttpRequestParser {
+    public static final int DEFAULT_MAX_LINE_BYTES = 8 * 1024;
+    public static final int DEFAULT_MAX_HEADER_COUNT = 100;
+    public static final int DEFAULT_MAX_BODY_BYTES = 10 * 1024 * 1024;
+    // Tampon initial du corps, doublé au fil des octets reçus (jusqu'à Content-Length) :
+    // un Content-Length annoncé sans corps ne réserve pas max_body_bytes
+    private static final int INITIAL_BODY_BYTES = 16 * 1024;
+
+    // Requête refusée ; status est la ligne de statut à renvoyer au client
+    public static class MalformedRequestException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final String status;
+
+        public MalformedRequestException(String message) {
+            this("400 Bad Request", message);
+        }
+
+        public MalformedRequestException(String status, String message) {
+            super(message);
+            this.status = status;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+    }
+
+    private enum State { REQUEST_LINE, HEADERS, BODY }
+
+    // Méthodes et en-têtes courants : rendus sans allouer de chaîne
+    private static final String[] KNOWN_METHODS = { "GET", "POST", "HEAD", "PUT", "DELETE", "OPTIONS", "PATCH" };
+    private static final String[] KNOWN_HEADERS = {
+            "host", "user-agent", "accept", "accept-language", "accept-encoding", "connection", "cookie",
+            "content-length", "content-type", "referer", "cache-control", "pragma", "if-none-match",
+            "if-modified-since", "upgrade-insecure-requests", "origin", "dnt", "transfer-encoding",
+            "sec-fetch-site", "sec-fetch-mode", "sec-fetch-dest", "sec-fetch-user"
+    };
+
+    private final int maxLineBytes;
+    private final int maxHeaderCount;
+    private final int maxBodyBytes;
+
+    private State state = State.REQUEST_LINE;
+    private byte[] lineBuffer = new byte[256];
+    private int lineLength;
+
+    private String method;
+    private String target;
+    private String version;
+    private Map<String, String> headers = new HashMap<>();
+    private int headerCount; // lignes d'en-tête reçues, doublons compris
+    private byte[] body;
+    private int bodyRead;
+    private int bodyLength; // Content-Length annoncé
+
+    public HttpRequestParser() {
+        this(DEFAULT_MAX_LINE_BYTES, DEFAULT_MAX_HEADER_COUNT, DEFAULT_MAX_BODY_BYTES);
+    }
+
+    public HttpRequestParser(int maxLineBytes, int maxHeaderCount, int maxBodyBytes) {
+        this.maxLineBytes = maxLineBytes;
+        this.maxHeaderCount = maxHeaderCount;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    // Consomme les octets disponibles de buffer. Retourne la requête si elle est complète,
+    // sinon null (les octets déjà lus sont conservés pour le prochain appel).
+    // Les octets qui suivent une requête complète restent dans buffer.
+    public HttpRequest parse(ByteBuffer buffer, InetAddress remoteAddress) throws MalformedRequestException {
+        while (buffer.hasRemaining()) {
+            if (state == State.BODY) {
+                if (bodyRead == body.length) {
+                    body = Arrays.copyOf(body, (int) Math.min(bodyLength, 2L * body.length));
+                }
+                int count = Math.min(buffer.remaining(), body.length - bodyRead);
+                buffer.get(body, bodyRead, count);
+                bodyRead += count;
+                if (bodyRead == bodyLength) {
+                    return complete(remoteAddress);
+                }
+                continue;
+            }
+
+            // Copier jusqu'à la fin de ligne (ou la fin des octets disponibles) dans lineBuffer
+            if (!readLine(buffer)) {
+                continue;
+            }
+
+            // Fin de ligne : ignorer le \r final
+            int length = lineLength > 0 && lineBuffer[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+            lineLength = 0;
+
+            if (state == State.REQUEST_LINE) {
+                if (length == 0) {
+                    continue; // lignes vides tolérées avant la requête
+                }
+                parseRequestLine(length);
+                state = State.HEADERS;
+            } else if (length > 0) {
+                parseHeader(length);
+            } else {
+                // Fin des en-têtes
+                int contentLength = contentLength();
+                if (contentLength == 0) {
+                    body = new byte[0];
+                    return complete(remoteAddress);
+                }
+                body = new byte[Math.min(contentLength, INITIAL_BODY_BYTES)];
+                bodyRead = 0;
+                bodyLength = contentLength;
+                state = State.BODY;
+            }
+        }
+        return null;
+    }
+
+    // Vrai si des octets d'une requête incomplète ont déjà été reçus
+    public boolean hasPartialRequest() {
+        return state != State.REQUEST_LINE || lineLength > 0;
+    }
+
+    // METHODE cible [HTTP/x.y] ; sans version, la requête est traitée comme HTTP/1.0
+    private void parseRequestLine(int length) throws MalformedRequestException {
+        int firstSpace = indexOf(' ', 0, length);
+        int lastSpace = lastIndexOf(' ', length);
+        if (firstSpace <= 0 || firstSpace == length - 1) {
+            throw new MalformedRequestException("Ligne de requête invalide : " + latin1(0, length));
+        }
+        for (int i = 0; i < firstSpace; i++) {
+            byte c = lineBuffer[i];
+            if (c < 'A' || c > 'Z') {
+                throw new MalformedRequestException("Méthode invalide : " + latin1(0, firstSpace));
+            }
+        }
+        method = known(KNOWN_METHODS, 0, firstSpace, false);
+
+        if (lastSpace == firstSpace) {
+            target = latin1(firstSpace + 1, length);
+            version = "HTTP/1.0";
+        } else {
+            target = latin1(firstSpace + 1, lastSpace);
+            version = parseVersion(lastSpace + 1, length);
+        }
+        if (target.isEmpty() || target.indexOf(' ') >= 0) {
+            throw new MalformedRequestException("Cible de requête invalide : " + target);
+        }
+    }
+
+    private String parseVersion(int start, int end) throws MalformedRequestException {
+        if (end - start == 8 && lineBuffer[start] == 'H' && lineBuffer[start + 1] == 'T' &&
+                lineBuffer[start + 2] == 'T' && lineBuffer[start + 3] == 'P' && lineBuffer[start + 4] == '/' &&
+                lineBuffer[start + 6] == '.') {
+            byte major = lineBuffer[start + 5];
+            byte minor = lineBuffer[start + 7];
+            if (major == '1' && minor == '1') {
+                return "HTTP/1.1";
+            }
+            if (major == '1' && minor == '0') {
+                return "HTTP/1.0";
+            }
+            if (major >= '0' && major <= '9' && minor >= '0' && minor <= '9') {
+                return latin1(start, end);
+            }
+        }
+        throw new MalformedRequestException("Version HTTP invalide : " + latin1(start, end));
+    }
+
+    // Nom: valeur ; le nom ne contient pas d'espace, la valeur est débarrassée des espaces autour
+    private void parseHeader(int length) throws MalformedRequestException {
+        if (++headerCount > maxHeaderCount) {
+            throw new MalformedRequestException("431 Request Header Fields Too Large",
+                    "Plus de " + maxHeaderCount + " en-têtes");
+        }
+        int colon = indexOf(':', 0, length);
+        if (colon <= 0) {
+            throw new MalformedRequestException("En-tête invalide : " + latin1(0, length));
+        }
+        for (int i = 0; i < colon; i++) {
+            byte c = lineBuffer[i];
+            if (c <= ' ' || c == 127) {
+                throw new MalformedRequestException("Nom d'en-tête invalide : " + latin1(0, colon));
+            }
+        }
+        int start = colon + 1;
+        int end = length;
+        while (start < end && isWhitespace(lineBuffer[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(lineBuffer[end - 1])) {
+            end--;
+        }
+        headers.put(known(KNOWN_HEADERS, 0, colon, true), latin1(start, end));
+    }
+
+    private int contentLength() throws MalformedRequestException {
+        if (headers.containsKey("transfer-encoding")) {
+            throw new MalformedRequestException("411 Length Required",
+                    "Corps de requête par blocs non pris en charge, Content-Length requis");
+        }
+        String value = headers.get("content-length");
+        if (value == null) {
+            return 0;
+        }
+        if (value.isEmpty()) {
+            throw new MalformedRequestException("Content-Length invalide : " + value);
+        }
+        long length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new MalformedRequestException("Content-Length invalide : " + value);
+            }
+            length = length * 10 + (c - '0');
+            if (length > maxBodyBytes) {
+                throw new MalformedRequestException("413 Payload Too Large",
+                        "Corps de requête supérieur à " + maxBodyBytes + " octets");
+            }
+        }
+        return (int) length;
+    }
+
+    // Vrai si le '\n' de fin de ligne a été lu (il n'est pas copié)
+    private boolean readLine(ByteBuffer buffer) throws MalformedRequestException {
+        int start = buffer.position();
+        int limit = buffer.limit();
+        int end = start;
+        boolean complete = false;
+        if (buffer.hasArray()) {
+            byte[] array = buffer.array();
+            int offset = buffer.arrayOffset();
+            while (end < limit && array[offset + end] != '\n') {
+                end++;
+            }
+            complete = end < limit;
+            ensureLineCapacity(end - start);
+            System.arraycopy(array, offset + start, lineBuffer, lineLength, end - start);
+            lineLength += end - start;
+        } else {
+            while (end < limit) {
+                byte b = buffer.get(end);
+                if (b == '\n') {
+                    complete = true;
+                    break;
+                }
+                ensureLineCapacity(1);
+                lineBuffer[lineLength++] = b;
+                end++;
+            }
+        }
+        buffer.position(complete ? end + 1 : end);
+        return complete;
+    }
+
+    private void ensureLineCapacity(int extra) throws MalformedRequestException {
+        int needed = lineLength + extra;
+        if (needed <= lineBuffer.length) {
+            return;
+        }
+        if (needed > maxLineBytes) {
+            throw state == State.REQUEST_LINE
+                    ? new MalformedRequestException("414 URI Too Long", "Ligne de requête supérieure à " + maxLineBytes + " octets")
+                    : new MalformedRequestException("431 Request Header Fields Too Large", "En-tête supérieur à " + maxLineBytes + " octets");
+        }
+        byte[] larger = new byte[Math.min(Math.max(lineBuffer.length * 2, needed), maxLineBytes)];
+        System.arraycopy(lineBuffer, 0, larger, 0, lineLength);
+        lineBuffer = larger;
+    }
+
+    private int indexOf(char c, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (lineBuffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int lastIndexOf(char c, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (lineBuffer[i] == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private String latin1(int start, int end) {
+        return new String(lineBuffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    // Chaîne connue égale à lineBuffer[start, end) (sans tenir compte de la casse si ignoreCase),
+    // sinon une nouvelle chaîne (en minuscules si ignoreCase)
+    private String known(String[] candidates, int start, int end, boolean ignoreCase) {
+        int length = end - start;
+        for (String candidate : candidates) {
+            if (candidate.length() == length && regionMatches(candidate, start, ignoreCase)) {
+                return candidate;
+            }
+        }
+        if (!ignoreCase) {
+            return latin1(start, end);
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = toLower(lineBuffer[start + i]);
+        }
+        return new String(chars);
+    }
+
+    private boolean regionMatches(String candidate, int start, boolean ignoreCase) {
+        for (int i = 0; i < candidate.length(); i++) {
+            char c = (char) (lineBuffer[start + i] & 0xFF);
+            if (c != candidate.charAt(i) && (!ignoreCase || toLower(lineBuffer[start + i]) != candidate.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static char toLower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (char) (b + ('a' - 'A')) : (char) (b & 0xFF);
+    }
+
+    private HttpRequest complete(InetAddress remoteAddress) {
+        HttpRequest request = new HttpRequest(method, target, version, headers, body, remoteAddress);
+        // Préparer la requête suivante sur la même connexion
+        state = State.REQUEST_LINE;
+        headers = new HashMap<>();
+        headerCount = 0;
+        body = null;
+        bodyRead = 0;
+        return request;
+    }
+
+    // Paramètres d'une query string ou d'un corps application/x-www-form-urlencoded, en une passe :
+    // "a=1&b=&c&d=x=y" donne a=1, b="", c="", d="x=y" ; les séquences %XX (UTF-8) et '+' sont décodées,
+    // un '%' mal formé est gardé tel quel
+    public static void parseQuery(String query, Map<String, String> params) {
+        int length = query.length();
+        int start = 0;
+        while (start <= length) {
+            int end = query.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                int equals = query.indexOf('=', start);
+                if (equals < 0 || equals > end) {
+                    equals = end;
+                }
+                if (equals > start) {
+                    String value = equals < end ? decode(query, equals + 1, end) : "";
+                    params.put(decode(query, start, equals), value);
+                }
+            }
+            start = end + 1;
+        }
+    }
+
+    private static String decode(String s, int start, int end) {
+        int i = start;
+        while (i < end && s.charAt(i) != '%' && s.charAt(i) != '+') {
+            i++;
+        }
+        if (i == end) {
+            return s.substring(start, end); // rien à décoder
+        }
+
+        StringBuilder decoded = new StringBuilder(end - start);
+        decoded.append(s, start, i);
+        ByteArrayOutputStream bytes = null; // octets UTF-8 d'une suite de %XX
+        while (i < end) {
+            char c = s.charAt(i);
+            int high;
+            int low;
+            if (c == '%' && i + 2 < end
+                    && (high = Character.digit(s.charAt(i + 1), 16)) >= 0
+                    && (low = Character.digit(s.charAt(i + 2), 16)) >= 0) {
+                if (bytes == null) {
+                    bytes = new ByteArrayOutputStream();
+                }
+                bytes.write((high << 4) | low);
+                i += 3;
+                continue;
+            }
+            if (bytes != null && bytes.size() > 0) {
+                decoded.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+                bytes.reset();
+            }
+            decoded.append(c == '+' ? ' ' : c);
+            i++;
+        }
+        if (bytes != null && bytes.size() > 0) {
+            decoded.append(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+        }
+        return decoded.toString();
+    }
+}
@@ -0,0 +1,115 @@
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histogramme de latences à la manière de HdrHistogram : cases log-linéaires en microsecondes
+// (chaque puissance de 2 est découpée en 16 sous-cases, soit ~6 % de précision relative),
+// de 1 µs à plus d'une heure. Enregistrement sans verrou ; lecture approximative pendant les écritures.
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAGNITUDES = 33; // jusqu'à 2^37 µs (~38 h)
+    private static final int BUCKET_COUNT = (MAGNITUDES + 1) * SUB_BUCKETS;
+
+    // Bornes exportées au format Prometheus (secondes)
+    public static final double[] EXPORTED_BOUNDS = {
+            0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+
+    public void recordNanos(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        counts.incrementAndGet(index(micros));
+        count.increment();
+        sumMicros.add(micros);
+    }
+
+    // Mesure depuis start (System.nanoTime)
+    public void recordSince(long start) {
+        recordNanos(System.nanoTime() - start);
+    }
+
+    // Case de la valeur : les SUB_BUCKETS premières valeurs ont chacune leur case,
+    // ensuite chaque puissance de 2 est partagée en SUB_BUCKETS cases égales
+    static int index(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(micros) - SUB_BUCKET_BITS + 1; // >= 1
+        if (magnitude > MAGNITUDES) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (magnitude - 1)) - SUB_BUCKETS; // 0..SUB_BUCKETS-1
+        return magnitude * SUB_BUCKETS + subBucket;
+    }
+
+    // Plus grande valeur (µs) rangée dans la case index
+    static long upperBound(int index) {
+        int magnitude = index / SUB_BUCKETS;
+        int subBucket = index % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return subBucket;
+        }
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (magnitude - 1)) - 1;
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getSumSeconds() {
+        return sumMicros.sum() / 1e6;
+    }
+
+    // Valeur (secondes) sous laquelle se trouve la fraction quantile des mesures, 0 sans mesure
+    public double quantileSeconds(double quantile) {
+        long[] snapshot = snapshot();
+        long total = 0;
+        for (long c : snapshot) {
+            total += c;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < snapshot.length; i++) {
+            seen += snapshot[i];
+            if (seen >= Math.max(1, rank)) {
+                return upperBound(i) / 1e6;
+            }
+        }
+        return upperBound(snapshot.length - 1) / 1e6;
+    }
+
+    // Nombre cumulé de mesures pour chaque borne de EXPORTED_BOUNDS, puis le total (+Inf) ;
+    // une case n'est comptée sous une borne que si elle y tient entièrement (jamais optimiste)
+    public long[] cumulativeCounts() {
+        long[] snapshot = snapshot();
+        long[] cumulative = new long[EXPORTED_BOUNDS.length + 1];
+        int bucket = 0;
+        long running = 0;
+        for (int b = 0; b < EXPORTED_BOUNDS.length; b++) {
+            long boundMicros = (long) Math.floor(EXPORTED_BOUNDS[b] * 1e6);
+            while (bucket < snapshot.length && upperBound(bucket) <= boundMicros) {
+                running += snapshot[bucket++];
+            }
+            cumulative[b] = running;
+        }
+        while (bucket < snapshot.length) {
+            running += snapshot[bucket++];
+        }
+        cumulative[EXPORTED_BOUNDS.length] = running;
+        return cumulative;
+    }
+
+    private long[] snapshot() {
+        long[] snapshot = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = counts.get(i);
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,256 @@
+import java.io.IOException;
+import java.net.InetAddress;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Locale;
+
+// Journal du serveur : messages par niveau (console) et journal d'accès structuré (une ligne JSON par
+// requête, fichier avec rotation). Les appels ne font que déposer un événement dans l'anneau de
+// AsyncLogWriter ; la mise en forme ("{}" remplacés par les arguments) se fait dans le thread écrivain.
+// Avant configure() (ou sans écrivain), les messages sont écrits directement sur la console.
+public final class Log {
+    public enum Level {
+        DEBUG, INFO, WARN, ERROR, OFF;
+
+        public static Level fromConfig(String value, Level defaultLevel) {
+            if (value == null) {
+                return defaultLevel;
+            }
+            try {
+                return Level.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return defaultLevel;
+            }
+        }
+    }
+
+    private static final DateTimeFormatter TIME_FORMAT =
+            DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+
+    private static volatile Level level = Level.INFO;
+    private static volatile AsyncLogWriter writer;
+
+    private Log() {
+    }
+
+    public static synchronized void configure(Level configuredLevel, AsyncLogWriter asyncWriter) {
+        level = configuredLevel;
+        AsyncLogWriter previous = writer;
+        writer = asyncWriter;
+        if (previous != null) {
+            previous.shutdown(1000);
+        }
+    }
+
+    // Vider l'anneau avant l'arrêt du serveur
+    public static synchronized void shutdown() {
+        AsyncLogWriter current = writer;
+        writer = null;
+        if (current != null) {
+            current.shutdown(2000);
+        }
+    }
+
+    public static Level getLevel() {
+        return level;
+    }
+
+    public static void setLevel(Level newLevel) {
+        level = newLevel;
+    }
+
+    public static AsyncLogWriter getWriter() {
+        return writer;
+    }
+
+    public static boolean isEnabled(Level messageLevel) {
+        return messageLevel.ordinal() >= level.ordinal() && messageLevel != Level.OFF;
+    }
+
+    public static void debug(String message, Object... args) {
+        log(Level.DEBUG, message, args);
+    }
+
+    public static void info(String message, Object... args) {
+        log(Level.INFO, message, args);
+    }
+
+    public static void warn(String message, Object... args) {
+        log(Level.WARN, message, args);
+    }
+
+    // Une exception en dernier argument est écrite avec sa pile d'appels
+    public static void error(String message, Object... args) {
+        log(Level.ERROR, message, args);
+    }
+
+    private static void log(Level messageLevel, String message, Object[] args) {
+        if (!isEnabled(messageLevel)) {
+            return;
+        }
+        MessageEvent event = new MessageEvent(messageLevel, System.currentTimeMillis(), message, args);
+        AsyncLogWriter current = writer;
+        if (current == null) {
+            event.writeDirect(); // pas encore d'écrivain : écriture synchrone
+        } else {
+            current.publish(event);
+        }
+    }
+
+    // Une ligne du journal d'accès, après l'envoi de la réponse
+    public static void access(InetAddress client, String method, String target, String version, String status,
+                              long bytes, long durationNanos, String cacheStatus, String userAgent) {
+        AsyncLogWriter current = writer;
+        if (current == null || !current.hasAccessLog()) {
+            return;
+        }
+        current.publish(new AccessEvent(System.currentTimeMillis(), client, method, target, version, status,
+                bytes, durationNanos, cacheStatus, userAgent));
+    }
+
+    // Remplacer chaque "{}" par l'argument suivant
+    static String format(String message, Object[] args) {
+        if (args == null || args.length == 0) {
+            return message;
+        }
+        StringBuilder result = new StringBuilder(message.length() + 16 * args.length);
+        int argument = 0;
+        int start = 0;
+        int placeholder;
+        while (argument < args.length && (placeholder = message.indexOf("{}", start)) >= 0) {
+            result.append(message, start, placeholder).append(args[argument++]);
+            start = placeholder + 2;
+        }
+        return result.append(message, start, message.length()).toString();
+    }
+
+    private static final class MessageEvent implements AsyncLogWriter.Event {
+        private final Level level;
+        private final long time;
+        private final String message;
+        private final Object[] args;
+
+        MessageEvent(Level level, long time, String message, Object[] args) {
+            this.level = level;
+            this.time = time;
+            this.message = message;
+            this.args = args;
+        }
+
+        @Override
+        public void writeTo(AsyncLogWriter writer) {
+            String line = line();
+            if (level.ordinal() >= Level.WARN.ordinal()) {
+                writer.writeError(line, error());
+            } else {
+                writer.writeConsole(line);
+            }
+        }
+
+        void writeDirect() {
+            String line = line();
+            if (level.ordinal() >= Level.WARN.ordinal()) {
+                System.err.println(line);
+                Throwable error = error();
+                if (error != null) {
+                    error.printStackTrace();
+                }
+            } else {
+                System.out.println(line);
+            }
+        }
+
+        private String line() {
+            return TIME_FORMAT.format(Instant.ofEpochMilli(time)) + " " + level + " " + format(message, args);
+        }
+
+        private Throwable error() {
+            if (args != null && args.length > 0 && args[args.length - 1] instanceof Throwable) {
+                return (Throwable) args[args.length - 1];
+            }
+            return null;
+        }
+    }
+
+    private static final class AccessEvent implements AsyncLogWriter.Event {
+        private final long time;
+        private final InetAddress client;
+        private final String method;
+        private final String target;
+        private final String version;
+        private final String status;
+        private final long bytes;
+        private final long durationNanos;
+        private final String cacheStatus;
+        private final String userAgent;
+
+        AccessEvent(long time, InetAddress client, String method, String target, String version, String status,
+                    long bytes, long durationNanos, String cacheStatus, String userAgent) {
+            this.time = time;
+            this.client = client;
+            this.method = method;
+            this.target = target;
+            this.version = version;
+            this.status = status;
+            this.bytes = bytes;
+            this.durationNanos = durationNanos;
+            this.cacheStatus = cacheStatus;
+            this.userAgent = userAgent;
+        }
+
+        @Override
+        public void writeTo(AsyncLogWriter writer) throws IOException {
+            StringBuilder line = new StringBuilder(192);
+            line.append("{\"time\":\"").append(TIME_FORMAT.format(Instant.ofEpochMilli(time))).append('"');
+            line.append(",\"client\":");
+            string(line, client == null ? null : client.getHostAddress());
+            line.append(",\"method\":");
+            string(line, method);
+            line.append(",\"target\":");
+            string(line, target);
+            line.append(",\"version\":");
+            string(line, version);
+            line.append(",\"status\":").append(statusCode(status));
+            line.append(",\"bytes\":").append(bytes);
+            line.append(",\"duration_ms\":").append(String.format(Locale.ROOT, "%.3f", durationNanos / 1e6));
+            line.append(",\"cache\":");
+            string(line, cacheStatus);
+            line.append(",\"user_agent\":");
+            string(line, userAgent);
+            line.append('}');
+            writer.writeAccess(line.toString());
+        }
+
+        // "200 OK" -> 200 ; 0 si aucune réponse n'a été envoyée
+        private static int statusCode(String status) {
+            if (status == null || status.length() < 3) {
+                return 0;
+            }
+            try {
+                return Integer.parseInt(status.substring(0, 3));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static void string(StringBuilder line, String value) {
+            if (value == null) {
+                line.append("null");
+                return;
+            }
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    line.append('\\').append(c);
+                } else if (c < 0x20) {
+                    line.append(String.format("\\u%04x", (int) c));
+                } else {
+                    line.append(c);
+                }
+            }
+            line.append('"');
+        }
+    }
+}
@@ -0,0 +1,85 @@
+import java.math.BigDecimal;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Mesures du proxy relevées au fil des requêtes (modes bloquant et NIO) et mise en forme
+// au format texte de Prometheus pour /cache/metrics
+public final class Metrics {
+    public static final LatencyHistogram REQUEST_DURATION = new LatencyHistogram(); // requête complète
+    public static final LatencyHistogram CACHE_LOOKUP_DURATION = new LatencyHistogram(); // recherche en mémoire
+    public static final LatencyHistogram UPSTREAM_DURATION = new LatencyHistogram(); // appel à XAMPP et relais
+    public static final LongAdder REQUESTS = new LongAdder();
+    public static final LongAdder BYTES_IN = new LongAdder(); // octets reçus des clients
+    public static final LongAdder BYTES_OUT = new LongAdder(); // octets envoyés aux clients
+    public static final AtomicInteger ACTIVE_CONNECTIONS = new AtomicInteger();
+
+    private Metrics() {
+    }
+
+    public static void counter(StringBuilder out, String name, String help, long value) {
+        header(out, name, help, "counter");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    public static void gauge(StringBuilder out, String name, String help, double value) {
+        header(out, name, help, "gauge");
+        out.append(name).append(' ').append(format(value)).append('\n');
+    }
+
+    public static void histogram(StringBuilder out, String name, String help, LatencyHistogram histogram) {
+        header(out, name, help, "histogram");
+        histogramSeries(out, name, "", histogram);
+    }
+
+    // Famille de séries étiquetées (une par serveur XAMPP) : en-tête une fois, puis une ligne par série
+    public static void family(StringBuilder out, String name, String help, String type) {
+        header(out, name, help, type);
+    }
+
+    public static void sample(StringBuilder out, String name, String label, String value, double sample) {
+        out.append(name).append('{').append(label).append("=\"").append(escape(value)).append("\"} ")
+                .append(format(sample)).append('\n');
+    }
+
+    public static void histogramSample(StringBuilder out, String name, String label, String value,
+                                       LatencyHistogram histogram) {
+        histogramSeries(out, name, label + "=\"" + escape(value) + "\",", histogram);
+    }
+
+    // labels : étiquettes déjà mises en forme, suivies d'une virgule (ou vide)
+    private static void histogramSeries(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        long[] cumulative = histogram.cumulativeCounts();
+        double[] bounds = LatencyHistogram.EXPORTED_BOUNDS;
+        for (int i = 0; i < bounds.length; i++) {
+            out.append(name).append("_bucket{").append(labels).append("le=\"").append(format(bounds[i]))
+                    .append("\"} ").append(cumulative[i]).append('\n');
+        }
+        long total = cumulative[bounds.length];
+        String suffix = labels.isEmpty() ? " " : "{" + labels.substring(0, labels.length() - 1) + "} ";
+        out.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ").append(total).append('\n');
+        out.append(name).append("_sum").append(suffix).append(format(histogram.getSumSeconds())).append('\n');
+        out.append(name).append("_count").append(suffix).append(total).append('\n');
+    }
+
+    // p50 / p99 / p999 pour la console
+    public static String quantiles(LatencyHistogram histogram) {
+        return String.format(Locale.ROOT, "p50 %.2f ms, p99 %.2f ms, p999 %.2f ms (%d mesures)",
+                histogram.quantileSeconds(0.5) * 1000, histogram.quantileSeconds(0.99) * 1000,
+                histogram.quantileSeconds(0.999) * 1000, histogram.getCount());
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // Sans notation exponentielle : 0.00025 plutôt que 2.5E-4
+    private static String format(double value) {
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+}
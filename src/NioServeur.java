@@ -0,0 +1,421 @@
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.*;
+import java.nio.charset.StandardCharsets;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Front-end non bloquant : un thread d'acceptation et quelques boucles d'événements (Selector).
+// Les requêtes sont analysées de façon incrémentale et seules les requêtes complètes
+// sont confiées à l'exécuteur des connexions pour le cache / la transmission à XAMPP.
+// Les connexions restent ouvertes (keep-alive) ; les requêtes pipelinées sont traitées une à une, dans l'ordre.
+// Les réponses sont envoyées au fil de l'eau par blocs, avec une limite d'octets en attente par connexion.
+public class NioServeur {
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int WRITE_CHUNK_SIZE = 16 * 1024;
+    private static final long MAX_PENDING_BYTES = 256 * 1024; // au-delà, le gestionnaire attend que le client lise
+    private static final long IDLE_SCAN_INTERVAL = 1000; // ms entre deux recherches de connexions inactives
+
+    private final int port;
+    private final ConnectionExecutor executor;
+    private final long idleTimeout;
+    private final int maxRequestsPerConnection;
+    private final EventLoop[] eventLoops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean running = true;
+    private ServerSocketChannel serverChannel;
+
+    public NioServeur(int port, int eventLoopCount, ConnectionExecutor executor,
+                      long idleTimeout, int maxRequestsPerConnection) {
+        this.port = port;
+        this.executor = executor;
+        this.idleTimeout = idleTimeout;
+        this.maxRequestsPerConnection = maxRequestsPerConnection;
+        int count = eventLoopCount > 0 ? eventLoopCount : Runtime.getRuntime().availableProcessors();
+        this.eventLoops = new EventLoop[count];
+    }
+
+    // Boucle d'acceptation (bloquante) : chaque connexion est confiée à une boucle d'événements
+    public void run() throws IOException {
+        for (int i = 0; i < eventLoops.length; i++) {
+            eventLoops[i] = new EventLoop();
+            Thread thread = new Thread(eventLoops[i], "nio-event-loop-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        Log.info("Serveur NIO démarré sur le port {} ({} boucles d'événements)", port, eventLoops.length);
+
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                channel.socket().setTcpNoDelay(true);
+                Log.debug("Connexion entrante : {}", channel.socket().getInetAddress());
+                eventLoops[Math.floorMod(nextLoop.getAndIncrement(), eventLoops.length)].register(channel);
+            } catch (ClosedChannelException e) {
+                if (!running) {
+                    Log.info("Serveur arrêté.");
+                    break;
+                }
+                throw e;
+            }
+        }
+    }
+
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null) {
+                serverChannel.close();
+            }
+        } catch (IOException e) {
+            Log.error("Erreur à la fermeture du port d'écoute", e);
+        }
+        for (EventLoop loop : eventLoops) {
+            if (loop != null) {
+                loop.stop();
+            }
+        }
+    }
+
+    // État d'une connexion rattachée à une clé du Selector
+    private static class Connection {
+        private final SocketChannel channel;
+        private final InetAddress remoteAddress;
+        private final HttpRequestParser parser = ServeurWeb.newRequestParser();
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final Queue<ByteBuffer> pendingWrites = new ArrayDeque<>();
+        private boolean closeAfterWrite;
+        private boolean processing; // une requête est en cours de traitement
+        private boolean responseComplete; // le gestionnaire a fini d'écrire la réponse
+        private long pendingBytes; // octets en attente d'envoi (protégé par le moniteur de la connexion)
+        private volatile boolean closed;
+        private int requestCount;
+        private long lastActivity = System.currentTimeMillis();
+
+        Connection(SocketChannel channel) {
+            this.channel = channel;
+            this.remoteAddress = channel.socket().getInetAddress();
+        }
+    }
+
+    private class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private volatile boolean loopRunning = true;
+        private long lastIdleScan = System.currentTimeMillis(); // dernier parcours des connexions inactives
+
+        EventLoop() throws IOException {
+            this.selector = Selector.open();
+        }
+
+        void register(SocketChannel channel) {
+            execute(() -> {
+                try {
+                    channel.register(selector, SelectionKey.OP_READ, new Connection(channel));
+                    Metrics.ACTIVE_CONNECTIONS.incrementAndGet();
+                } catch (IOException e) {
+                    closeQuietly(channel);
+                }
+            });
+        }
+
+        // Exécuter une tâche dans le thread de la boucle (seul à toucher aux clés)
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        void stop() {
+            loopRunning = false;
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (loopRunning) {
+                try {
+                    selector.select(1000);
+                    Runnable task;
+                    while ((task = tasks.poll()) != null) {
+                        task.run();
+                    }
+
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        try {
+                            if (key.isReadable()) {
+                                onReadable(key);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                onWritable(key);
+                            }
+                        } catch (IOException e) {
+                            close(key);
+                        }
+                    }
+                    closeIdleConnections();
+                } catch (IOException e) {
+                    Log.error("Erreur de la boucle d'événements", e);
+                }
+            }
+
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key.channel());
+            }
+            closeQuietly(selector);
+        }
+
+        private void onReadable(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            int read = connection.channel.read(connection.readBuffer);
+            if (read < 0) {
+                close(key);
+                return;
+            }
+            Metrics.BYTES_IN.add(read);
+            connection.lastActivity = System.currentTimeMillis();
+            processInput(key, connection);
+        }
+
+        // Analyser les octets reçus (y compris ceux d'une requête pipelinée déjà en tampon)
+        private void processInput(SelectionKey key, Connection connection) {
+            connection.readBuffer.flip();
+            HttpRequest request;
+            try {
+                request = connection.parser.parse(connection.readBuffer, connection.remoteAddress);
+            } catch (HttpRequestParser.MalformedRequestException e) {
+                respondAndClose(key, connection, e.getStatus(), e.getMessage());
+                return;
+            } finally {
+                connection.readBuffer.compact();
+            }
+
+            if (request != null) {
+                dispatch(key, connection, request);
+            }
+        }
+
+        // Requête complète : suspendre la lecture et confier le traitement à l'exécuteur
+        private void dispatch(SelectionKey key, Connection connection, HttpRequest request) {
+            key.interestOps(0);
+            connection.processing = true;
+            connection.responseComplete = false;
+            connection.requestCount++;
+            boolean keepAlive = ServeurWeb.isKeepAlive(request) && connection.requestCount < maxRequestsPerConnection;
+
+            boolean accepted = executor.submit(() -> {
+                ChannelOutputStream response = new ChannelOutputStream(key, connection);
+                boolean completed = true;
+                try {
+                    ServeurWeb.handleRequest(request, response, keepAlive);
+                    response.flush();
+                } catch (IOException e) {
+                    if (!connection.closed) {
+                        Log.warn("Réponse interrompue : {}", e.getMessage());
+                    }
+                    completed = false; // réponse possiblement incomplète : fermer après envoi
+                } catch (RuntimeException e) {
+                    Log.error("Erreur pendant le traitement de {}", request.getTarget(), e);
+                    completed = false;
+                } finally {
+                    // Toujours rendre la connexion à la boucle : sinon elle resterait "en traitement",
+                    // sans lecture ni écriture, et closeIdleConnections ne la fermerait jamais
+                    boolean close = !keepAlive || !completed;
+                    execute(() -> {
+                        if (key.isValid()) {
+                            connection.responseComplete = true;
+                            connection.closeAfterWrite = close;
+                            key.interestOps(SelectionKey.OP_WRITE);
+                        }
+                    });
+                }
+            });
+
+            if (!accepted) {
+                respondAndClose(key, connection, "503 Service Unavailable", "Serveur saturé, réessayez plus tard");
+            }
+        }
+
+        private void respondAndClose(SelectionKey key, Connection connection, String status, String message) {
+            byte[] body = ("<html><body><h1>" + status + "</h1><p>" + message + "</p></body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            String head = "HTTP/1.1 " + status + "\r\n" +
+                    "Content-Type: text/html; charset=UTF-8\r\n" +
+                    "Content-Length: " + body.length + "\r\n" +
+                    "Connection: close\r\n\r\n";
+            byte[] headBytes = head.getBytes(StandardCharsets.US_ASCII);
+            byte[] bytes = new byte[headBytes.length + body.length];
+            System.arraycopy(headBytes, 0, bytes, 0, headBytes.length);
+            System.arraycopy(body, 0, bytes, headBytes.length, body.length);
+            synchronized (connection) {
+                connection.pendingBytes += bytes.length;
+            }
+            connection.responseComplete = true;
+            connection.closeAfterWrite = true;
+            queueWrite(key, connection, bytes);
+        }
+
+        private void queueWrite(SelectionKey key, Connection connection, byte[] bytes) {
+            connection.pendingWrites.add(ByteBuffer.wrap(bytes));
+            key.interestOps(SelectionKey.OP_WRITE);
+        }
+
+        // Flux de réponse d'un gestionnaire : chaque bloc plein est confié à la boucle d'événements.
+        // Si le client lit trop lentement, le gestionnaire attend (pas d'accumulation en mémoire).
+        private class ChannelOutputStream extends OutputStream {
+            private final SelectionKey key;
+            private final Connection connection;
+            private final byte[] buffer = new byte[WRITE_CHUNK_SIZE];
+            private int count;
+
+            ChannelOutputStream(SelectionKey key, Connection connection) {
+                this.key = key;
+                this.connection = connection;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                if (count == buffer.length) {
+                    flushBuffer();
+                }
+                buffer[count++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                while (length > 0) {
+                    int n = Math.min(length, buffer.length - count);
+                    System.arraycopy(bytes, offset, buffer, count, n);
+                    count += n;
+                    offset += n;
+                    length -= n;
+                    if (count == buffer.length) {
+                        flushBuffer();
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                flushBuffer();
+            }
+
+            private void flushBuffer() throws IOException {
+                if (count == 0) {
+                    return;
+                }
+                byte[] chunk = Arrays.copyOf(buffer, count);
+                count = 0;
+
+                synchronized (connection) {
+                    try {
+                        while (connection.pendingBytes > MAX_PENDING_BYTES && !connection.closed) {
+                            connection.wait(1000);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Envoi de la réponse interrompu");
+                    }
+                    if (connection.closed) {
+                        throw new IOException("Connexion fermée par le client");
+                    }
+                    connection.pendingBytes += chunk.length;
+                }
+
+                execute(() -> {
+                    if (key.isValid()) {
+                        queueWrite(key, connection, chunk);
+                    }
+                });
+            }
+        }
+
+        private void onWritable(SelectionKey key) throws IOException {
+            Connection connection = (Connection) key.attachment();
+            ByteBuffer buffer;
+            while ((buffer = connection.pendingWrites.peek()) != null) {
+                connection.channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return; // tampon d'envoi plein : attendre le prochain OP_WRITE
+                }
+                connection.pendingWrites.poll();
+                synchronized (connection) {
+                    connection.pendingBytes -= buffer.limit();
+                    connection.notifyAll();
+                }
+            }
+
+            if (!connection.responseComplete) {
+                key.interestOps(0); // attendre le bloc suivant du gestionnaire
+                return;
+            }
+
+            connection.lastActivity = System.currentTimeMillis();
+            if (connection.closeAfterWrite) {
+                close(key);
+            } else {
+                connection.processing = false;
+                key.interestOps(SelectionKey.OP_READ);
+                if (connection.readBuffer.position() > 0) {
+                    processInput(key, connection); // requête suivante déjà reçue (pipelining)
+                }
+            }
+        }
+
+        // Fermer les connexions sans requête en cours depuis plus de idleTimeout ; parcours de toutes
+        // les clés au plus une fois par seconde, pas à chaque réveil du sélecteur
+        private void closeIdleConnections() {
+            long now = System.currentTimeMillis();
+            if (now - lastIdleScan < IDLE_SCAN_INTERVAL) {
+                return;
+            }
+            lastIdleScan = now;
+            for (SelectionKey key : selector.keys()) {
+                Connection connection = (Connection) key.attachment();
+                if (key.isValid() && !connection.processing && now - connection.lastActivity > idleTimeout) {
+                    close(key);
+                }
+            }
+        }
+
+        private void close(SelectionKey key) {
+            key.cancel();
+            closeQuietly(key.channel());
+            Connection connection = (Connection) key.attachment();
+            if (connection != null) {
+                synchronized (connection) {
+                    if (!connection.closed) {
+                        Metrics.ACTIVE_CONNECTIONS.decrementAndGet();
+                    }
+                    connection.closed = true;
+                    connection.notifyAll(); // débloquer un gestionnaire en attente d'envoi
+                }
+            }
+        }
+    }
+
+    private static void closeQuietly(java.io.Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // rien à faire
+        }
+    }
+}
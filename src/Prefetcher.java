@@ -0,0 +1,208 @@
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Préchargement : après la mise en cache d'une page HTML statique, ses liens et ressources (href, src)
+// du même site sont demandés en arrière-plan pour que le premier clic trouve la page en cache.
+// - file bornée : au-delà, les liens sont abandonnés (comptés) ;
+// - profondeur : une page préchargée à la profondeur maxDepth ne fait plus précharger ses liens ;
+// - threads dédiés en nombre limité ;
+// - recul : quand la moyenne glissante des délais de XAMPP dépasse le seuil, chaque préchargement
+//   attend (attente doublée tant que XAMPP reste lent, au plus maxBackoff ms).
+// Sert aussi au préchauffage du démarrage (liste de conf.json).
+public class Prefetcher {
+    // Charger target dans le cache ; faux si la page y était déjà
+    public interface PageFetcher {
+        boolean fetch(String origin, String target, int depth) throws IOException;
+    }
+
+    private static final Pattern LINK = Pattern.compile(
+            "\\b(?:href|src)\\s*=\\s*(?:\"([^\"]*)\"|'([^']*)'|([^\\s\"'>]+))", Pattern.CASE_INSENSITIVE);
+    private static final double LATENCY_WEIGHT = 0.2; // poids d'une nouvelle mesure dans la moyenne
+    private static final long MIN_BACKOFF = 100;
+
+    private final PageFetcher fetcher;
+    private final Predicate<String> eligible; // pages qu'il est utile et sûr de précharger
+    private final ThreadPoolExecutor workers;
+    private final int maxDepth;
+    private final int maxLinksPerPage;
+    private final long latencyThresholdNanos;
+    private final long maxBackoff;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet(); // pages en file ou en cours
+    private final AtomicLong averageLatencyNanos = new AtomicLong();
+    private volatile long backoff; // attente actuelle en ms, 0 si XAMPP répond vite
+    private final AtomicLong fetched = new AtomicLong();
+    private final AtomicLong alreadyCached = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong backoffs = new AtomicLong();
+
+    public Prefetcher(PageFetcher fetcher, Predicate<String> eligible, int concurrency, int queueCapacity,
+                      int maxDepth, int maxLinksPerPage, long latencyThreshold, long maxBackoff) {
+        this.fetcher = fetcher;
+        this.eligible = eligible;
+        this.maxDepth = maxDepth;
+        this.maxLinksPerPage = maxLinksPerPage;
+        this.latencyThresholdNanos = TimeUnit.MILLISECONDS.toNanos(latencyThreshold);
+        this.maxBackoff = Math.max(MIN_BACKOFF, maxBackoff);
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, concurrency);
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), runnable -> {
+                    Thread thread = new Thread(runnable, "prechargement-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Délai de réponse de XAMPP (en-têtes reçus), mesuré sur toutes les requêtes
+    public void recordLatency(long nanos) {
+        averageLatencyNanos.updateAndGet(average ->
+                average == 0 ? nanos : (long) (average + LATENCY_WEIGHT * (nanos - average)));
+    }
+
+    // Page HTML mise en cache à la profondeur depth (0 : demandée par un navigateur ou le préchauffage)
+    public void pageStored(String origin, String path, byte[] html, int depth) {
+        if (depth >= maxDepth) {
+            return;
+        }
+        execute(() -> {
+            for (String link : extractLinks(origin, path, new String(html, StandardCharsets.UTF_8), maxLinksPerPage)) {
+                submit(origin, link, depth + 1);
+            }
+        });
+    }
+
+    public boolean submit(String origin, String target, int depth) {
+        if (depth > maxDepth || !eligible.test(target) || !pending.add(target)) {
+            return false;
+        }
+        if (!execute(() -> load(origin, target, depth))) {
+            pending.remove(target);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean execute(Runnable task) {
+        try {
+            workers.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            dropped.incrementAndGet(); // file pleine ou arrêt
+            return false;
+        }
+    }
+
+    private void load(String origin, String target, int depth) {
+        try {
+            pauseIfSlow();
+            if (fetcher.fetch(origin, target, depth)) {
+                fetched.incrementAndGet();
+            } else {
+                alreadyCached.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            Log.debug("Préchargement de {} impossible : {}", target, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            pending.remove(target);
+        }
+    }
+
+    private void pauseIfSlow() throws InterruptedException {
+        if (averageLatencyNanos.get() <= latencyThresholdNanos) {
+            backoff = 0;
+            return;
+        }
+        long pause = backoff == 0 ? MIN_BACKOFF : Math.min(maxBackoff, backoff * 2);
+        backoff = pause;
+        backoffs.incrementAndGet();
+        Thread.sleep(pause);
+    }
+
+    // Précharger une liste de pages et attendre que la file se vide (au plus timeout ms) ;
+    // retourne le nombre de pages chargées depuis XAMPP
+    public long warmUp(String origin, List<String> targets, long timeout) throws InterruptedException {
+        long before = fetched.get();
+        for (String target : targets) {
+            if (!submit(origin, target, 0)) {
+                Log.warn("Préchauffage : {} ignorée (page dynamique, en double ou file pleine)", target);
+            }
+        }
+        long deadline = System.currentTimeMillis() + timeout;
+        while (!isIdle() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        return fetched.get() - before;
+    }
+
+    private boolean isIdle() {
+        return pending.isEmpty() && workers.getQueue().isEmpty() && workers.getActiveCount() == 0;
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // Liens href/src du même site que la page, résolus par rapport à son chemin (sans fragment)
+    static List<String> extractLinks(String origin, String path, String html, int limit) {
+        Set<String> links = new LinkedHashSet<>();
+        URI base;
+        try {
+            // Chemin déjà encodé tel que reçu : pas de constructeur à plusieurs arguments (%20 -> %2520)
+            base = URI.create("http://" + (origin != null ? origin : "localhost") + path);
+        } catch (IllegalArgumentException e) {
+            return Collections.emptyList(); // chemin ou hôte invalide : page ignorée
+        }
+        Matcher matcher = LINK.matcher(html);
+        while (links.size() < limit && matcher.find()) {
+            String value = matcher.group(1) != null ? matcher.group(1)
+                    : matcher.group(2) != null ? matcher.group(2) : matcher.group(3);
+            String link = value.trim().replace("&amp;", "&");
+            if (link.isEmpty() || link.startsWith("#")) {
+                continue;
+            }
+            URI resolved;
+            try {
+                resolved = base.resolve(link);
+            } catch (IllegalArgumentException e) {
+                continue; // lien mal formé
+            }
+            String scheme = resolved.getScheme();
+            if (scheme != null && !scheme.equalsIgnoreCase("http") && !scheme.equalsIgnoreCase("https")) {
+                continue; // javascript:, mailto:, data:...
+            }
+            if (resolved.getRawAuthority() == null || !resolved.getRawAuthority().equalsIgnoreCase(base.getRawAuthority())) {
+                continue; // autre site
+            }
+            String target = resolved.getRawPath();
+            if (target == null || !target.startsWith("/")) {
+                continue;
+            }
+            if (resolved.getRawQuery() != null) {
+                target += "?" + resolved.getRawQuery();
+            }
+            links.add(target);
+        }
+        return new ArrayList<>(links);
+    }
+
+    public int getQueueSize() { return workers.getQueue().size(); }
+    public int getMaxDepth() { return maxDepth; }
+    public long getFetchedCount() { return fetched.get(); }
+    public long getAlreadyCachedCount() { return alreadyCached.get(); }
+    public long getDroppedCount() { return dropped.get(); }
+    public long getFailedCount() { return failed.get(); }
+    public long getBackoffCount() { return backoffs.get(); }
+    public long getAverageLatencyMillis() { return TimeUnit.NANOSECONDS.toMillis(averageLatencyNanos.get()); }
+}
@@ -0,0 +1,78 @@
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Regroupement des échecs de cache simultanés sur une même clé (single-flight) :
+// la première requête interroge XAMPP, les suivantes attendent son résultat.
+public class RequestCoalescer<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong leaders = new AtomicLong(); // requêtes réellement envoyées à XAMPP
+    private final AtomicLong coalesced = new AtomicLong(); // requêtes servies par le résultat d'une autre
+    private final AtomicLong timeouts = new AtomicLong(); // attentes abandonnées (délai dépassé)
+    private final AtomicLong failures = new AtomicLong(); // la requête meneuse a échoué
+
+    // Rejoindre la requête en cours pour key, ou en devenir la meneuse
+    public Flight begin(K key) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, future);
+        if (existing == null) {
+            leaders.incrementAndGet();
+            return new Flight(key, future, true);
+        }
+        return new Flight(key, existing, false);
+    }
+
+    public class Flight {
+        private final K key;
+        private final CompletableFuture<V> future;
+        private final boolean leader;
+
+        private Flight(K key, CompletableFuture<V> future, boolean leader) {
+            this.key = key;
+            this.future = future;
+            this.leader = leader;
+        }
+
+        public boolean isLeader() {
+            return leader;
+        }
+
+        // Meneuse : publier le résultat (null si rien de réutilisable) aux requêtes en attente
+        public void complete(V value) {
+            inFlight.remove(key, future);
+            future.complete(value);
+        }
+
+        // Meneuse : échec, les requêtes en attente devront interroger XAMPP elles-mêmes
+        public void fail(Throwable error) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(error);
+        }
+
+        // Suiveuse : attendre le résultat de la meneuse ; null en cas d'échec ou de délai dépassé
+        public V await(long timeoutMillis) {
+            try {
+                return future.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timeouts.incrementAndGet();
+                return null;
+            } catch (ExecutionException e) {
+                failures.incrementAndGet();
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    // Une requête suiveuse a été servie avec le résultat de la meneuse
+    public void recordCoalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    public int getInFlightCount() { return inFlight.size(); }
+    public long getLeaderCount() { return leaders.get(); }
+    public long getCoalescedCount() { return coalesced.get(); }
+    public long getTimeoutCount() { return timeouts.get(); }
+    public long getFailureCount() { return failures.get(); }
+}
@@ -4,13 +4,20 @@ import org.json.simple.parser.ParseException;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 public class ServeurWeb {
     // Variables de configuration
@@ -19,50 +26,314 @@ public class ServeurWeb {
     private static long DYNAMIC_PAGE_EXPIRATION;
     private static long STATIC_PAGE_EXPIRATION;
     private static int CACHE_CLEANUP_INTERVAL;
+    private static long CACHE_MAX_BYTES = 256L * 1024 * 1024; // budget mémoire global des corps en cache
+    private static String CACHE_STORAGE = "heap"; // "heap" ou "off_heap"
+    private static boolean SHARED_STATIC_CACHE = true; // pages statiques stockées une seule fois pour tous
+    private static long CACHE_MAX_ENTRIES = 10_000; // nombre max d'entrées, tous utilisateurs confondus
+    private static String EVICTION_POLICY = "w-tinylfu"; // "lru", "lfu" ou "w-tinylfu"
+    private static boolean REQUEST_COALESCING = true; // un seul appel à XAMPP pour des échecs simultanés
+    private static long COALESCING_WAIT_TIMEOUT = 10_000; // attente max du résultat de la requête meneuse
+    private static int MAX_CACHE_ENTRY_BYTES = 5 * 1024 * 1024; // au-delà, la réponse est relayée sans être mise en cache
+    private static long EXPIRATION_TICK = 100; // résolution de la roue d'expiration (ms)
+    private static long REVALIDATION_WINDOW = 60 * 60_000; // entrée expirée avec ETag/Last-Modified gardée pour revalidation
+    private static long STALE_WHILE_REVALIDATE = 30_000; // entrée expirée servie aussitôt pendant son rafraîchissement
+    private static long STALE_IF_ERROR = 10 * 60_000; // entrée expirée servie si XAMPP est en erreur ou injoignable
+    private static boolean COMPRESSION_ENABLED = true; // pages textuelles stockées en gzip
+    private static int COMPRESSION_MIN_BYTES = 256; // en dessous, le gain ne vaut pas l'en-tête gzip
+    private static int COMPRESSION_LEVEL = 6;
+    // En-tête de XAMPP portant les tags de substitution d'une page (invalidation groupée par tag)
+    private static String TAG_HEADER = "surrogate-key";
+    private static boolean DISK_CACHE_ENABLED = false; // second niveau du cache sur disque
+    private static String DISK_CACHE_DIRECTORY = "cache-disque";
+    private static int DISK_SEGMENT_BYTES = 64 * 1024 * 1024;
+    private static long DISK_MAX_BYTES = 1024L * 1024 * 1024;
+    private static int DISK_PROMOTE_HITS = 2; // lectures sur disque avant de remonter l'entrée en mémoire
+    // Préchargement des liens des pages HTML statiques mises en cache (voir Prefetcher)
+    private static boolean PREFETCH_ENABLED = false;
+    private static int PREFETCH_MAX_DEPTH = 1; // 1 : liens de la page demandée, pas ceux des pages préchargées
+    private static int PREFETCH_MAX_LINKS_PER_PAGE = 20;
+    private static int PREFETCH_QUEUE_CAPACITY = 500;
+    private static int PREFETCH_CONCURRENCY = 2;
+    private static long PREFETCH_LATENCY_THRESHOLD = 200; // délai moyen de XAMPP (ms) au-delà duquel le préchargement recule
+    private static long PREFETCH_MAX_BACKOFF = 10_000;
+    private static final String PREFETCH_USER_AGENT = "ServeurWeb-prechargement";
+    // Pages chargées dans le cache au démarrage, avant d'accepter des connexions
+    private static List<String> WARMUP_URLS = Collections.emptyList();
+    private static long WARMUP_TIMEOUT = 30_000;
     private static List<String> DYNAMIC_PAGE_KEYWORDS;
 
+    // Mode d'entrée/sortie : "blocking" (une tâche par connexion) ou "nio" (Selector)
+    private static String IO_MODE = "blocking";
+    private static int NIO_EVENT_LOOPS = 0; // 0 = nombre de coeurs
+
+    // Connexions persistantes (HTTP/1.1 keep-alive)
+    private static int KEEP_ALIVE_IDLE_TIMEOUT = 15_000; // ms sans requête avant fermeture
+    private static int KEEP_ALIVE_MAX_REQUESTS = 100; // requêtes max par connexion
+    // Mode bloquant : une connexion inactive garde son thread ; quand l'exécuteur est saturé,
+    // elle est fermée après ce délai plutôt qu'après idle_timeout_ms (le mode nio n'a pas ce coût)
+    private static int KEEP_ALIVE_BUSY_IDLE_TIMEOUT = 1000;
+
+    // Sessions PHP (cookie posé par XAMPP, relayé au navigateur)
+    private static String SESSION_COOKIE_NAME = "PHPSESSID";
+    private static long SESSION_IDLE_TIMEOUT = 24 * 60_000; // session.gc_maxlifetime par défaut de PHP
+    private static int MAX_SESSIONS = 100_000;
+
+    private static final int READ_BUFFER_SIZE = 8192; // lecture des requêtes en mode bloquant
+
+    // Journalisation asynchrone (anneau borné vidé par un thread écrivain) et journal d'accès
+    private static String LOG_LEVEL = "INFO";
+    private static int LOG_BUFFER_SIZE = 8192;
+    private static boolean LOG_BLOCK_WHEN_FULL = false; // anneau plein : abandonner ("drop") ou attendre ("block")
+    private static boolean ACCESS_LOG_ENABLED = true;
+    private static String ACCESS_LOG_FILE = "logs/access.log";
+    private static long ACCESS_LOG_MAX_BYTES = 10 * 1024 * 1024;
+    private static int ACCESS_LOG_MAX_FILES = 5;
+
+    // Limites des requêtes des clients (au-delà : 414, 431 ou 413 et fermeture de la connexion)
+    private static int MAX_REQUEST_LINE_BYTES = HttpRequestParser.DEFAULT_MAX_LINE_BYTES; // ligne de requête ou d'en-tête
+    private static int MAX_REQUEST_HEADERS = HttpRequestParser.DEFAULT_MAX_HEADER_COUNT;
+    private static int MAX_REQUEST_BODY_BYTES = HttpRequestParser.DEFAULT_MAX_BODY_BYTES;
+
+    // Connexions vers XAMPP (pool de connexions persistantes)
+    private static int UPSTREAM_CONNECT_TIMEOUT = 2_000;
+    private static int UPSTREAM_READ_TIMEOUT = 30_000;
+    private static int UPSTREAM_MAX_CONNECTIONS_PER_HOST = 32;
+    private static long UPSTREAM_MAX_IDLE = 30_000;
+    private static long UPSTREAM_ACQUIRE_TIMEOUT = 5_000;
+
+    // Serveurs XAMPP (upstream.backends, sinon server.xampp_server_url) et répartition des requêtes
+    private static List<String> UPSTREAM_BACKENDS;
+    private static String LOAD_BALANCING = "round_robin"; // round_robin, least_outstanding ou sticky
+    private static boolean HEALTH_CHECK_ENABLED = true;
+    private static String HEALTH_CHECK_PATH = "/";
+    private static long HEALTH_CHECK_INTERVAL = 5_000;
+    private static int HEALTH_CHECK_TIMEOUT = 2_000;
+    private static int HEALTH_CHECK_UNHEALTHY_THRESHOLD = 2;
+    private static int HEALTH_CHECK_HEALTHY_THRESHOLD = 2;
+    private static int OUTLIER_CONSECUTIVE_FAILURES = 5;
+    private static long OUTLIER_BASE_EJECTION = 30_000;
+    private static long OUTLIER_MAX_EJECTION = 300_000;
+
+    // Configuration de l'exécuteur des connexions (valeurs par défaut si absentes de conf.json)
+    private static String EXECUTOR_MODE = "virtual";
+    private static int EXECUTOR_POOL_SIZE = 0; // 0 = 2 x nombre de coeurs
+    private static int EXECUTOR_QUEUE_CAPACITY = 256;
+    private static int EXECUTOR_MAX_IN_FLIGHT = 0; // 0 = limite par défaut du mode
+
     // Cache et sessions
-    private static final ConcurrentHashMap<String, ConcurrentHashMap<String, CacheEntry>> USER_CACHES = new ConcurrentHashMap<>();    private static final HashMap<String, Map<String, String>> PHP_SESSIONS = new HashMap<>();
+    private static final ConcurrentHashMap<String, ConcurrentHashMap<CacheKey, CacheEntry>> USER_CACHES = new ConcurrentHashMap<>();
+    // Identifiant du cache partagé par tous les utilisateurs (pages statiques) dans USER_CACHES ;
+    // ne peut pas entrer en collision avec un ID utilisateur "User-Agent-/IP"
+    static final String SHARED_CACHE_ID = "*";
+    // En-têtes de XAMPP non relayés tels quels : propres à la connexion ou réécrits par le proxy
+    private static final Set<String> SKIPPED_RESPONSE_HEADERS = new HashSet<>(Arrays.asList(
+            "connection", "keep-alive", "proxy-authenticate", "proxy-authorization",
+            "te", "trailer", "transfer-encoding", "upgrade", "content-length", "content-type"
+    ));
+    private static final int RELAY_BUFFER_SIZE = 16 * 1024;
+    private static final ConcurrentLinkedQueue<byte[]> RELAY_BUFFERS = new ConcurrentLinkedQueue<>();
+
     private static final ScheduledExecutorService cacheCleanupService = Executors.newSingleThreadScheduledExecutor();
+    private static ConnectionExecutor connectionExecutor;
+    private static CacheMemory cacheMemory;
+    private static EvictionPolicy<EntryRef> evictionPolicy;
+    private static final AtomicLong cacheEntryCount = new AtomicLong();
+    private static final AtomicLong dynamicEntryCount = new AtomicLong(); // tenus à jour à l'ajout et au retrait :
+    private static final AtomicLong sharedEntryCount = new AtomicLong(); // les stats ne parcourent pas le cache
+    private static final AtomicLong revalidatedCount = new AtomicLong(); // 304 de XAMPP sur une entrée expirée
+    private static final AtomicLong staleServedCount = new AtomicLong(); // entrées expirées servies pendant leur rafraîchissement
+    private static final AtomicLong staleOnErrorCount = new AtomicLong(); // entrées expirées servies faute de réponse de XAMPP
+    private static final AtomicLong compressedCount = new AtomicLong(); // pages compressées à l'insertion
+    private static final AtomicLong compressionSavedBytes = new AtomicLong(); // octets gagnés par ces compressions
+    private static final AtomicLong gzipServedCount = new AtomicLong(); // réponses du cache envoyées en gzip
+    private static final AtomicLong invalidatedCount = new AtomicLong(); // pages retirées par invalidation groupée
+    private static final AtomicLong decompressedCount = new AtomicLong(); // réponses du cache décompressées (navigateur sans gzip)
+    private static final Set<String> REFRESHING = ConcurrentHashMap.newKeySet(); // rafraîchissements en arrière-plan en cours
+    // En-têtes Vary connus par clé de cache : ils font partie de la clé des variantes
+    private static final ConcurrentHashMap<CacheKey, List<String>> VARY_HEADERS = new ConcurrentHashMap<>();
+    // Chemins et tags -> entrées de tous les utilisateurs (invalidation sans parcourir USER_CACHES)
+    private static final CacheIndex<CacheEntry> CACHE_INDEX = new CacheIndex<>();
+    // En-têtes du navigateur transmis à XAMPP (négociation de contenu, donc dimensions possibles de Vary)
+    private static final List<String> FORWARDED_REQUEST_HEADERS = Arrays.asList("accept", "accept-language", "user-agent");
+    private static ExpirationWheel<CacheEntry> expirationWheel;
+    private static DiskCache diskCache;
+    private static SessionStore sessionStore;
+    private static final RequestCoalescer<String, UpstreamResult> requestCoalescer = new RequestCoalescer<>();
+    private static final int MAX_EVICTIONS_PER_INSERT = 64;
+    private static UpstreamClient upstreamClient;
+    private static BackendPool backendPool;
+    private static Prefetcher prefetcher; // null si ni préchargement ni préchauffage
 
     // Classe de cache améliorée
     static class CacheEntry {
-        private final String content; // contenue de la page
+        private final CacheMemory.Body content; // contenue de la page (reçue de XAMPP, éventuellement compressée)
+        private final String contentType; // Content-Type d'origine
+        private final boolean compressed; // content est en gzip
         private final long creationTime; // date de creation
         private final boolean isDynamic; // type de page
-        private final String method; // methode http get , post
-        private final Map<String, String> parameters; // parametre de requete
+        private final String etag; // validateurs de XAMPP pour la revalidation (peuvent être null)
+        private final String lastModified;
+        private final long ttl; // durée de vie donnée par XAMPP (Cache-Control / Expires), ou CachePolicy.HEURISTIC_TTL
+        private final boolean mustRevalidate; // jamais servie expirée sans revalidation
+        private EntryRef ref; // emplacement dans le cache (renseigné à l'insertion)
+        private List<String> tags = Collections.emptyList(); // tags de substitution donnés par XAMPP
+
+        public CacheEntry(CacheMemory.Body content, String contentType, boolean compressed, boolean isDynamic,
+                          String etag, String lastModified, long ttl, boolean mustRevalidate) {
+            this(content, contentType, compressed, isDynamic, etag, lastModified, ttl, mustRevalidate, currentTime());
+        }
 
-        public CacheEntry(String content, boolean isDynamic, String method, Map<String, String> parameters) {
+        // Entrée remontée du cache disque : garde sa date de création d'origine
+        public CacheEntry(CacheMemory.Body content, String contentType, boolean compressed, boolean isDynamic,
+                          String etag, String lastModified, long ttl, boolean mustRevalidate, long creationTime) {
             this.content = content;
-            this.creationTime = System.currentTimeMillis();
+            this.contentType = contentType;
+            this.compressed = compressed;
+            this.creationTime = creationTime;
             this.isDynamic = isDynamic;
-            this.method = method;
-            this.parameters = new HashMap<>(parameters);
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.ttl = ttl;
+            this.mustRevalidate = mustRevalidate;
+        }
+
+        // Entrée rafraîchie après un 304 de XAMPP : même corps, nouvelle durée de vie
+        // (celle du 304 s'il en donne une). null si le corps vient d'être libéré.
+        public CacheEntry refresh(String newEtag, String newLastModified, CachePolicy policy) {
+            if (!content.retain()) {
+                return null;
+            }
+            boolean shared = ref != null && SHARED_CACHE_ID.equals(ref.userId);
+            CacheEntry fresh = new CacheEntry(content, contentType, compressed, isDynamic,
+                    newEtag != null ? newEtag : etag,
+                    newLastModified != null ? newLastModified : lastModified,
+                    policy.isExplicit() ? policy.ttlFor(shared) : ttl,
+                    policy.isExplicit() ? policy.isMustRevalidate() : mustRevalidate);
+            fresh.tags = tags;
+            return fresh;
         }
 
         public boolean isExpired() {
-            long expirationTime = isDynamic ? DYNAMIC_PAGE_EXPIRATION : STATIC_PAGE_EXPIRATION;
-            return System.currentTimeMillis() - creationTime > expirationTime;
+            return currentTime() > getExpirationTime();
+        }
+
+        // Calculée à chaque appel : suit les changements de durée faits depuis la console
+        public long getExpirationTime() {
+            return expirationTime(creationTime, isDynamic, ttl);
         }
 
-        public boolean matchesRequest(String method, Map<String, String> currentParams) {
-            if (isDynamic) {
-                return this.method.equals(method) && this.parameters.equals(currentParams);
+        public long getCreationTime() {
+            return creationTime;
+        }
+
+        public boolean hasValidators() {
+            return etag != null || lastModified != null;
+        }
+
+        // Fin de conservation : une entrée expirée reste en cache tant qu'elle peut encore servir
+        // (revalidation si elle a des validateurs, délais de grâce stale-while-revalidate / stale-if-error)
+        public long getRetentionTime() {
+            long grace = mustRevalidate ? 0 : Math.max(STALE_WHILE_REVALIDATE, STALE_IF_ERROR);
+            if (hasValidators()) {
+                grace = Math.max(grace, REVALIDATION_WINDOW);
             }
-            return true;
+            return getExpirationTime() + grace;
+        }
+
+        // Peut être servie expirée depuis moins de window ms (sauf no-cache / must-revalidate)
+        public boolean canServeStale(long window) {
+            return !mustRevalidate && currentTime() <= getExpirationTime() + window;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getLastModified() {
+            return lastModified;
         }
 
-        public String getContent() {
+        public CacheMemory.Body getContent() {
             return content;
         }
+
+        public int getSize() {
+            return content.length();
+        }
+
+        // Référence sur le corps pendant l'envoi d'une réponse ; faux s'il vient d'être libéré
+        public boolean retain() {
+            return content.retain();
+        }
+
+        // Rendre la mémoire du corps (appelé par le cache quand l'entrée est retirée)
+        public void release() {
+            content.release();
+        }
+
+        public String getContentType() {
+            return contentType;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+    }
+
+    // Résultat d'un appel à XAMPP réutilisable par les requêtes regroupées sur la même clé
+    static final class UpstreamResult {
+        private final String status;
+        private final String contentType;
+        private final String headers;
+        private final byte[] body;
+        private final String ownerId; // SHARED_CACHE_ID ou utilisateur auquel la réponse est propre
+
+        UpstreamResult(String status, String contentType, String headers, byte[] body, String ownerId) {
+            this.status = status;
+            this.contentType = contentType;
+            this.headers = headers;
+            this.body = body;
+            this.ownerId = ownerId;
+        }
+
+        boolean isUsableBy(String userId) {
+            return ownerId.equals(SHARED_CACHE_ID) || ownerId.equals(userId);
+        }
+    }
+
+    // Référence d'une entrée pour la politique d'éviction : (utilisateur, clé de cache)
+    static final class EntryRef {
+        private final String userId;
+        private final CacheKey key;
+
+        EntryRef(String userId, CacheKey key) {
+            this.userId = userId;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof EntryRef)) return false;
+            EntryRef other = (EntryRef) o;
+            return userId.equals(other.userId) && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * userId.hashCode() + key.hashCode();
+        }
     }
 
+    // Fichier de configuration, remplaçable par -Dserveur.conf=... (bancs d'essai de bench/)
+    private static final String CONFIG_FILE =
+            System.getProperty("serveur.conf", "C:/Users/Nyx/IdeaProjects/NAVIGATEUR/src/conf.json");
+
     // Charger la configuration depuis le fichier JSON
     private static void loadConfiguration() {
         try {
             JSONParser parser = new JSONParser();
-            Object obj = parser.parse(new FileReader("C:/Users/Nyx/IdeaProjects/NAVIGATEUR/src/conf.json"));
+            Object obj = parser.parse(new FileReader(CONFIG_FILE));
             JSONObject jsonObject = (JSONObject) obj;
 
             JSONObject serverConfig = (JSONObject) jsonObject.get("server");
@@ -73,10 +344,164 @@ public class ServeurWeb {
             DYNAMIC_PAGE_EXPIRATION = (Long) cacheConfig.get("dynamic_page_expiration_ms");
             STATIC_PAGE_EXPIRATION = (Long) cacheConfig.get("static_page_expiration_ms");
             CACHE_CLEANUP_INTERVAL = ((Long) cacheConfig.get("cleanup_interval_minutes")).intValue();
+            MAX_CACHE_ENTRY_BYTES = (int) optLong(cacheConfig, "max_entry_bytes", MAX_CACHE_ENTRY_BYTES);
+            EXPIRATION_TICK = Math.max(10, optLong(cacheConfig, "expiration_tick_ms", EXPIRATION_TICK));
+            REVALIDATION_WINDOW = optLong(cacheConfig, "revalidation_window_ms", REVALIDATION_WINDOW);
+            STALE_WHILE_REVALIDATE = optLong(cacheConfig, "stale_while_revalidate_ms", STALE_WHILE_REVALIDATE);
+            STALE_IF_ERROR = optLong(cacheConfig, "stale_if_error_ms", STALE_IF_ERROR);
+            CACHE_MAX_BYTES = optLong(cacheConfig, "max_bytes", CACHE_MAX_BYTES);
+            CACHE_STORAGE = optString(cacheConfig, "storage", CACHE_STORAGE);
+            CACHE_MAX_ENTRIES = optLong(cacheConfig, "max_entries", CACHE_MAX_ENTRIES);
+            JSONObject coalescingConfig = (JSONObject) cacheConfig.get("coalescing");
+            if (coalescingConfig != null) {
+                Object enabled = coalescingConfig.get("enabled");
+                if (enabled instanceof Boolean) {
+                    REQUEST_COALESCING = (Boolean) enabled;
+                }
+                COALESCING_WAIT_TIMEOUT = optLong(coalescingConfig, "wait_timeout_ms", COALESCING_WAIT_TIMEOUT);
+            }
+            Object sharedStatic = cacheConfig.get("shared_static");
+            if (sharedStatic instanceof Boolean) {
+                SHARED_STATIC_CACHE = (Boolean) sharedStatic;
+            }
+            EVICTION_POLICY = optString(cacheConfig, "eviction_policy", EVICTION_POLICY);
+            TAG_HEADER = optString(cacheConfig, "tag_header", TAG_HEADER).toLowerCase(Locale.ROOT);
+            JSONObject compressionConfig = (JSONObject) cacheConfig.get("compression");
+            if (compressionConfig != null) {
+                Object enabled = compressionConfig.get("enabled");
+                if (enabled instanceof Boolean) {
+                    COMPRESSION_ENABLED = (Boolean) enabled;
+                }
+                COMPRESSION_MIN_BYTES = (int) optLong(compressionConfig, "min_bytes", COMPRESSION_MIN_BYTES);
+                COMPRESSION_LEVEL = GzipCodec.level(optLong(compressionConfig, "level", COMPRESSION_LEVEL));
+            }
+
+            JSONObject diskConfig = (JSONObject) cacheConfig.get("disk");
+            if (diskConfig != null) {
+                Object enabled = diskConfig.get("enabled");
+                if (enabled instanceof Boolean) {
+                    DISK_CACHE_ENABLED = (Boolean) enabled;
+                }
+                DISK_CACHE_DIRECTORY = optString(diskConfig, "directory", DISK_CACHE_DIRECTORY);
+                DISK_SEGMENT_BYTES = (int) optLong(diskConfig, "segment_bytes", DISK_SEGMENT_BYTES);
+                DISK_MAX_BYTES = optLong(diskConfig, "max_bytes", DISK_MAX_BYTES);
+                DISK_PROMOTE_HITS = (int) optLong(diskConfig, "promote_hits", DISK_PROMOTE_HITS);
+            }
+
+            JSONObject prefetchConfig = (JSONObject) cacheConfig.get("prefetch");
+            if (prefetchConfig != null) {
+                Object enabled = prefetchConfig.get("enabled");
+                if (enabled instanceof Boolean) {
+                    PREFETCH_ENABLED = (Boolean) enabled;
+                }
+                PREFETCH_MAX_DEPTH = (int) optLong(prefetchConfig, "max_depth", PREFETCH_MAX_DEPTH);
+                PREFETCH_MAX_LINKS_PER_PAGE = (int) optLong(prefetchConfig, "max_links_per_page", PREFETCH_MAX_LINKS_PER_PAGE);
+                PREFETCH_QUEUE_CAPACITY = (int) optLong(prefetchConfig, "queue_capacity", PREFETCH_QUEUE_CAPACITY);
+                PREFETCH_CONCURRENCY = (int) optLong(prefetchConfig, "concurrency", PREFETCH_CONCURRENCY);
+                PREFETCH_LATENCY_THRESHOLD = optLong(prefetchConfig, "latency_threshold_ms", PREFETCH_LATENCY_THRESHOLD);
+                PREFETCH_MAX_BACKOFF = optLong(prefetchConfig, "max_backoff_ms", PREFETCH_MAX_BACKOFF);
+            }
+
+            JSONObject warmupConfig = (JSONObject) cacheConfig.get("warmup");
+            if (warmupConfig != null) {
+                Object urls = warmupConfig.get("urls");
+                if (urls instanceof List) {
+                    WARMUP_URLS = new ArrayList<>();
+                    for (Object url : (List<?>) urls) {
+                        WARMUP_URLS.add(String.valueOf(url));
+                    }
+                }
+                WARMUP_TIMEOUT = optLong(warmupConfig, "timeout_ms", WARMUP_TIMEOUT);
+            }
 
             JSONObject dynamicPageConfig = (JSONObject) jsonObject.get("dynamic_page_detection");
             DYNAMIC_PAGE_KEYWORDS = (List<String>) dynamicPageConfig.get("keywords");
 
+            JSONObject sessionsConfig = (JSONObject) jsonObject.get("sessions");
+            if (sessionsConfig != null) {
+                SESSION_COOKIE_NAME = optString(sessionsConfig, "cookie_name", SESSION_COOKIE_NAME);
+                SESSION_IDLE_TIMEOUT = optLong(sessionsConfig, "idle_timeout_ms", SESSION_IDLE_TIMEOUT);
+                MAX_SESSIONS = (int) optLong(sessionsConfig, "max_sessions", MAX_SESSIONS);
+            }
+
+            JSONObject loggingConfig = (JSONObject) jsonObject.get("logging");
+            if (loggingConfig != null) {
+                LOG_LEVEL = optString(loggingConfig, "level", LOG_LEVEL);
+                LOG_BUFFER_SIZE = (int) optLong(loggingConfig, "buffer_size", LOG_BUFFER_SIZE);
+                LOG_BLOCK_WHEN_FULL = "block".equalsIgnoreCase(optString(loggingConfig, "when_full", "drop"));
+                JSONObject accessLogConfig = (JSONObject) loggingConfig.get("access_log");
+                if (accessLogConfig != null) {
+                    Object enabled = accessLogConfig.get("enabled");
+                    if (enabled instanceof Boolean) {
+                        ACCESS_LOG_ENABLED = (Boolean) enabled;
+                    }
+                    ACCESS_LOG_FILE = optString(accessLogConfig, "file", ACCESS_LOG_FILE);
+                    ACCESS_LOG_MAX_BYTES = optLong(accessLogConfig, "max_bytes", ACCESS_LOG_MAX_BYTES);
+                    ACCESS_LOG_MAX_FILES = (int) optLong(accessLogConfig, "max_files", ACCESS_LOG_MAX_FILES);
+                }
+            }
+
+            JSONObject upstreamConfig = (JSONObject) jsonObject.get("upstream");
+            if (upstreamConfig != null) {
+                UPSTREAM_CONNECT_TIMEOUT = (int) optLong(upstreamConfig, "connect_timeout_ms", UPSTREAM_CONNECT_TIMEOUT);
+                UPSTREAM_READ_TIMEOUT = (int) optLong(upstreamConfig, "read_timeout_ms", UPSTREAM_READ_TIMEOUT);
+                UPSTREAM_MAX_CONNECTIONS_PER_HOST = (int) optLong(upstreamConfig, "max_connections_per_host", UPSTREAM_MAX_CONNECTIONS_PER_HOST);
+                UPSTREAM_MAX_IDLE = optLong(upstreamConfig, "max_idle_ms", UPSTREAM_MAX_IDLE);
+                UPSTREAM_ACQUIRE_TIMEOUT = optLong(upstreamConfig, "acquire_timeout_ms", UPSTREAM_ACQUIRE_TIMEOUT);
+                Object backends = upstreamConfig.get("backends");
+                if (backends instanceof List && !((List<?>) backends).isEmpty()) {
+                    UPSTREAM_BACKENDS = new ArrayList<>();
+                    for (Object backend : (List<?>) backends) {
+                        UPSTREAM_BACKENDS.add(String.valueOf(backend));
+                    }
+                }
+                LOAD_BALANCING = optString(upstreamConfig, "load_balancing", LOAD_BALANCING);
+                JSONObject healthConfig = (JSONObject) upstreamConfig.get("health_check");
+                if (healthConfig != null) {
+                    Object enabled = healthConfig.get("enabled");
+                    if (enabled instanceof Boolean) {
+                        HEALTH_CHECK_ENABLED = (Boolean) enabled;
+                    }
+                    HEALTH_CHECK_PATH = optString(healthConfig, "path", HEALTH_CHECK_PATH);
+                    HEALTH_CHECK_INTERVAL = Math.max(100, optLong(healthConfig, "interval_ms", HEALTH_CHECK_INTERVAL));
+                    HEALTH_CHECK_TIMEOUT = (int) optLong(healthConfig, "timeout_ms", HEALTH_CHECK_TIMEOUT);
+                    HEALTH_CHECK_UNHEALTHY_THRESHOLD = (int) optLong(healthConfig, "unhealthy_threshold", HEALTH_CHECK_UNHEALTHY_THRESHOLD);
+                    HEALTH_CHECK_HEALTHY_THRESHOLD = (int) optLong(healthConfig, "healthy_threshold", HEALTH_CHECK_HEALTHY_THRESHOLD);
+                }
+                JSONObject outlierConfig = (JSONObject) upstreamConfig.get("outlier_detection");
+                if (outlierConfig != null) {
+                    OUTLIER_CONSECUTIVE_FAILURES = (int) optLong(outlierConfig, "consecutive_failures", OUTLIER_CONSECUTIVE_FAILURES);
+                    OUTLIER_BASE_EJECTION = optLong(outlierConfig, "base_ejection_ms", OUTLIER_BASE_EJECTION);
+                    OUTLIER_MAX_EJECTION = optLong(outlierConfig, "max_ejection_ms", OUTLIER_MAX_EJECTION);
+                }
+            }
+
+            IO_MODE = optString(serverConfig, "io_mode", IO_MODE);
+            NIO_EVENT_LOOPS = (int) optLong(serverConfig, "nio_event_loops", NIO_EVENT_LOOPS);
+
+            JSONObject keepAliveConfig = (JSONObject) serverConfig.get("keep_alive");
+            if (keepAliveConfig != null) {
+                KEEP_ALIVE_IDLE_TIMEOUT = (int) optLong(keepAliveConfig, "idle_timeout_ms", KEEP_ALIVE_IDLE_TIMEOUT);
+                KEEP_ALIVE_MAX_REQUESTS = (int) optLong(keepAliveConfig, "max_requests", KEEP_ALIVE_MAX_REQUESTS);
+                KEEP_ALIVE_BUSY_IDLE_TIMEOUT = (int) optLong(keepAliveConfig, "busy_idle_timeout_ms",
+                        KEEP_ALIVE_BUSY_IDLE_TIMEOUT);
+            }
+
+            JSONObject limitsConfig = (JSONObject) serverConfig.get("limits");
+            if (limitsConfig != null) {
+                MAX_REQUEST_LINE_BYTES = (int) optLong(limitsConfig, "max_line_bytes", MAX_REQUEST_LINE_BYTES);
+                MAX_REQUEST_HEADERS = (int) optLong(limitsConfig, "max_header_count", MAX_REQUEST_HEADERS);
+                MAX_REQUEST_BODY_BYTES = (int) optLong(limitsConfig, "max_body_bytes", MAX_REQUEST_BODY_BYTES);
+            }
+
+            JSONObject executorConfig = (JSONObject) serverConfig.get("executor");
+            if (executorConfig != null) {
+                EXECUTOR_MODE = optString(executorConfig, "mode", EXECUTOR_MODE);
+                EXECUTOR_POOL_SIZE = (int) optLong(executorConfig, "pool_size", EXECUTOR_POOL_SIZE);
+                EXECUTOR_QUEUE_CAPACITY = (int) optLong(executorConfig, "queue_capacity", EXECUTOR_QUEUE_CAPACITY);
+                EXECUTOR_MAX_IN_FLIGHT = (int) optLong(executorConfig, "max_in_flight", EXECUTOR_MAX_IN_FLIGHT);
+            }
+
         } catch (IOException | ParseException e) {
             // Configuration par défaut
             PORT = 1567;
@@ -87,392 +512,1803 @@ public class ServeurWeb {
             DYNAMIC_PAGE_KEYWORDS = Arrays.asList(
                     "submit", "process", "handle", "result", "action", "traitement"
             );
-            e.printStackTrace();
+            Log.error("Configuration illisible, valeurs par défaut utilisées", e);
+        }
+    }
+
+    // Lecture d'une valeur optionnelle de la configuration
+    private static long optLong(JSONObject config, String key, long defaultValue) {
+        Object value = config.get(key);
+        return value instanceof Number ? ((Number) value).longValue() : defaultValue;
+    }
+
+    private static String optString(JSONObject config, String key, String defaultValue) {
+        Object value = config.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    public static void main(String[] args) throws IOException {
+        loadConfiguration();
+        startLogging();
+
+        // Stockage des corps en cache avec budget mémoire global
+        cacheMemory = new CacheMemory(CacheMemory.Mode.fromConfig(CACHE_STORAGE), CACHE_MAX_BYTES);
+        Log.info("Stockage du cache : {} (budget {} octets)", cacheMemory.getMode(), CACHE_MAX_BYTES);
+        evictionPolicy = EvictionPolicy.create(EVICTION_POLICY, CACHE_MAX_ENTRIES);
+        Log.info("Politique d'éviction : {} (max {} entrées)", evictionPolicy.getName(), CACHE_MAX_ENTRIES);
+
+        // Expiration continue : à chaque tick, seules les entrées arrivées à échéance sont retirées
+        expirationWheel = new ExpirationWheel<>(EXPIRATION_TICK, System.currentTimeMillis());
+        cacheCleanupService.scheduleAtFixedRate(ServeurWeb::expireEntries,
+                EXPIRATION_TICK, EXPIRATION_TICK, TimeUnit.MILLISECONDS);
+
+        // Cache disque : l'index est reconstruit à partir des segments laissés par l'exécution précédente
+        if (DISK_CACHE_ENABLED) {
+            diskCache = new DiskCache(Paths.get(DISK_CACHE_DIRECTORY), DISK_SEGMENT_BYTES, DISK_MAX_BYTES);
+            Log.info("Cache disque : {} entrée(s) retrouvée(s) dans {}", diskCache.getEntryCount(), DISK_CACHE_DIRECTORY);
+        }
+
+        // Le nettoyage périodique retire les caches d'utilisateurs vides et compacte le cache disque
+        cacheCleanupService.scheduleAtFixedRate(() -> {
+            USER_CACHES.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+            if (diskCache != null) {
+                diskCache.compact(record -> currentTime() >
+                        expirationTime(record.getCreationTime(), record.isDynamic(), record.getTtl()));
+            }
+        }, 1, CACHE_CLEANUP_INTERVAL, TimeUnit.MINUTES);
+
+        // Sessions inutilisées oubliées au fil de l'eau ; le nombre de sessions suivies reste borné
+        sessionStore = new SessionStore(SESSION_COOKIE_NAME, SESSION_IDLE_TIMEOUT, MAX_SESSIONS);
+        long sessionSweep = Math.max(1000, Math.min(SESSION_IDLE_TIMEOUT / 4, 60_000));
+        cacheCleanupService.scheduleAtFixedRate(() -> sessionStore.expireIdle(currentTime()),
+                sessionSweep, sessionSweep, TimeUnit.MILLISECONDS);
+
+        // Client vers XAMPP avec pool de connexions persistantes
+        upstreamClient = new UpstreamClient(
+                UPSTREAM_CONNECT_TIMEOUT,
+                UPSTREAM_READ_TIMEOUT,
+                UPSTREAM_MAX_CONNECTIONS_PER_HOST,
+                UPSTREAM_MAX_IDLE,
+                UPSTREAM_ACQUIRE_TIMEOUT
+        );
+        cacheCleanupService.scheduleAtFixedRate(upstreamClient::evictIdleConnections,
+                UPSTREAM_MAX_IDLE, UPSTREAM_MAX_IDLE, TimeUnit.MILLISECONDS);
+
+        // Répartition entre les serveurs XAMPP, sondés en continu
+        backendPool = new BackendPool(
+                UPSTREAM_BACKENDS != null ? UPSTREAM_BACKENDS : Collections.singletonList(XAMPP_SERVER_URL),
+                BackendPool.Policy.fromConfig(LOAD_BALANCING),
+                OUTLIER_CONSECUTIVE_FAILURES,
+                OUTLIER_BASE_EJECTION,
+                OUTLIER_MAX_EJECTION
+        );
+        if (HEALTH_CHECK_ENABLED) {
+            backendPool.startHealthChecks(HEALTH_CHECK_PATH, HEALTH_CHECK_INTERVAL, HEALTH_CHECK_TIMEOUT,
+                    HEALTH_CHECK_UNHEALTHY_THRESHOLD, HEALTH_CHECK_HEALTHY_THRESHOLD);
+        }
+        Log.info("Serveurs XAMPP : {} ({})", backendPool.size(), backendPool.getPolicy());
+
+        // Démarrer le gestionnaire de commandes dans un thread séparé
+        Thread commandThread = new Thread(new CacheCommandHandler());
+        commandThread.setDaemon(true);
+        commandThread.start();
+
+        // Exécuteur borné des connexions
+        connectionExecutor = new ConnectionExecutor(
+                ConnectionExecutor.Mode.fromConfig(EXECUTOR_MODE),
+                EXECUTOR_POOL_SIZE,
+                EXECUTOR_QUEUE_CAPACITY,
+                EXECUTOR_MAX_IN_FLIGHT
+        );
+        Log.info("Exécuteur des connexions : {} (max {} connexions en cours)", connectionExecutor.getMode(),
+                connectionExecutor.getMaxInFlight());
+
+        // Préchargement des liens, et préchauffage du cache avant la première connexion
+        if (PREFETCH_ENABLED || !WARMUP_URLS.isEmpty()) {
+            prefetcher = new Prefetcher(ServeurWeb::prefetchPage, ServeurWeb::isPrefetchable,
+                    PREFETCH_CONCURRENCY, PREFETCH_QUEUE_CAPACITY, PREFETCH_ENABLED ? PREFETCH_MAX_DEPTH : 0,
+                    PREFETCH_MAX_LINKS_PER_PAGE, PREFETCH_LATENCY_THRESHOLD, PREFETCH_MAX_BACKOFF);
+        }
+        if (!WARMUP_URLS.isEmpty()) {
+            long start = System.nanoTime();
+            try {
+                long loaded = prefetcher.warmUp("localhost:" + PORT, WARMUP_URLS, WARMUP_TIMEOUT);
+                Log.info("Préchauffage : {} page(s) chargée(s) en {} ms ({} entrée(s) en cache)", loaded,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), cacheEntryCount.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+
+        if ("nio".equalsIgnoreCase(IO_MODE)) {
+            nioServeur = new NioServeur(PORT, NIO_EVENT_LOOPS, connectionExecutor,
+                    KEEP_ALIVE_IDLE_TIMEOUT, KEEP_ALIVE_MAX_REQUESTS);
+            nioServeur.run();
+            return;
+        }
+
+        Log.info("Serveur démarré sur le port {}", PORT);
+        serverSocket = new ServerSocket(PORT);
+
+        while (isRunning) {
+            try {
+                Socket clientSocket = serverSocket.accept();
+                Log.debug("Connexion entrante : {}", clientSocket.getInetAddress());
+                if (!connectionExecutor.submit(new ClientHandler(clientSocket))) {
+                    rejectConnection(clientSocket);
+                }
+            } catch (SocketException e) {
+                if (!isRunning) {
+                    Log.info("Serveur arrêté.");
+                    break;
+                }
+                Log.error("Erreur d'acceptation d'une connexion", e);
+            }
+        }
+    }
+
+    // Les messages et le journal d'accès passent par le thread écrivain à partir d'ici
+    private static void startLogging() {
+        AsyncLogWriter.RotatingFile accessLog = null;
+        if (ACCESS_LOG_ENABLED) {
+            try {
+                accessLog = new AsyncLogWriter.RotatingFile(Paths.get(ACCESS_LOG_FILE),
+                        ACCESS_LOG_MAX_BYTES, ACCESS_LOG_MAX_FILES);
+            } catch (IOException e) {
+                Log.warn("Journal d'accès indisponible ({}) : {}", ACCESS_LOG_FILE, e.getMessage());
+            }
+        }
+        Log.configure(Log.Level.fromConfig(LOG_LEVEL, Log.Level.INFO),
+                new AsyncLogWriter(LOG_BUFFER_SIZE, LOG_BLOCK_WHEN_FULL, System.out, System.err, accessLog));
+        if (accessLog != null) {
+            Log.info("Journal d'accès : {} (rotation à {} octets, {} fichiers)", ACCESS_LOG_FILE,
+                    ACCESS_LOG_MAX_BYTES, ACCESS_LOG_MAX_FILES);
+        }
+    }
+
+    // Serveur saturé : répondre 503 directement depuis le thread d'acceptation
+    private static void rejectConnection(Socket clientSocket) {
+        try (Socket socket = clientSocket) {
+            String body = "<html><body><h1>503 Service Unavailable</h1><p>Serveur saturé, réessayez plus tard</p></body></html>";
+            byte[] bodyBytes = body.getBytes(StandardCharsets.UTF_8);
+            OutputStream out = socket.getOutputStream();
+            out.write(("HTTP/1.1 503 Service Unavailable\r\n" +
+                    "Content-Type: text/html; charset=UTF-8\r\n" +
+                    "Content-Length: " + bodyBytes.length + "\r\n" +
+                    "Retry-After: 1\r\n" +
+                    "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(bodyBytes);
+            out.flush();
+        } catch (IOException e) {
+            // Le client est déjà parti : rien à faire
+        }
+    }
+
+    static class ClientHandler implements Runnable { // lecture des requetes sur une connexion bloquante
+        private final Socket clientSocket;
+
+        public ClientHandler(Socket socket) {
+            this.clientSocket = socket;
+        }
+
+        @Override
+        public void run() {
+            Metrics.ACTIVE_CONNECTIONS.incrementAndGet();
+            try {
+                // Un seul analyseur par connexion : les requêtes pipelinées déjà lues restent dans son tampon
+                InputStream in = clientSocket.getInputStream();
+                OutputStream out = new BufferedOutputStream(clientSocket.getOutputStream());
+                // Attente par tranches : la saturation de l'exécuteur est revue à chaque tranche
+                clientSocket.setSoTimeout(Math.max(1, Math.min(KEEP_ALIVE_IDLE_TIMEOUT, KEEP_ALIVE_BUSY_IDLE_TIMEOUT)));
+                clientSocket.setTcpNoDelay(true); // réponses écrites en plusieurs fois : pas d'attente de l'ACK retardé
+                HttpRequestParser parser = newRequestParser();
+                ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE).flip();
+
+                int requestCount = 0;
+                boolean keepAlive = true;
+                while (keepAlive && isRunning) {
+                    HttpRequest request;
+                    try {
+                        request = readRequest(in, parser, buffer);
+                    } catch (SocketTimeoutException e) {
+                        break; // connexion inactive trop longtemps (moins longtemps si l'exécuteur est saturé)
+                    } catch (HttpRequestParser.MalformedRequestException e) {
+                        sendError(out, e.getStatus(), e.getMessage());
+                        break;
+                    }
+                    if (request == null) {
+                        break; // le client a fermé la connexion
+                    }
+
+                    requestCount++;
+                    keepAlive = isKeepAlive(request) && requestCount < KEEP_ALIVE_MAX_REQUESTS;
+                    handleRequest(request, out, keepAlive);
+                }
+
+            } catch (IOException e) {
+                Log.warn("Connexion {} interrompue : {}", clientSocket.getInetAddress(), e.getMessage());
+            } finally {
+                Metrics.ACTIVE_CONNECTIONS.decrementAndGet();
+                try {
+                    clientSocket.close();
+                } catch (IOException e) {
+                    Log.debug("Fermeture de la connexion : {}", e.getMessage());
+                }
+            }
+        }
+
+        // Lire une requête complète, ou null si la connexion est fermée entre deux requêtes.
+        // buffer contient, en lecture, les octets reçus et pas encore analysés.
+        // SocketTimeoutException après KEEP_ALIVE_IDLE_TIMEOUT sans octet reçu, ou dès
+        // KEEP_ALIVE_BUSY_IDLE_TIMEOUT si des connexions attendent un thread.
+        private HttpRequest readRequest(InputStream in, HttpRequestParser parser, ByteBuffer buffer) throws IOException {
+            long idleSince = System.currentTimeMillis();
+            while (true) {
+                HttpRequest request = parser.parse(buffer, clientSocket.getInetAddress());
+                if (request != null) {
+                    return request;
+                }
+                // Tout le tampon a été consommé : lire la suite, qui peut n'être qu'un morceau de ligne
+                buffer.clear();
+                int read;
+                try {
+                    read = in.read(buffer.array());
+                } catch (SocketTimeoutException e) {
+                    buffer.limit(0);
+                    long idle = System.currentTimeMillis() - idleSince;
+                    if (idle >= KEEP_ALIVE_IDLE_TIMEOUT ||
+                            idle >= KEEP_ALIVE_BUSY_IDLE_TIMEOUT && connectionExecutor.isSaturated()) {
+                        throw e;
+                    }
+                    continue;
+                }
+                idleSince = System.currentTimeMillis();
+                if (read < 0) {
+                    if (parser.hasPartialRequest()) {
+                        throw new HttpRequestParser.MalformedRequestException("Requête incomplète");
+                    }
+                    return null;
+                }
+                Metrics.BYTES_IN.add(read);
+                buffer.limit(read);
+            }
+        }
+
+        private void sendError(OutputStream out, String status, String message) throws IOException {
+            byte[] body = ("<html><body><h1>" + status + "</h1><p>" + message + "</p></body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            out.write(("HTTP/1.1 " + status + "\r\n" +
+                    "Content-Type: text/html; charset=UTF-8\r\n" +
+                    "Content-Length: " + body.length + "\r\n" +
+                    "Connection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            out.write(body);
+            out.flush();
+        }
+    }
+
+    // Compte les octets de la réponse à une requête (journal d'accès et métriques)
+    static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+
+    // Analyseur de requêtes avec les limites de conf.json (modes bloquant et NIO)
+    static HttpRequestParser newRequestParser() {
+        return new HttpRequestParser(MAX_REQUEST_LINE_BYTES, MAX_REQUEST_HEADERS, MAX_REQUEST_BODY_BYTES);
+    }
+
+    // HTTP/1.1 : persistant sauf "Connection: close" ; HTTP/1.0 : seulement avec "Connection: keep-alive"
+    static boolean isKeepAlive(HttpRequest request) {
+        String connection = request.getHeader("connection");
+        if ("HTTP/1.1".equals(request.getVersion())) {
+            return connection == null || !connection.equalsIgnoreCase("close");
+        }
+        return connection != null && connection.equalsIgnoreCase("keep-alive");
+    }
+
+    // Point d'entrée commun aux modes bloquant et NIO : traiter une requête complète
+    static void handleRequest(HttpRequest request, OutputStream output, boolean keepAlive) throws IOException {
+        long start = System.nanoTime();
+        Metrics.REQUESTS.increment();
+        CountingOutputStream counted = new CountingOutputStream(output);
+        RequestHandler handler = new RequestHandler(request, counted, keepAlive);
+        try {
+            handler.handle();
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            Metrics.REQUEST_DURATION.recordNanos(elapsed);
+            Metrics.BYTES_OUT.add(counted.getCount());
+            Log.access(request.getRemoteAddress(), request.getMethod(), request.getTarget(), request.getVersion(),
+                    handler.responseStatus, counted.getCount(), elapsed, handler.cacheStatus,
+                    request.getHeader("user-agent"));
+        }
+    }
+
+    static class RequestHandler { // traitement des requetes
+        private final HttpRequest request;
+        private final OutputStream out;
+        private final boolean keepAlive;
+        private final String method;
+        private final boolean headOnly; // HEAD : en-têtes de la réponse GET, sans corps
+        private String path;
+        private String sessionId;
+        private String userId;
+        private CacheKey cacheKey; // clé de la page demandée (variante comprise)
+        private CacheEntry staleEntry; // entrée expirée en cours de revalidation
+        private String staleOwner;
+        private boolean backgroundRefresh; // rafraîchissement lancé après avoir servi une entrée expirée
+        private int prefetchDepth; // préchargement : distance en liens depuis une page demandée (0 sinon)
+        private String responseStatus; // statut envoyé au client (journal d'accès)
+        private String cacheStatus; // origine de la réponse : HIT, DISK, STALE, COALESCED, MISS...
+        private BackendPool.Backend backend; // serveur XAMPP de l'échange en cours
+        private final Map<String, String> requestHeaders;
+        private final Map<String, String> requestParams = new HashMap<>();
+
+        public RequestHandler(HttpRequest request, OutputStream output, boolean keepAlive) {
+            this.request = request;
+            this.out = output;
+            this.keepAlive = keepAlive;
+            this.method = request.getMethod();
+            this.headOnly = "HEAD".equals(method);
+            this.path = request.getTarget();
+            this.requestHeaders = request.getHeaders();
+        }
+
+        public void handle() throws IOException {
+            Log.debug("Requête reçue : Méthode {} pour le chemin {}", method, path);
+
+            // Générer l'ID utilisateur basé sur User-Agent et IP
+            userId = requestHeaders.getOrDefault("user-agent", "") + "-" +
+                    request.getRemoteAddress().toString();
+
+            USER_CACHES.putIfAbsent(userId, new ConcurrentHashMap<>());
+
+            // Gestion des paramètres GET
+            // path ohatra : /search.php?query=test&page=1
+            int query = path.indexOf('?');
+            if (query >= 0) {
+                HttpRequestParser.parseQuery(path.substring(query + 1), requestParams); // "query=test&page=1"
+                path = path.substring(0, query); // /search.php
+            }
+            // requestParams contiendra:
+            // {
+            //     "query": "test",
+            //     "page": "1"
+            // }
+
+            // Gestion des paramètres POST
+            if ("POST".equalsIgnoreCase(method) && request.getBody().length > 0) {
+                HttpRequestParser.parseQuery(new String(request.getBody(), StandardCharsets.UTF_8), requestParams);
+            }
+
+            // Gestion des sessions PHP
+            sessionId = currentSession();
+
+            // Vérification du cache avant d'aller sur le serveur :
+            // cache partagé d'abord (GET), puis cache de l'utilisateur.
+            // Un HEAD est servi par l'entrée du GET : il n'a jamais d'entrée à lui.
+            long lookupStart = System.nanoTime();
+            CacheKey baseKey = CacheKey.of(headOnly ? "GET" : method, path, requestParams);
+            List<String> varyHeaders = VARY_HEADERS.get(baseKey);
+            cacheKey = varyHeaders == null ? baseKey : baseKey.withVariant(variantSuffix(varyHeaders));
+            boolean isStatic = SHARED_STATIC_CACHE && !isDynamicPage(path, method, requestParams);
+            boolean sharedLookup = SHARED_STATIC_CACHE && ("GET".equals(method) || headOnly);
+            String cacheOwner = SHARED_CACHE_ID;
+            CacheEntry cachedEntry = sharedLookup ? usableEntry(SHARED_CACHE_ID, cacheKey) : null;
+            if (cachedEntry == null) {
+                cacheOwner = userId;
+                cachedEntry = usableEntry(userId, cacheKey);
+            }
+            Metrics.CACHE_LOOKUP_DURATION.recordSince(lookupStart);
+            if (cachedEntry != null && backgroundRefresh) {
+                cachedEntry.release(); // déjà rafraîchie par une autre requête
+                return;
+            }
+            if (cachedEntry == null && diskCache != null && !backgroundRefresh && serveFromDisk(sharedLookup, cacheKey)) {
+                return;
+            }
+
+            if (cachedEntry != null) {
+                // Utiliser le contenu du cache
+                Log.debug("Utilisation du cache pour : {}", path);
+                cacheStatus = "HIT";
+                evictionPolicy.recordHit(cachedEntry.ref);
+                try {
+                    sendCachedEntry(cachedEntry);
+                } finally {
+                    cachedEntry.release();
+                }
+                return;  // On arrête là si on a trouvé dans le cache
+            }
+
+            if (path.equals("/cache/list") || path.equals("/cache/remove") || path.equals("/cache/metrics") ||
+                    path.equals("/cache/purge")) {
+                handleCacheManagement();
+                return;
+            }
+
+            // Si rien n'a été trouvé dans le cache ou si c'est expiré,
+            // on transmet la requête à XAMPP
+            String expectedOwner = isStatic ? SHARED_CACHE_ID : userId;
+
+            // Entrée expirée encore conservée : servie tout de suite (stale-while-revalidate),
+            // revalidée (304 au lieu du corps) ou servie en secours si XAMPP échoue (stale-if-error)
+            staleOwner = SHARED_CACHE_ID;
+            staleEntry = sharedLookup ? staleEntry(SHARED_CACHE_ID, cacheKey) : null;
+            if (staleEntry == null) {
+                staleOwner = userId;
+                staleEntry = staleEntry(userId, cacheKey);
+            }
+            if (staleEntry != null && !backgroundRefresh && "GET".equals(method) &&
+                    staleEntry.canServeStale(STALE_WHILE_REVALIDATE)) {
+                try {
+                    evictionPolicy.recordHit(staleEntry.ref);
+                    staleServedCount.incrementAndGet();
+                    Log.debug("Entrée expirée servie pendant son rafraîchissement : {}", path);
+                    cacheStatus = "STALE";
+                    sendCachedEntry(staleEntry);
+                } finally {
+                    staleEntry.release();
+                }
+                refreshInBackground(staleOwner + " " + cacheKey);
+                return;
+            }
+
+            if (!backgroundRefresh) {
+                evictionPolicy.recordMiss(new EntryRef(expectedOwner, cacheKey));
+            }
+            try {
+                if (REQUEST_COALESCING && "GET".equals(method)) {
+                    forwardCoalesced(expectedOwner + " " + cacheKey);
+                } else {
+                    forwardRequestToXampp(path);
+                }
+            } finally {
+                if (staleEntry != null) {
+                    staleEntry.release();
+                }
+            }
+        }
+
+        // Échecs simultanés sur la même clé : une seule requête vers XAMPP, les autres
+        // attendent et renvoient son résultat (ou interrogent XAMPP elles-mêmes à défaut)
+        private void forwardCoalesced(String flightKey) throws IOException {
+            RequestCoalescer<String, UpstreamResult>.Flight flight = requestCoalescer.begin(flightKey);
+            if (flight.isLeader()) {
+                try {
+                    flight.complete(forwardRequestToXampp(path));
+                } catch (IOException | RuntimeException e) {
+                    flight.fail(e);
+                    throw e;
+                }
+                return;
+            }
+
+            UpstreamResult result = flight.await(COALESCING_WAIT_TIMEOUT);
+            if (result != null && result.isUsableBy(userId)) {
+                requestCoalescer.recordCoalesced();
+                Log.debug("Requête regroupée, réponse partagée pour : {}", path);
+                cacheStatus = "COALESCED";
+                writeHead(result.status, result.contentType, result.body.length, result.headers);
+                out.write(result.body);
+                out.flush();
+                return;
+            }
+            forwardRequestToXampp(path);
+        }
+
+        // Entrée utilisable pour cette requête, avec une référence prise sur son corps
+        // (à rendre avec release), ou null
+        private CacheEntry usableEntry(String owner, CacheKey cacheKey) {
+            ConcurrentHashMap<CacheKey, CacheEntry> cache = USER_CACHES.get(owner);
+            CacheEntry entry = cache != null ? cache.get(cacheKey) : null;
+            if (entry != null &&  // Si une entrée existe dans le cache
+                    !entry.isExpired() &&  // Si elle n'est pas expirée
+                    entry.retain()) {  // Si son corps n'a pas été libéré entre-temps
+                return entry;
+            }
+            return null;
+        }
+
+        // Entrée expirée encore conservée, avec une référence prise sur son corps, ou null
+        private CacheEntry staleEntry(String owner, CacheKey cacheKey) {
+            ConcurrentHashMap<CacheKey, CacheEntry> cache = USER_CACHES.get(owner);
+            CacheEntry entry = cache != null ? cache.get(cacheKey) : null;
+            if (entry != null && entry.isExpired() && entry.retain()) {
+                return entry;
+            }
+            return null;
+        }
+
+        // Corps en cache (ou 304 si la requête conditionnelle du navigateur correspond)
+        private void sendCachedEntry(CacheEntry entry) throws IOException {
+            if (notModified(entry.getEtag(), entry.getLastModified())) {
+                sendNotModified(entry.getEtag(), entry.getLastModified());
+                return;
+            }
+            String headers = storedHeaders(entry.isCompressed(), entry.getEtag(), entry.getLastModified());
+            if (headers != null) {
+                sendResponse("200 OK", entry.getContentType(), entry.getContent(), headers);
+            } else {
+                sendDecompressed(entry.getContentType(), entry.getContent().toByteArray(), entry.getEtag(),
+                        entry.getLastModified());
+            }
+        }
+
+        // En-têtes d'une page en cache envoyée telle quelle, ou null s'il faut la décompresser
+        // (corps en gzip, navigateur qui n'accepte pas gzip)
+        private String storedHeaders(boolean compressed, String etag, String lastModified) {
+            if (!compressed) {
+                return validatorHeaders(etag, lastModified);
+            }
+            if (!GzipCodec.acceptsGzip(requestHeaders.get("accept-encoding"))) {
+                return null;
+            }
+            gzipServedCount.incrementAndGet();
+            // Autre représentation que celle de XAMPP : l'ETag devient faible (reste valable pour If-None-Match)
+            String tag = etag != null && !etag.startsWith("W/") ? "W/" + etag : etag;
+            return "Content-Encoding: gzip\r\nVary: Accept-Encoding\r\n" + validatorHeaders(tag, lastModified);
+        }
+
+        private void sendDecompressed(String contentType, byte[] compressed, String etag, String lastModified)
+                throws IOException {
+            decompressedCount.incrementAndGet();
+            sendResponse("200 OK", contentType, GzipCodec.decompress(compressed),
+                    "Vary: Accept-Encoding\r\n" + validatorHeaders(etag, lastModified));
+        }
+
+        // Rafraîchir l'entrée sans client en attente : même requête, réponse jetée.
+        // Un seul rafraîchissement à la fois par entrée.
+        private void refreshInBackground(String refreshKey) {
+            if (!REFRESHING.add(refreshKey)) {
+                return;
+            }
+            RequestHandler refresher = new RequestHandler(request, OutputStream.nullOutputStream(), false);
+            refresher.backgroundRefresh = true;
+            boolean submitted = connectionExecutor.submit(() -> {
+                try {
+                    refresher.handle();
+                } catch (IOException e) {
+                    Log.warn("Échec du rafraîchissement de {} : {}", path, e.getMessage());
+                } finally {
+                    REFRESHING.remove(refreshKey);
+                }
+            });
+            if (!submitted) {
+                REFRESHING.remove(refreshKey); // serveur saturé : la prochaine requête réessaiera
+            }
+        }
+
+        // XAMPP injoignable ou en erreur : servir l'entrée expirée si elle est dans le délai de grâce
+        private boolean serveStaleOnError(String reason) throws IOException {
+            if (staleEntry == null || !staleEntry.canServeStale(STALE_IF_ERROR)) {
+                return false;
+            }
+            staleOnErrorCount.incrementAndGet();
+            Log.warn("XAMPP en échec ({}), entrée expirée servie pour : {}", reason, path);
+            cacheStatus = "STALE_ERROR";
+            sendCachedEntry(staleEntry);
+            return true;
+        }
+
+        // Requête conditionnelle du navigateur satisfaite par ces validateurs (If-None-Match prioritaire)
+        private boolean notModified(String etag, String lastModified) {
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                return false;
+            }
+            String ifNoneMatch = requestHeaders.get("if-none-match");
+            if (ifNoneMatch != null) {
+                if (etag == null) {
+                    return false;
+                }
+                for (String candidate : ifNoneMatch.split(",")) {
+                    String tag = candidate.trim();
+                    if (tag.equals("*") || weakTag(tag).equals(weakTag(etag))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            String ifModifiedSince = requestHeaders.get("if-modified-since");
+            if (ifModifiedSince != null && lastModified != null) {
+                try {
+                    ZonedDateTime modified = ZonedDateTime.parse(lastModified.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    ZonedDateTime since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                    return !modified.isAfter(since);
+                } catch (DateTimeParseException e) {
+                    return false;
+                }
+            }
+            return false;
+        }
+
+        // Comparaison faible des ETag : W/"x" et "x" désignent la même version
+        private String weakTag(String tag) {
+            return tag.startsWith("W/") ? tag.substring(2) : tag;
+        }
+
+        private String validatorHeaders(String etag, String lastModified) {
+            StringBuilder headers = new StringBuilder();
+            if (etag != null) {
+                headers.append("ETag: ").append(etag).append("\r\n");
+            }
+            if (lastModified != null) {
+                headers.append("Last-Modified: ").append(lastModified).append("\r\n");
+            }
+            return headers.toString();
+        }
+
+        // XAMPP a confirmé la page expirée (304) : lui redonner une durée de vie et la servir
+        private UpstreamResult revalidated(UpstreamClient.Response response) throws IOException {
+            CacheEntry fresh = staleEntry.refresh(response.header("etag"), response.header("last-modified"),
+                    CachePolicy.fromResponse(response.getHeaders()));
+            CacheEntry served = staleEntry;
+            if (fresh != null) {
+                if (refreshInCache(staleOwner, cacheKey, staleEntry, fresh)) {
+                    served = fresh;
+                } else {
+                    fresh.release();
+                }
+            }
+            revalidatedCount.incrementAndGet();
+            Log.debug("Page revalidée (304) : {}", path);
+            cacheStatus = "REVALIDATED";
+
+            byte[] stored = served.getContent().toByteArray();
+            if (diskCache != null && served == fresh) {
+                diskCache.put(staleOwner, cacheKey.toString(), served.getContentType(), served.isCompressed(),
+                        served.isDynamic, served.getEtag(), served.getLastModified(), served.ttl,
+                        served.mustRevalidate, served.tags, served.getCreationTime(), stored);
+            }
+            sendCachedEntry(served);
+
+            // Les requêtes regroupées reçoivent la page non compressée
+            String headers = validatorHeaders(served.getEtag(), served.getLastModified());
+            byte[] content = served.isCompressed() ? GzipCodec.decompress(stored) : stored;
+            return new UpstreamResult("200 OK", served.getContentType(), headers, content, staleOwner);
+        }
+
+        // Second niveau : page trouvée sur disque. Servie depuis le disque, et remontée en mémoire
+        // à partir de DISK_PROMOTE_HITS lectures. Faux si le disque n'a rien d'utilisable.
+        private boolean serveFromDisk(boolean sharedLookup, CacheKey cacheKey) throws IOException {
+            String key = cacheKey.toString();
+            String owner = SHARED_CACHE_ID;
+            DiskCache.Record record = sharedLookup ? diskCache.get(SHARED_CACHE_ID, key) : null;
+            if (record == null) {
+                owner = userId;
+                record = diskCache.get(userId, key);
+            }
+            if (record == null) {
+                return false;
+            }
+            if (currentTime() > expirationTime(record.getCreationTime(), record.isDynamic(), record.getTtl())) {
+                diskCache.remove(owner, key);
+                return false;
+            }
+            byte[] content = diskCache.readBody(record);
+            if (content == null) {
+                return false;
+            }
+
+            Log.debug("Utilisation du cache disque pour : {}", path);
+            cacheStatus = "DISK";
+            evictionPolicy.recordHit(new EntryRef(owner, cacheKey));
+            if (record.getHits() >= DISK_PROMOTE_HITS) {
+                CacheMemory.Body body = allocateCacheBody(owner, cacheKey, content);
+                if (body != null) {
+                    CacheEntry entry = new CacheEntry(body, record.getContentType(), record.isCompressed(),
+                            record.isDynamic(), record.getEtag(), record.getLastModified(), record.getTtl(),
+                            record.isMustRevalidate(), record.getCreationTime());
+                    entry.tags = record.getTags();
+                    putInCache(owner, cacheKey, entry);
+                    diskCache.recordPromotion();
+                }
+            }
+            if (notModified(record.getEtag(), record.getLastModified())) {
+                sendNotModified(record.getEtag(), record.getLastModified());
+                return true;
+            }
+            String headers = storedHeaders(record.isCompressed(), record.getEtag(), record.getLastModified());
+            if (headers != null) {
+                sendResponse("200 OK", record.getContentType(), content, headers);
+            } else {
+                sendDecompressed(record.getContentType(), content, record.getEtag(), record.getLastModified());
+            }
+            return true;
+        }
+
+        // Session PHP du navigateur (cookie posé auparavant par XAMPP), ou null :
+        // XAMPP en créera une et son Set-Cookie sera relayé
+        private String currentSession() {
+            String id = sessionStore.fromCookieHeader(requestHeaders.get("cookie"));
+            if (id != null && sessionStore.touch(id, currentTime())) {
+                Log.debug("Session existante trouvée : {}", id);
+            }
+            return id;
+        }
+
+        // Set-Cookie de XAMPP : suivre la session posée, oublier celle qu'il supprime
+        private void trackSetCookie(String setCookie) {
+            String id = sessionStore.fromSetCookie(setCookie);
+            if (id == null) {
+                return;
+            }
+            if (SessionStore.isDeletion(setCookie)) {
+                sessionStore.remove(id);
+                if (sessionId != null) {
+                    sessionStore.remove(sessionId);
+                }
+            } else {
+                if (!sessionStore.touch(id, currentTime())) {
+                    Log.debug("Nouvelle session créée par XAMPP : {}", id);
+                }
+                sessionStore.assignBackend(id, backend.getUrl()); // la session vit sur ce serveur
+            }
+        }
+
+        // Envoyer la requête au serveur XAMPP choisi par le pool (celui de la session en mode collant).
+        // Un GET/HEAD dont le serveur ne répond pas est retenté une fois sur un autre serveur.
+        private UpstreamClient.Response sendToBackend(Map<String, String> upstreamHeaders, byte[] postBody)
+                throws IOException {
+            String preferred = sessionId != null && backendPool.getPolicy() == BackendPool.Policy.STICKY
+                    ? sessionStore.getBackend(sessionId) : null;
+            boolean retryable = ("GET".equals(method) || "HEAD".equals(method)) && backendPool.size() > 1;
+            BackendPool.Backend failed = null;
+            while (true) {
+                backend = backendPool.choose(preferred, failed);
+                backendPool.begin(backend);
+                long start = System.nanoTime();
+                try {
+                    UpstreamClient.Response response = upstreamClient.execute(backend.getUrl(), method,
+                            request.getTarget(), upstreamHeaders, postBody);
+                    long latency = System.nanoTime() - start;
+                    backendPool.recordLatency(backend, latency);
+                    if (prefetcher != null) {
+                        prefetcher.recordLatency(latency);
+                    }
+                    if (sessionId != null && backendPool.getPolicy() == BackendPool.Policy.STICKY &&
+                            !backend.getUrl().equals(preferred)) {
+                        // Session sans serveur, ou serveur indisponible : la session suit ce serveur
+                        sessionStore.assignBackend(sessionId, backend.getUrl());
+                    }
+                    return response;
+                } catch (IOException e) {
+                    backendPool.complete(backend, false);
+                    if (!retryable || failed != null) {
+                        throw e;
+                    }
+                    Log.debug("Serveur XAMPP {} en échec ({}), nouvel essai sur un autre serveur",
+                            backend.getUrl(), e.getMessage());
+                    failed = backend;
+                }
+            }
+        }
+
+        // Retourne le résultat complet si la réponse peut être réutilisée par des requêtes regroupées
+        private UpstreamResult forwardRequestToXampp(String path) throws IOException {
+            long start = System.nanoTime();
+            try {
+                return exchangeWithXampp(path);
+            } finally {
+                Metrics.UPSTREAM_DURATION.recordSince(start);
+            }
+        }
+
+        private UpstreamResult exchangeWithXampp(String path) throws IOException {
+            cacheStatus = "MISS";
+            // Transmettre les en-têtes (cookies du navigateur, dont la session PHP, tels quels)
+            Map<String, String> upstreamHeaders = new LinkedHashMap<>();
+            String cookie = requestHeaders.get("cookie");
+            if (cookie != null) {
+                upstreamHeaders.put("Cookie", cookie);
+            }
+            for (String name : FORWARDED_REQUEST_HEADERS) {
+                String value = requestHeaders.get(name);
+                if (value != null) {
+                    upstreamHeaders.put(name, value);
+                }
+            }
+            if (staleEntry != null) {
+                if (staleEntry.getEtag() != null) {
+                    upstreamHeaders.put("If-None-Match", staleEntry.getEtag());
+                }
+                if (staleEntry.getLastModified() != null) {
+                    upstreamHeaders.put("If-Modified-Since", staleEntry.getLastModified());
+                }
+            }
+
+            // Transmettre les paramètres POST si nécessaire
+            byte[] postBody = null;
+            if ("POST".equalsIgnoreCase(method) && !requestParams.isEmpty()) {
+                upstreamHeaders.put("Content-Type", "application/x-www-form-urlencoded");
+                StringBuilder postData = new StringBuilder();
+                for (Map.Entry<String, String> param : requestParams.entrySet()) {
+                    if (postData.length() != 0) postData.append('&');
+                    postData.append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8));
+                    postData.append('=');
+                    postData.append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
+                }
+                postBody = postData.toString().getBytes(StandardCharsets.UTF_8); // eto no ny parametre requete deja parser username=john&password=secretpass123
+            }
+
+            // Connexion prise dans le pool, rendue à la fermeture de la réponse
+            // exemple : GET /search.php?query=test HTTP/1.1
+            UpstreamClient.Response upstreamResponse;
+            try {
+                upstreamResponse = sendToBackend(upstreamHeaders, postBody);
+            } catch (IOException e) {
+                if (!serveStaleOnError(e.getMessage())) {
+                    sendError("502 Bad Gateway", "Le serveur XAMPP ne répond pas");
+                }
+                return null;
+            }
+            boolean backendHealthy = upstreamResponse.getStatus() < 500;
+            try (UpstreamClient.Response response = upstreamResponse) {
+
+                // Statut et en-têtes de XAMPP relayés tels quels
+                int responseCode = response.getStatus();
+                if (responseCode == 304 && staleEntry != null) {
+                    return revalidated(response);
+                }
+                if (responseCode >= 500 && serveStaleOnError(responseCode + " " + response.getReason())) {
+                    return null;
+                }
+                String status = responseCode + " " + response.getReason();
+                String contentType = response.header("content-type");
+                String contentLength = response.header("content-length");
+                long length;
+                try {
+                    length = contentLength != null ? Long.parseLong(contentLength.trim()) : -1;
+                } catch (NumberFormatException e) {
+                    backendHealthy = false;
+                    sendError("502 Bad Gateway", "Réponse invalide du serveur XAMPP");
+                    return null;
+                }
+
+                // Set-Cookie n'est relayé qu'au navigateur qui a fait la requête, jamais aux requêtes regroupées
+                StringBuilder upstreamResponseHeaders = new StringBuilder();
+                StringBuilder cookieHeaders = new StringBuilder();
+                for (Map.Entry<String, List<String>> header : response.getHeaders().entrySet()) {
+                    if (SKIPPED_RESPONSE_HEADERS.contains(header.getKey()) || header.getKey().equals(TAG_HEADER)) {
+                        continue; // les tags ne servent qu'au proxy
+                    }
+                    boolean setCookie = header.getKey().equals("set-cookie");
+                    for (String value : header.getValue()) {
+                        if (setCookie) {
+                            trackSetCookie(value);
+                        }
+                        (setCookie ? cookieHeaders : upstreamResponseHeaders)
+                                .append(header.getKey()).append(": ").append(value).append("\r\n");
+                    }
+                }
+                String clientHeaders = upstreamResponseHeaders.toString() + cookieHeaders;
+
+                // Ce que XAMPP autorise : stockage, partage, durée de vie, variantes
+                CachePolicy policy = CachePolicy.fromResponse(response.getHeaders());
+
+                // rah mbola tsy en cache : copie du corps pour le cache pendant le relais
+                ByteArrayOutputStream cacheCopy = null;
+                if (responseCode == 200 && !headOnly && policy.isStorable() && length <= MAX_CACHE_ENTRY_BYTES) {
+                    cacheCopy = new ByteArrayOutputStream(length > 0 ? (int) length : 4096);
+                }
+
+                boolean cacheComplete;
+                if (headOnly) {
+                    // Pas de corps : les en-têtes annoncent celui du GET (Content-Length ou chunked), jamais stockés
+                    writeHead(status, contentType, length, clientHeaders);
+                    cacheComplete = false;
+                } else if (length >= 0) {
+                    writeHead(status, contentType, length, clientHeaders);
+                    cacheComplete = relay(response.getBody(), out, cacheCopy);
+                } else if ("HTTP/1.1".equals(request.getVersion())) {
+                    // Taille inconnue : envoi par blocs (chunked) au fil de la lecture
+                    writeHead(status, contentType, -1, clientHeaders);
+                    ChunkedOutputStream chunked = new ChunkedOutputStream(out);
+                    cacheComplete = relay(response.getBody(), chunked, cacheCopy);
+                    chunked.finish();
+                } else {
+                    // Client HTTP/1.0 sans chunked : lire tout le corps pour connaître sa taille
+                    byte[] body = response.getBody().readAllBytes();
+                    writeHead(status, contentType, body.length, clientHeaders);
+                    out.write(body);
+                    cacheComplete = cacheCopy != null && body.length <= MAX_CACHE_ENTRY_BYTES;
+                    if (cacheComplete) {
+                        cacheCopy.write(body);
+                    }
+                }
+                out.flush();
+
+                if (!cacheComplete) {
+                    return null;
+                }
+
+                // Déterminer si la page est dynamique
+                boolean isDynamic = isDynamicPage(path, method, requestParams);
+
+                // Ajouter au cache dynamique
+
+                // Page non liée à la session, statique (ou déclarée publique par XAMPP) :
+                // une seule copie pour tous les utilisateurs
+                boolean shared = SHARED_STATIC_CACHE && "GET".equals(method) && policy.isShareable() &&
+                        (!isDynamic || policy.isExplicitlyPublic());
+                String cacheOwner = shared ? SHARED_CACHE_ID : userId;
+                long ttl = policy.ttlFor(shared);
+                String etag = response.header("etag");
+                String lastModified = response.header("last-modified");
+                List<String> tags = CacheIndex.parseTags(response.getHeaders().get(TAG_HEADER));
+                if (ttl == 0 && etag == null && lastModified == null) {
+                    return null; // à revalider à chaque fois mais sans validateur : inutile à garder
+                }
+
+                // Variantes (Vary) : les valeurs des en-têtes concernés entrent dans la clé
+                CacheKey baseKey = cacheKey.base();
+                List<String> varyHeaders = policy.getVaryHeaders();
+                varyHeaders.retainAll(FORWARDED_REQUEST_HEADERS);
+                if (varyHeaders.isEmpty()) {
+                    VARY_HEADERS.remove(baseKey);
+                } else {
+                    VARY_HEADERS.put(baseKey, varyHeaders);
+                }
+                CacheKey cacheKey = baseKey.withVariant(variantSuffix(varyHeaders));
+
+                // creena ny objet cache i stockena azy (après éviction si les limites sont atteintes)
+                byte[] content = cacheCopy.toByteArray();
+                String contentEncoding = response.header("content-encoding");
+                boolean compressed = false;
+                byte[] stored = content;
+                if (contentEncoding != null && !contentEncoding.trim().equalsIgnoreCase("identity")) {
+                    // Déjà encodée par XAMPP : gardée telle quelle si c'est du gzip, sinon pas de cache
+                    if (!contentEncoding.trim().equalsIgnoreCase("gzip")) {
+                        return null;
+                    }
+                    compressed = true;
+                } else if (COMPRESSION_ENABLED && content.length >= COMPRESSION_MIN_BYTES &&
+                        GzipCodec.isCompressible(contentType)) {
+                    // Compressée une fois ici, puis servie en gzip sans recompression à chaque hit
+                    byte[] gzipped = GzipCodec.compress(content, COMPRESSION_LEVEL);
+                    if (gzipped.length < content.length) {
+                        compressed = true;
+                        stored = gzipped;
+                        compressedCount.incrementAndGet();
+                        compressionSavedBytes.addAndGet(content.length - gzipped.length);
+                    }
+                }
+                CacheMemory.Body body = allocateCacheBody(cacheOwner, cacheKey, stored);
+                long creationTime = currentTime();
+                if (body != null) {
+                    CacheEntry entry = new CacheEntry(
+                            body,
+                            contentType,
+                            compressed,
+                            isDynamic,
+                            etag,
+                            lastModified,
+                            ttl,
+                            policy.isMustRevalidate()
+                    );
+                    entry.tags = tags;
+
+                    // ampidirina am Map misy ny cache rehetra
+                    putInCache(cacheOwner, cacheKey, entry);
+                    creationTime = entry.getCreationTime();
+                }
+
+                // Copie sur disque : survit au redémarrage, et garde la page si la mémoire l'a refusée ou l'évince
+                if (diskCache != null) {
+                    diskCache.put(cacheOwner, cacheKey.toString(), contentType, compressed, isDynamic, etag,
+                            lastModified, ttl, policy.isMustRevalidate(), tags, creationTime, stored);
+                }
+
+                // Page HTML partagée : ses liens sont probablement les prochaines pages demandées
+                if (prefetcher != null && shared && !isDynamic && !backgroundRefresh && contentType != null &&
+                        contentType.toLowerCase(Locale.ROOT).startsWith("text/html")) {
+                    // content n'est en gzip que si XAMPP l'a envoyé ainsi (stored est alors content lui-même)
+                    prefetcher.pageStored(requestHeaders.get("host"), path,
+                            compressed && stored == content ? GzipCodec.decompress(content) : content, prefetchDepth);
+                }
+
+                return new UpstreamResult(status, contentType, upstreamResponseHeaders.toString(), content, cacheOwner);
+            } finally {
+                backendPool.complete(backend, backendHealthy);
+            }
+        }
+
+        // Copier le corps de XAMPP vers le client avec un tampon réutilisé, en gardant une copie
+        // pour le cache tant qu'elle ne dépasse pas MAX_CACHE_ENTRY_BYTES.
+        // Retourne vrai si la copie pour le cache est complète.
+        private boolean relay(InputStream body, OutputStream target, ByteArrayOutputStream cacheCopy)
+                throws IOException {
+            byte[] buffer = RELAY_BUFFERS.poll();
+            if (buffer == null) {
+                buffer = new byte[RELAY_BUFFER_SIZE];
+            }
+            try {
+                int count;
+                while ((count = body.read(buffer)) != -1) {
+                    target.write(buffer, 0, count);
+                    if (cacheCopy != null) {
+                        if (cacheCopy.size() + count > MAX_CACHE_ENTRY_BYTES) {
+                            cacheCopy = null; // trop gros pour le cache
+                        } else {
+                            cacheCopy.write(buffer, 0, count);
+                        }
+                    }
+                }
+                return cacheCopy != null;
+            } finally {
+                RELAY_BUFFERS.offer(buffer);
+            }
+        }
+
+        // Partie de la clé propre à la variante demandée : valeurs des en-têtes listés par Vary
+        private String variantSuffix(List<String> varyHeaders) {
+            if (varyHeaders.isEmpty()) {
+                return "";
+            }
+            StringBuilder suffix = new StringBuilder();
+            for (String name : varyHeaders) {
+                suffix.append(name).append('=').append(requestHeaders.getOrDefault(name, "")).append(';');
+            }
+            return suffix.toString();
+        }
+
+        private static boolean isDynamicPage(String path, String method, Map<String, String> requestParams) {
+            return method.equals("POST") ||
+                    requestParams.size() > 0 ||
+                    path.contains("?") ||
+                    DYNAMIC_PAGE_KEYWORDS.stream().anyMatch(path::contains);
+        }
+
+        private void sendResponse(String status, String contentType, String content) throws IOException {
+            sendResponse(status, contentType, content.getBytes(StandardCharsets.UTF_8));
+        }
+
+        private void sendResponse(String status, String contentType, CacheMemory.Body body, String extraHeaders)
+                throws IOException {
+            writeHead(status, contentType, body.length(), extraHeaders);
+            if (!headOnly) {
+                body.writeTo(out);
+            }
+            out.flush();
+        }
+
+        private void sendResponse(String status, String contentType, byte[] body) throws IOException {
+            sendResponse(status, contentType, body, "");
+        }
+
+        private void sendResponse(String status, String contentType, byte[] body, String extraHeaders)
+                throws IOException {
+            writeHead(status, contentType, body.length, extraHeaders);
+            if (!headOnly) {
+                out.write(body);
+            }
+            out.flush();
+        }
+
+        // 304 au navigateur : pas de corps, seulement les validateurs
+        private void sendNotModified(String etag, String lastModified) throws IOException {
+            String head = "HTTP/1.1 304 Not Modified\r\n" +
+                    "Connection: " + (keepAlive ? "keep-alive" : "close") + "\r\n" +
+                    validatorHeaders(etag, lastModified) + "\r\n";
+            responseStatus = "304 Not Modified";
+            out.write(head.getBytes(StandardCharsets.ISO_8859_1));
+            out.flush();
+        }
+
+        private void sendError(String status, String errorMessage) throws IOException {
+            byte[] body = ("<html><body><h1>" + status + "</h1><p>" + errorMessage + "</p></body></html>")
+                    .getBytes(StandardCharsets.UTF_8);
+            writeHead(status, "text/html; charset=UTF-8", body.length, "");
+            if (!headOnly) {
+                out.write(body);
+            }
+            out.flush();
+        }
+
+        // Ligne de statut et en-têtes : Content-Length (ou chunked si contentLength < 0)
+        // permet de garder la connexion ouverte
+        private void writeHead(String status, String contentType, long contentLength, String extraHeaders)
+                throws IOException {
+            responseStatus = status;
+            StringBuilder head = new StringBuilder();
+            head.append("HTTP/1.1 ").append(status).append("\r\n");
+            if (contentType != null) {
+                head.append("Content-Type: ").append(contentType).append("\r\n");
+            }
+            if (contentLength >= 0) {
+                head.append("Content-Length: ").append(contentLength).append("\r\n");
+            } else {
+                head.append("Transfer-Encoding: chunked\r\n");
+            }
+            head.append("Connection: ").append(keepAlive ? "keep-alive" : "close").append("\r\n");
+            head.append(extraHeaders);
+            head.append("\r\n");
+            out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        }
+
+        // Page de /cache/list écrite au fil de l'eau (chunked) : seules les entrées de la page sont en mémoire
+        private void sendCacheList(CacheQuery query) throws IOException {
+            CachePage page = listCacheEntries(query);
+            boolean chunked = "HTTP/1.1".equals(request.getVersion());
+            ByteArrayOutputStream buffered = null;
+            ChunkedOutputStream chunkedOut = null;
+            if (chunked) {
+                writeHead("200 OK", "text/html; charset=UTF-8", -1, "");
+                chunkedOut = new ChunkedOutputStream(out);
+            } else {
+                buffered = new ByteArrayOutputStream(16 * 1024); // HTTP/1.0 : taille nécessaire, page bornée par limit
+            }
+            Writer html = new BufferedWriter(new OutputStreamWriter(chunked ? chunkedOut : buffered,
+                    StandardCharsets.UTF_8), 8 * 1024);
+
+            html.write("<!DOCTYPE html>\n<html><head><meta charset='UTF-8'><title>Gestionnaire de Cache</title><style>");
+            html.write("table { width: 100%; border-collapse: collapse; margin-top: 20px; }");
+            html.write("th, td { padding: 10px; border: 1px solid #ddd; text-align: left; }");
+            html.write("th { background-color: #f5f5f5; }");
+            html.write(".remove-btn { background-color: #ff4444; color: white; border: none; padding: 5px 10px; cursor: pointer; }");
+            html.write("</style></head><body><h1>Gestionnaire de Cache</h1>");
+            html.write("<p>" + getCacheEntryCount() + " entrées (" + getDynamicEntryCount() + " dynamiques, " +
+                    getSharedEntryCount() + " partagées) | Mémoire utilisée : " + cacheMemory.getUsedBytes() + " / " +
+                    cacheMemory.getMaxBytes() + " octets (" + cacheMemory.getMode() + ")</p>");
+
+            // Filtres et tri (GET) : la page suivante garde les mêmes critères
+            html.write("<form method='GET' action='/cache/list'>");
+            html.write("Utilisateur <input name='user' value='" + escapeHtml(query.getUserId()) + "'> ");
+            html.write("Type <select name='type'>");
+            option(html, "", "Tous", query.getDynamic() == null);
+            option(html, "dynamic", "Dynamique", Boolean.TRUE.equals(query.getDynamic()));
+            option(html, "static", "Statique", Boolean.FALSE.equals(query.getDynamic()));
+            html.write("</select> Préfixe <input name='prefix' value='" + escapeHtml(query.getPrefix()) + "'> ");
+            html.write("Tri <select name='sort'>");
+            option(html, "url", "URL", query.getSort().equals("url"));
+            option(html, "expiration", "Expiration", query.getSort().equals("expiration"));
+            option(html, "size", "Taille", query.getSort().equals("size"));
+            html.write("</select> Par page <input name='limit' size='4' value='" + query.getLimit() + "'> ");
+            html.write("<input type='submit' value='Filtrer'></form>");
+
+            html.write("<table><tr><th>URL</th><th>Expiration</th><th>Type</th><th>Taille</th><th>User ID</th><th>Action</th></tr>");
+            long now = System.currentTimeMillis();
+            for (CacheInfo info : page.getEntries()) {
+                long timeRemaining = (info.getExpirationTime() - now) / 1000;
+                html.write("<tr><td>" + escapeHtml(info.getUrl()) + "</td>");
+                html.write("<td>" + timeRemaining + " seconds</td>");
+                html.write("<td>" + (info.isDynamic() ? "Dynamic" : "Static") + "</td>");
+                html.write("<td>" + info.getSize() + " octets</td>");
+                html.write("<td>" + (info.isShared() ? "Partagé (tous)" : escapeHtml(info.getUserId())) + "</td>");
+                html.write("<td><form method='POST' action='/cache/remove'>");
+                html.write("<input type='hidden' name='url' value='" + escapeHtml(info.getUrl()) + "'>");
+                html.write("<input type='hidden' name='userId' value='" + escapeHtml(info.getUserId()) + "'>");
+                html.write("<input type='submit' value='Supprimer' class='remove-btn'></form></td></tr>");
+            }
+            html.write("</table>");
+            if (page.getNextCursor() != null) {
+                StringBuilder next = new StringBuilder("/cache/list?sort=").append(query.getSort())
+                        .append("&limit=").append(query.getLimit())
+                        .append("&cursor=").append(page.getNextCursor());
+                if (query.getUserId() != null) {
+                    next.append("&user=").append(URLEncoder.encode(query.getUserId(), StandardCharsets.UTF_8));
+                }
+                if (query.getDynamic() != null) {
+                    next.append("&type=").append(query.getDynamic() ? "dynamic" : "static");
+                }
+                if (query.getPrefix() != null) {
+                    next.append("&prefix=").append(URLEncoder.encode(query.getPrefix(), StandardCharsets.UTF_8));
+                }
+                html.write("<p><a href='" + escapeHtml(next.toString()) + "'>Page suivante</a></p>");
+            }
+            html.write("</body></html>");
+            html.flush();
+
+            if (chunked) {
+                chunkedOut.finish();
+            } else {
+                writeHead("200 OK", "text/html; charset=UTF-8", buffered.size(), "");
+                buffered.writeTo(out);
+            }
+            out.flush();
+        }
+
+        private void option(Writer html, String value, String label, boolean selected) throws IOException {
+            html.write("<option value='" + value + "'" + (selected ? " selected" : "") + ">" + label + "</option>");
+        }
+
+        private void handleCacheManagement() throws IOException {
+            if (path.equals("/cache/list")) {
+                sendCacheList(CacheQuery.fromParams(requestParams));
+            }
+            else if (path.equals("/cache/metrics")) {
+                sendResponse("200 OK", "text/plain; version=0.0.4; charset=utf-8", ServeurWeb.metricsText());
+            }
+            else if (path.equals("/cache/remove") && method.equals("POST")) {
+                String urlToRemove = requestParams.get("url");
+                String userIdToRemove = requestParams.get("userId");
+
+                Log.debug("Tentative de suppression - URL: {}, UserID: {}", urlToRemove, userIdToRemove);
+
+                if (urlToRemove != null && userIdToRemove != null) {
+                    ServeurWeb.removeFromCache(urlToRemove, userIdToRemove);
+                    // Redirection avec le protocole HTTP complet
+                    writeHead("302 Found", null, 0, "Location: /cache/list\r\n");
+                    out.flush(); // Assurer que la réponse est envoyée
+                } else {
+                    sendError("400 Bad Request", "URL ou UserID manquant");
+                }
+            }
+            else if (path.equals("/cache/purge") && method.equals("POST")) {
+                // Un seul critère : path (tous paramètres), prefix ou tag
+                String target = requestParams.get("tag") != null ? "tag:" + requestParams.get("tag")
+                        : requestParams.get("prefix") != null ? requestParams.get("prefix") + "*"
+                        : requestParams.get("path");
+                if (target == null || target.isEmpty() || target.equals("tag:") || target.equals("*")) {
+                    sendError("400 Bad Request", "Paramètre path, prefix ou tag manquant");
+                    return;
+                }
+                int invalidated = ServeurWeb.invalidate(target);
+                Log.info("Invalidation {} : {} page(s)", target, invalidated);
+                sendResponse("200 OK", "text/plain; charset=utf-8", invalidated + " page(s) invalidée(s)\n");
+            }
+            else {
+                sendError("405 Method Not Allowed", "Utilisez POST pour supprimer une entrée du cache");
+            }
+        }
+    }
+
+    static String escapeHtml(String value) {
+        if (value == null) {
+            return "";
+        }
+        StringBuilder escaped = new StringBuilder(value.length() + 16);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '<': escaped.append("&lt;"); break;
+                case '>': escaped.append("&gt;"); break;
+                case '&': escaped.append("&amp;"); break;
+                case '\'': escaped.append("&#39;"); break;
+                case '"': escaped.append("&quot;"); break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    // Mesures au format texte de Prometheus (/cache/metrics)
+    static String metricsText() {
+        StringBuilder out = new StringBuilder(8 * 1024);
+        Metrics.counter(out, "proxy_requests_total", "Requêtes traitées", Metrics.REQUESTS.sum());
+        Metrics.counter(out, "proxy_cache_hits_total", "Requêtes servies depuis le cache en mémoire", evictionPolicy.getHits());
+        Metrics.counter(out, "proxy_cache_misses_total", "Requêtes absentes du cache en mémoire", evictionPolicy.getMisses());
+        Metrics.counter(out, "proxy_cache_evictions_total", "Entrées évincées par la politique d'éviction", evictionPolicy.getEvictions());
+        Metrics.counter(out, "proxy_cache_rejections_total", "Admissions refusées par la politique d'éviction", evictionPolicy.getRejections());
+        Metrics.counter(out, "proxy_coalesced_requests_total", "Requêtes regroupées derrière un appel XAMPP en cours", requestCoalescer.getCoalescedCount());
+        Metrics.counter(out, "proxy_upstream_leader_requests_total", "Appels XAMPP menés pour un groupe de requêtes", requestCoalescer.getLeaderCount());
+        Metrics.counter(out, "proxy_revalidations_total", "Entrées revalidées par un 304 de XAMPP", revalidatedCount.get());
+        Metrics.counter(out, "proxy_stale_served_total", "Entrées expirées servies pendant leur rafraîchissement", staleServedCount.get());
+        Metrics.counter(out, "proxy_stale_on_error_total", "Entrées expirées servies sur erreur de XAMPP", staleOnErrorCount.get());
+        Metrics.counter(out, "proxy_gzip_served_total", "Réponses envoyées compressées en gzip", gzipServedCount.get());
+        Metrics.counter(out, "proxy_cache_invalidated_total", "Pages retirées par invalidation (chemin, préfixe ou tag)", invalidatedCount.get());
+        if (diskCache != null) {
+            Metrics.counter(out, "proxy_disk_reads_total", "Lectures dans le cache disque", diskCache.getReadCount());
+            Metrics.counter(out, "proxy_disk_promotions_total", "Entrées remontées du disque en mémoire", diskCache.getPromotionCount());
+        }
+        if (prefetcher != null) {
+            Metrics.counter(out, "proxy_prefetch_fetched_total", "Pages préchargées depuis XAMPP", prefetcher.getFetchedCount());
+            Metrics.counter(out, "proxy_prefetch_already_cached_total", "Liens déjà en cache au moment du préchargement", prefetcher.getAlreadyCachedCount());
+            Metrics.counter(out, "proxy_prefetch_dropped_total", "Préchargements abandonnés (file pleine)", prefetcher.getDroppedCount());
+            Metrics.counter(out, "proxy_prefetch_failed_total", "Préchargements en échec", prefetcher.getFailedCount());
+            Metrics.counter(out, "proxy_prefetch_backoffs_total", "Pauses du préchargement (XAMPP lent)", prefetcher.getBackoffCount());
+            Metrics.gauge(out, "proxy_prefetch_queue", "Préchargements en attente", prefetcher.getQueueSize());
+        }
+        Metrics.counter(out, "proxy_received_bytes_total", "Octets reçus des clients", Metrics.BYTES_IN.sum());
+        Metrics.counter(out, "proxy_sent_bytes_total", "Octets envoyés aux clients", Metrics.BYTES_OUT.sum());
+        Metrics.gauge(out, "proxy_active_connections", "Connexions clientes ouvertes", Metrics.ACTIVE_CONNECTIONS.get());
+        AsyncLogWriter logWriter = Log.getWriter();
+        if (logWriter != null) {
+            Metrics.counter(out, "proxy_log_dropped_total", "Événements du journal abandonnés (anneau plein)", logWriter.getDroppedCount());
+        }
+        Metrics.gauge(out, "proxy_cache_entries", "Entrées dans le cache en mémoire", cacheEntryCount.get());
+        Metrics.gauge(out, "proxy_cache_memory_bytes", "Octets occupés par les corps en cache", cacheMemory.getUsedBytes());
+        Metrics.gauge(out, "proxy_php_sessions", "Sessions PHP suivies", sessionStore.getSize());
+        Metrics.histogram(out, "proxy_request_duration_seconds", "Durée de traitement d'une requête", Metrics.REQUEST_DURATION);
+        Metrics.histogram(out, "proxy_cache_lookup_duration_seconds", "Durée de la recherche dans le cache en mémoire", Metrics.CACHE_LOOKUP_DURATION);
+        Metrics.histogram(out, "proxy_upstream_duration_seconds", "Durée d'un appel à XAMPP (relais compris)", Metrics.UPSTREAM_DURATION);
+        if (backendPool != null) {
+            List<BackendPool.Backend> backends = backendPool.getBackends();
+            Metrics.family(out, "proxy_backend_up", "Serveur XAMPP disponible (sondes et éjections)", "gauge");
+            for (BackendPool.Backend backend : backends) {
+                Metrics.sample(out, "proxy_backend_up", "backend", backend.getUrl(),
+                        backend.isHealthy() && !backend.isEjected() ? 1 : 0);
+            }
+            Metrics.family(out, "proxy_backend_outstanding_requests", "Requêtes en cours sur le serveur XAMPP", "gauge");
+            for (BackendPool.Backend backend : backends) {
+                Metrics.sample(out, "proxy_backend_outstanding_requests", "backend", backend.getUrl(), backend.getOutstanding());
+            }
+            Metrics.family(out, "proxy_backend_requests_total", "Requêtes envoyées au serveur XAMPP", "counter");
+            for (BackendPool.Backend backend : backends) {
+                Metrics.sample(out, "proxy_backend_requests_total", "backend", backend.getUrl(), backend.getRequestCount());
+            }
+            Metrics.family(out, "proxy_backend_failures_total", "Erreurs de connexion et réponses 5xx du serveur XAMPP", "counter");
+            for (BackendPool.Backend backend : backends) {
+                Metrics.sample(out, "proxy_backend_failures_total", "backend", backend.getUrl(), backend.getFailureCount());
+            }
+            Metrics.family(out, "proxy_backend_ejections_total", "Éjections du serveur XAMPP après des erreurs consécutives", "counter");
+            for (BackendPool.Backend backend : backends) {
+                Metrics.sample(out, "proxy_backend_ejections_total", "backend", backend.getUrl(), backend.getEjectionCount());
+            }
+            Metrics.family(out, "proxy_backend_response_seconds", "Délai avant les en-têtes de la réponse du serveur XAMPP", "histogram");
+            for (BackendPool.Backend backend : backends) {
+                Metrics.histogramSample(out, "proxy_backend_response_seconds", "backend", backend.getUrl(), backend.getLatency());
+            }
+            Metrics.counter(out, "proxy_backend_panic_total", "Requêtes envoyées sans aucun serveur XAMPP disponible", backendPool.getPanicCount());
+        }
+        return out.toString();
+    }
+
+    // fonctionnaliter de listing
+    public static class CacheInfo {
+        private final String url;
+        private final String path;
+        private final long expirationTime;
+        private final boolean isDynamic;
+        private final String userId;
+        private final int size;
+
+        CacheInfo(CacheEntry entry) {
+            this(entry.ref.key.toString(), entry.getExpirationTime(), entry.isDynamic, entry.ref.userId, entry.getSize());
+        }
+
+        public CacheInfo(String url, long expirationTime, boolean isDynamic, String userId, int size) {
+            this.url = url;
+            this.path = CacheIndex.pathOf(url);
+            this.expirationTime = expirationTime;
+            this.isDynamic = isDynamic;
+            this.userId = userId;
+            this.size = size;
+        }
+
+        public String getUrl() { return url; }
+        public String getPath() { return path; }
+        public long getExpirationTime() { return expirationTime; }
+        public boolean isDynamic() { return isDynamic; }
+        public String getUserId() { return userId; }
+        public boolean isShared() { return SHARED_CACHE_ID.equals(userId); }
+        public int getSize() { return size; }
+    }
+
+    // Critères d'une page de la liste du cache ; null : pas de filtre.
+    // sort : "url" (ordre des chemins), "expiration" (les plus proches d'abord) ou "size" (les plus gros d'abord).
+    // cursor : position après la dernière entrée de la page précédente (CachePage.getNextCursor)
+    public static final class CacheQuery {
+        static final int DEFAULT_LIMIT = 100;
+        static final int MAX_LIMIT = 1000;
+
+        private final String userId;
+        private final Boolean dynamic;
+        private final String prefix;
+        private final String sort;
+        private final String cursor;
+        private final int limit;
+
+        public CacheQuery(String userId, Boolean dynamic, String prefix, String sort, String cursor, int limit) {
+            this.userId = userId;
+            this.dynamic = dynamic;
+            this.prefix = prefix;
+            this.sort = "expiration".equals(sort) || "size".equals(sort) ? sort : "url";
+            this.cursor = cursor;
+            this.limit = Math.max(1, Math.min(MAX_LIMIT, limit));
+        }
+
+        // Paramètres de /cache/list : user, type (dynamic|static), prefix, sort, cursor, limit
+        static CacheQuery fromParams(Map<String, String> params) {
+            String type = params.get("type");
+            int limit = DEFAULT_LIMIT;
+            try {
+                if (params.get("limit") != null) {
+                    limit = Integer.parseInt(params.get("limit"));
+                }
+            } catch (NumberFormatException e) {
+                // limite par défaut
+            }
+            return new CacheQuery(emptyToNull(params.get("user")),
+                    "dynamic".equals(type) ? Boolean.TRUE : "static".equals(type) ? Boolean.FALSE : null,
+                    emptyToNull(params.get("prefix")), params.get("sort"), emptyToNull(params.get("cursor")), limit);
         }
-    }
 
-    public static void main(String[] args) throws IOException {
-        loadConfiguration();
+        private static String emptyToNull(String value) {
+            return value == null || value.isEmpty() ? null : value;
+        }
 
-        // Démarrer le service de nettoyage du cache
-        cacheCleanupService.scheduleAtFixedRate(() -> {
-            USER_CACHES.forEach((userId, userCache) -> {
-                userCache.entrySet().removeIf(entry -> entry.getValue().isExpired());
-            });
-            USER_CACHES.entrySet().removeIf(entry -> entry.getValue().isEmpty());
-        }, 1, CACHE_CLEANUP_INTERVAL, TimeUnit.MINUTES);
+        boolean matches(String owner, CacheEntry entry) {
+            return (userId == null || userId.equals(owner)) && (dynamic == null || dynamic == entry.isDynamic);
+        }
 
-        // Démarrer le gestionnaire de commandes dans un thread séparé
-        Thread commandThread = new Thread(new CacheCommandHandler());
-        commandThread.setDaemon(true);
-        commandThread.start();
+        Comparator<CacheInfo> order() {
+            Comparator<CacheInfo> first;
+            if (sort.equals("expiration")) {
+                first = Comparator.comparingLong(CacheInfo::getExpirationTime);
+            } else if (sort.equals("size")) {
+                first = Comparator.comparingInt(CacheInfo::getSize).reversed();
+            } else {
+                first = Comparator.comparing(CacheInfo::getPath);
+            }
+            return first.thenComparing(CacheInfo::getUrl).thenComparing(CacheInfo::getUserId);
+        }
 
-        System.out.println("Serveur démarré sur le port " + PORT);
-        serverSocket = new ServerSocket(PORT);
+        // Curseur opaque : valeur de tri, utilisateur et clé de la dernière entrée de la page
+        static String encodeCursor(CacheInfo last) {
+            String position = last.getExpirationTime() + "\n" + last.getSize() + "\n" + last.getUserId() + "\n" + last.getUrl();
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+        }
 
-        while (isRunning) {
+        CacheInfo decodeCursor() {
+            if (cursor == null) {
+                return null;
+            }
             try {
-                Socket clientSocket = serverSocket.accept();
-                System.out.println("Connexion entrante : " + clientSocket.getInetAddress());
-                new Thread(new ClientHandler(clientSocket)).start();
-            } catch (SocketException e) {
-                if (!isRunning) {
-                    System.out.println("Serveur arrêté.");
-                    break;
-                }
-                e.printStackTrace();
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\n", 4);
+                return new CacheInfo(parts[3], Long.parseLong(parts[0]), false, parts[2], Integer.parseInt(parts[1]));
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                return null; // curseur illisible : première page
             }
         }
+
+        public String getUserId() { return userId; }
+        public Boolean getDynamic() { return dynamic; }
+        public String getPrefix() { return prefix; }
+        public String getSort() { return sort; }
+        public int getLimit() { return limit; }
     }
 
-    static class ClientHandler implements Runnable { // traitement des requetes
-        private Socket clientSocket;
-        private BufferedReader in;
-        private PrintWriter out;
-        private String method;
-        private String path;
-        private String sessionId;
-        private String userId;
-        private Map<String, String> requestHeaders = new HashMap<>();
-        private Map<String, String> requestParams = new HashMap<>();
+    public static final class CachePage {
+        private final List<CacheInfo> entries;
+        private final String nextCursor; // null : dernière page
 
-        public ClientHandler(Socket socket) {
-            this.clientSocket = socket;
+        CachePage(List<CacheInfo> entries, String nextCursor) {
+            this.entries = entries;
+            this.nextCursor = nextCursor;
         }
 
-        @Override
-        public void run() {
-            try {
-                in = new BufferedReader(new InputStreamReader(clientSocket.getInputStream()));
-                out = new PrintWriter(clientSocket.getOutputStream(), true);
+        public List<CacheInfo> getEntries() { return entries; }
+        public String getNextCursor() { return nextCursor; }
+    }
 
-                // Lire l'ensemble de la requête HTTP
-                String requestLine = in.readLine(); // exemple : GET /index.php HTTP/1.1
-                if (requestLine == null || requestLine.isEmpty()) {
-                    return;
+    // Une page de la liste du cache, sans copier tout le cache :
+    // - tri par URL : l'index des chemins est parcouru dans l'ordre à partir du curseur, et s'arrête
+    //   dès que la page est pleine (coût proportionnel à la page) ;
+    // - autres tris : parcours des entrées candidates en ne gardant que les limit premières (tas borné).
+    public static CachePage listCacheEntries(CacheQuery query) {
+        Comparator<CacheInfo> order = query.order();
+        CacheInfo after = query.decodeCursor();
+        int wanted = query.limit + 1; // une de plus pour savoir s'il reste une page
+        List<CacheInfo> page = new ArrayList<>(Math.min(wanted, 256));
+
+        if (query.sort.equals("url")) {
+            String start = query.prefix != null ? query.prefix : "";
+            if (after != null && after.getPath().compareTo(start) > 0) {
+                start = after.getPath();
+            }
+            List<CacheInfo> pathEntries = new ArrayList<>();
+            for (String path : CACHE_INDEX.pathsFrom(start)) {
+                if (query.prefix != null && !path.startsWith(query.prefix)) {
+                    break;
                 }
-
-                String[] requestParts = requestLine.split(" ");
-                method = requestParts[0];  // GET ou POST
-                path = requestParts[1];    // Le chemin demandé : /index.php
-                System.out.println("Requête reçue : Méthode " + method + " pour le chemin " + path);
-
-                // Lire les en-têtes
-                String headerLine;
-                while ((headerLine = in.readLine()) != null && !headerLine.isEmpty()) {
-                    String[] headerParts = headerLine.split(": ", 2);
-                    if (headerParts.length == 2) {
-                        requestHeaders.put(headerParts[0].toLowerCase(), headerParts[1]);
+                pathEntries.clear();
+                for (CacheEntry entry : CACHE_INDEX.withPath(path)) {
+                    if (query.matches(entry.ref.userId, entry)) {
+                        CacheInfo info = new CacheInfo(entry);
+                        if (after == null || order.compare(info, after) > 0) {
+                            pathEntries.add(info);
+                        }
                     }
                 }
-
-                // Générer l'ID utilisateur basé sur User-Agent et IP
-                userId = requestHeaders.getOrDefault("user-agent", "") + "-" +
-                        clientSocket.getInetAddress().toString();
-
-                USER_CACHES.putIfAbsent(userId, new ConcurrentHashMap<>());
-
-                // Gestion des paramètres GET
-                // path ohatra : /search.php?query=test&page=1
-                if (path.contains("?")) {
-                    String[] pathAndQuery = path.split("\\?"); // parsena ny path
-                    path = pathAndQuery[0]; // /search.php
-                    parseQueryString(pathAndQuery[1]); // fonction manao ny parsage (atao anaty map) // "query=test&page=1"
-                }
-                // requestParams contiendra:
-                // {
-                //     "query": "test",
-                //     "page": "1"
-                // }
-
-                // Gestion des paramètres POST
-                if ("POST".equalsIgnoreCase(method)) {
-                    int contentLength = Integer.parseInt(requestHeaders.getOrDefault("content-length", "0"));
-                    if (contentLength > 0) {
-                        char[] buffer = new char[contentLength];
-                        in.read(buffer, 0, contentLength);
-                        String postData = new String(buffer);
-                        parseQueryString(postData);
+                pathEntries.sort(order);
+                for (CacheInfo info : pathEntries) {
+                    page.add(info);
+                    if (page.size() == wanted) {
+                        break;
                     }
                 }
-
-                // Gestion des sessions PHP
-                sessionId = getOrCreateSession();
-
-                // Vérification du cache avant d'aller sur le serveur
-                String cacheKey = generateCacheKey(path, requestParams);
-                ConcurrentHashMap<String, CacheEntry> userCache = USER_CACHES.get(userId);
-                CacheEntry cachedEntry = userCache.get(cacheKey);
-
-                if (cachedEntry != null &&  // Si une entrée existe dans le cache
-                        !cachedEntry.isExpired() &&  // Si elle n'est pas expirée
-                        cachedEntry.matchesRequest(method, requestParams)) {  // Si elle correspond à la requête actuelle
-                    // Utiliser le contenu du cache
-                    System.out.println("Utilisation du cache pour : " + path);
-                    sendResponse("200 OK", "text/html; charset=UTF-8", cachedEntry.getContent());
-                    return;  // On arrête là si on a trouvé dans le cache
+                if (page.size() == wanted) {
+                    break;
                 }
-
-                if (path.equals("/cache/list") || path.equals("/cache/remove")) {
-                    handleCacheManagement();
+            }
+        } else {
+            PriorityQueue<CacheInfo> top = new PriorityQueue<>(wanted, order.reversed());
+            forEachCandidate(query, (owner, entry) -> {
+                if (!query.matches(owner, entry)) {
                     return;
                 }
-
-                // Si rien n'a été trouvé dans le cache ou si c'est expiré,
-                // on transmet la requête à XAMPP
-                forwardRequestToXampp(path, sessionId);
-
-            } catch (IOException e) {
-                e.printStackTrace();
-            } finally {
-                try {
-                    clientSocket.close();
-                } catch (IOException e) {
-                    e.printStackTrace();
+                CacheInfo info = new CacheInfo(entry);
+                if (after == null || order.compare(info, after) > 0) {
+                    top.add(info);
+                    if (top.size() > wanted) {
+                        top.poll(); // la dernière dans l'ordre demandé
+                    }
                 }
-            }
+            });
+            page.addAll(top);
+            page.sort(order);
         }
 
-        // Générer une clé de cache unique
-
-        // exemple de cle /search.php?page=1&query=test ( tode le requete mhts)
-        private String generateCacheKey(String path, Map<String, String> params) {
-            if (params.isEmpty()) {
-                return path;
-            }
-
-            // Trier les paramètres pour une clé cohérente
-            String paramString = params.entrySet().stream()
-                    .sorted(Map.Entry.comparingByKey())
-                    .map(e -> e.getKey() + "=" + e.getValue())
-                    .collect(Collectors.joining("&"));
-
-            return path + "?" + paramString;
+        if (page.size() < wanted) {
+            return new CachePage(page, null);
         }
+        List<CacheInfo> entries = new ArrayList<>(page.subList(0, query.limit));
+        return new CachePage(entries, CacheQuery.encodeCursor(entries.get(entries.size() - 1)));
+    }
 
-        private void parseQueryString(String queryString) {
-            String[] params = queryString.split("&");
-            for (String param : params) {
-                String[] keyValue = param.split("=");
-                if (keyValue.length == 2) {
-                    try {
-                        String key = URLDecoder.decode(keyValue[0], StandardCharsets.UTF_8.toString());
-                        String value = URLDecoder.decode(keyValue[1], StandardCharsets.UTF_8.toString());
-                        requestParams.put(key, value);
-                    } catch (UnsupportedEncodingException e) {
-                        e.printStackTrace();
-                    }
+    // Entrées à examiner : celles du préfixe (index), sinon celles de l'utilisateur, sinon tout le cache
+    private static void forEachCandidate(CacheQuery query, BiConsumer<String, CacheEntry> action) {
+        if (query.prefix != null) {
+            for (String path : CACHE_INDEX.pathsFrom(query.prefix)) {
+                if (!path.startsWith(query.prefix)) {
+                    break;
+                }
+                for (CacheEntry entry : CACHE_INDEX.withPath(path)) {
+                    action.accept(entry.ref.userId, entry);
                 }
             }
-        }
-
-        private String getOrCreateSession() {
-            // Vérifier si un cookie de session existe
-            String existingSessionId = requestHeaders.get("cookie");
-            if (existingSessionId != null && PHP_SESSIONS.containsKey(existingSessionId)) {
-                System.out.println("Session existante trouvée : " + existingSessionId);
-                return existingSessionId;
+        } else if (query.userId != null) {
+            ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(query.userId);
+            if (userCache != null) {
+                userCache.values().forEach(entry -> action.accept(query.userId, entry));
             }
-
-            // Créer une nouvelle session
-            String newSessionId = "PHPSESSID=" + UUID.randomUUID().toString();
-            PHP_SESSIONS.put(newSessionId, new HashMap<>());
-            System.out.println("Nouvelle session créée : " + newSessionId);
-            return newSessionId;
+        } else {
+            USER_CACHES.forEach((userId, userCache) -> userCache.values().forEach(entry -> action.accept(userId, entry)));
         }
+    }
 
-        private void forwardRequestToXampp(String path, String sessionId) throws IOException {
-            URL url = new URL(XAMPP_SERVER_URL + path); // ny lien // exemple : GET /index.php HTTP/1.1
-            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-
-            // Configurer la méthode HTTP
-            connection.setRequestMethod(method); // zay methode natao
-            connection.setDoOutput(true);
-
-            // Transmettre les en-têtes
-            connection.setRequestProperty("Cookie", sessionId);
-
-            // Transmettre les paramètres POST si nécessaire
-            if ("POST".equalsIgnoreCase(method) && !requestParams.isEmpty()) {
-                connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-                try (DataOutputStream wr = new DataOutputStream(connection.getOutputStream())) {
-                    StringBuilder postData = new StringBuilder();
-                    for (Map.Entry<String, String> param : requestParams.entrySet()) {
-                        if (postData.length() != 0) postData.append('&');
-                        postData.append(URLEncoder.encode(param.getKey(), StandardCharsets.UTF_8));
-                        postData.append('=');
-                        postData.append(URLEncoder.encode(param.getValue(), StandardCharsets.UTF_8));
-                    }
-                    wr.writeBytes(postData.toString()); // eto no ny parametre requete deja parser username=john&password=secretpass123
+    // Réserver la mémoire d'un nouveau corps : tant que la limite d'entrées ou d'octets
+    // est atteinte, la politique d'éviction désigne une victime (ou refuse la nouvelle entrée)
+    static CacheMemory.Body allocateCacheBody(String userId, CacheKey key, byte[] data) {
+        EntryRef candidate = new EntryRef(userId, key);
+        ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(userId);
+        boolean replacing = userCache != null && userCache.containsKey(key);
+
+        for (int attempt = 0; attempt < MAX_EVICTIONS_PER_INSERT; attempt++) {
+            if (replacing || cacheEntryCount.get() < CACHE_MAX_ENTRIES) {
+                CacheMemory.Body body = cacheMemory.store(data);
+                if (body != null) {
+                    return body;
                 }
             }
 
-            // Lire et transmettre la réponse
-            int responseCode = connection.getResponseCode();
-            // rah mbola tsy en cache
-            if (responseCode == 200) {
-                BufferedReader reader = new BufferedReader(
-                        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8)
-                );
-                StringBuilder responseContent = new StringBuilder();
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    responseContent.append(line).append("\n");
-                }
-                reader.close();
-
-                // Déterminer si la page est dynamique
-                boolean isDynamic = isDynamicPage(path, method, requestParams);
+            // Slabs tous attribués à d'autres classes de taille : évincer n'importe quelle entrée ne libérerait rien
+            if (!cacheMemory.canReclaimFor(data.length)) {
+                return null;
+            }
+            EntryRef victim = evictionPolicy.selectVictim();
+            if (victim == null || victim.equals(candidate) || !evictionPolicy.admit(candidate, victim)) {
+                return null;
+            }
+            evict(victim);
+        }
+        return null;
+    }
 
-                // Ajouter au cache dynamique
+    private static void evict(EntryRef victim) {
+        ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(victim.userId);
+        CacheEntry entry = userCache != null ? userCache.get(victim.key) : null;
+        if (entry == null || !removeEntry(victim.userId, userCache, victim.key, entry)) {
+            evictionPolicy.recordRemoval(victim); // déjà retirée du cache
+        }
+        evictionPolicy.recordEviction();
+    }
 
-                // creena ny objet cache i stockena azy
-                String cacheKey = generateCacheKey(path, requestParams);
-                CacheEntry entry = new CacheEntry(
-                        responseContent.toString(),
-                        isDynamic,
-                        method,
-                        requestParams
-                );
+    // Pages que le préchargement peut demander : statiques (donc partagées), hors pages d'administration
+    private static boolean isPrefetchable(String target) {
+        return SHARED_STATIC_CACHE && !target.startsWith("/cache/") &&
+                !RequestHandler.isDynamicPage(target, "GET", Collections.emptyMap());
+    }
 
-                // ampidirina am Map misy ny cache rehetra
-                USER_CACHES.get(userId).put(cacheKey, entry);
+    // Préchargement d'une page : même traitement qu'une requête anonyme, réponse jetée.
+    // Faux sans appel à XAMPP si la page est déjà dans le cache partagé (ou varie selon le navigateur)
+    private static boolean prefetchPage(String origin, String target, int depth) throws IOException {
+        CacheKey key = CacheKey.of("GET", target, Collections.emptyMap());
+        ConcurrentHashMap<CacheKey, CacheEntry> sharedCache = USER_CACHES.get(SHARED_CACHE_ID);
+        CacheEntry entry = sharedCache != null ? sharedCache.get(key) : null;
+        if (entry != null && !entry.isExpired() || VARY_HEADERS.containsKey(key) ||
+                diskCache != null && diskCache.contains(SHARED_CACHE_ID, key.toString())) {
+            return false;
+        }
+        Map<String, String> headers = new HashMap<>();
+        headers.put("host", origin != null ? origin : "localhost:" + PORT);
+        headers.put("user-agent", PREFETCH_USER_AGENT);
+        HttpRequest request = new HttpRequest("GET", target, "HTTP/1.1", headers, new byte[0],
+                InetAddress.getLoopbackAddress());
+        RequestHandler handler = new RequestHandler(request, OutputStream.nullOutputStream(), false);
+        handler.prefetchDepth = depth;
+        handler.handle();
+        return true;
+    }
 
-                // Gérer la réponse
-                sendResponse("200 OK", connection.getContentType(), responseContent.toString());
-            } else {
-                sendError("404 Not Found", "Ressource PHP introuvable");
-            }
+    // Ajouter une entrée ; l'entrée remplacée rend sa mémoire
+    static void putInCache(String userId, CacheKey key, CacheEntry entry) {
+        ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.computeIfAbsent(userId, id -> new ConcurrentHashMap<>());
+        entry.ref = new EntryRef(userId, key);
+        CACHE_INDEX.add(key.path(), entry.tags, entry); // indexée avant d'être visible
+        CacheEntry previous = userCache.put(key, entry);
+        if (previous != null) {
+            CACHE_INDEX.remove(key.path(), previous.tags, previous);
+            countEntry(userId, previous, -1);
+            expirationWheel.cancel(previous);
+            previous.release();
+        } else {
+            cacheEntryCount.incrementAndGet();
         }
+        countEntry(userId, entry, 1);
+        evictionPolicy.recordInsert(entry.ref);
+        expirationWheel.schedule(entry, entry.getRetentionTime());
+    }
 
-        private boolean isDynamicPage(String path, String method, Map<String, String> requestParams) {
-            return method.equals("POST") ||
-                    requestParams.size() > 0 ||
-                    path.contains("?") ||
-                    DYNAMIC_PAGE_KEYWORDS.stream().anyMatch(path::contains);
+    private static void countEntry(String userId, CacheEntry entry, int delta) {
+        if (entry.isDynamic) {
+            dynamicEntryCount.addAndGet(delta);
+        }
+        if (SHARED_CACHE_ID.equals(userId)) {
+            sharedEntryCount.addAndGet(delta);
         }
+    }
 
-        private void sendResponse(String status, String contentType, String content) {
-            out.println("HTTP/1.1 " + status);
-            out.println("Content-Type: " + contentType);
-            out.println();
-            out.println(content);
-            System.out.println("Réponse envoyée : " + status);
+    // Remplacer une entrée expirée par sa version revalidée (si elle n'a pas changé entre-temps)
+    static boolean refreshInCache(String userId, CacheKey key, CacheEntry stale, CacheEntry fresh) {
+        ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(userId);
+        fresh.ref = new EntryRef(userId, key);
+        CACHE_INDEX.add(key.path(), fresh.tags, fresh);
+        if (userCache == null || !userCache.replace(key, stale, fresh)) {
+            CACHE_INDEX.remove(key.path(), fresh.tags, fresh);
+            return false;
         }
+        CACHE_INDEX.remove(key.path(), stale.tags, stale);
+        expirationWheel.cancel(stale);
+        stale.release();
+        expirationWheel.schedule(fresh, fresh.getRetentionTime());
+        return true;
+    }
 
-        private void sendError(String status, String errorMessage) {
-            out.println("HTTP/1.1 " + status);
-            out.println("Content-Type: text/html; charset=UTF-8");
-            out.println();
-            out.println("<html><body><h1>" + status + "</h1><p>" + errorMessage + "</p></body></html>");
-            System.out.println("Erreur envoyée : " + status);
+    // Retirer une entrée précise du cache (si elle y est encore) et rendre sa mémoire
+    static boolean removeEntry(String userId, ConcurrentHashMap<CacheKey, CacheEntry> userCache, CacheKey key,
+                               CacheEntry entry) {
+        if (!userCache.remove(key, entry)) {
+            return false;
         }
+        CACHE_INDEX.remove(key.path(), entry.tags, entry);
+        entry.release();
+        cacheEntryCount.decrementAndGet();
+        countEntry(userId, entry, -1);
+        evictionPolicy.recordRemoval(entry.ref);
+        expirationWheel.cancel(entry);
+        return true;
+    }
 
-        private void handleCacheManagement() throws IOException {
-            if (path.equals("/cache/list")) {
-                StringBuilder htmlResponse = new StringBuilder();
-                htmlResponse.append("<!DOCTYPE html>\n")
-                        .append("<html><head><title>Gestionnaire de Cache</title>")
-                        .append("<style>")
-                        .append("table { width: 100%; border-collapse: collapse; margin-top: 20px; }")
-                        .append("th, td { padding: 10px; border: 1px solid #ddd; text-align: left; }")
-                        .append("th { background-color: #f5f5f5; }")
-                        .append(".remove-btn { background-color: #ff4444; color: white; border: none; ")
-                        .append("padding: 5px 10px; cursor: pointer; }")
-                        .append("</style></head><body>")
-                        .append("<h1>Gestionnaire de Cache</h1>")
-                        .append("<table>")
-                        .append("<tr><th>URL</th><th>Expiration</th><th>Type</th><th>User ID</th><th>Action</th></tr>");
-
-                List<CacheInfo> cacheInfos = ServeurWeb.listCacheEntries();
-
-                for (CacheInfo info : cacheInfos) {
-                    long timeRemaining = (info.getExpirationTime() - System.currentTimeMillis()) / 1000;
-                    htmlResponse.append("<tr>")
-                            .append("<td>").append(info.getUrl()).append("</td>")
-                            .append("<td>").append(timeRemaining).append(" seconds</td>")
-                            .append("<td>").append(info.isDynamic() ? "Dynamic" : "Static").append("</td>")
-                            .append("<td>").append(info.getUserId()).append("</td>")
-                            .append("<td><form method='POST' action='/cache/remove'>")
-                            .append("<input type='hidden' name='url' value='").append(info.getUrl()).append("'>")
-                            .append("<input type='hidden' name='userId' value='").append(info.getUserId()).append("'>")
-                            .append("<input type='submit' value='Supprimer' class='remove-btn'>")
-                            .append("</form></td>")
-                            .append("</tr>");
-                }
-
-                htmlResponse.append("</table></body></html>");
-
-                sendResponse("200 OK", "text/html; charset=UTF-8", htmlResponse.toString());
+    // Tick de la roue d'expiration : retirer les entrées arrivées à échéance
+    private static void expireEntries() {
+        for (CacheEntry entry : expirationWheel.advance(System.currentTimeMillis())) {
+            ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(entry.ref.userId);
+            if (userCache != null && removeEntry(entry.ref.userId, userCache, entry.ref.key, entry) && diskCache != null) {
+                diskCache.remove(entry.ref.userId, entry.ref.key.toString());
             }
-            else if (path.equals("/cache/remove") && method.equals("POST")) {
-                String urlToRemove = requestParams.get("url");
-                String userIdToRemove = requestParams.get("userId");
+        }
+    }
 
-                System.out.println("Tentative de suppression - URL: " + urlToRemove + ", UserID: " + userIdToRemove); // Debug
+    // Durée donnée par XAMPP si elle existe, sinon durée globale selon le type de page
+    static long expirationTime(long creationTime, boolean isDynamic, long ttl) {
+        if (ttl != CachePolicy.HEURISTIC_TTL) {
+            return creationTime + ttl;
+        }
+        return creationTime + (isDynamic ? DYNAMIC_PAGE_EXPIRATION : STATIC_PAGE_EXPIRATION);
+    }
 
-                if (urlToRemove != null && userIdToRemove != null) {
-                    ServeurWeb.removeFromCache(urlToRemove, userIdToRemove);
-                    // Redirection avec le protocole HTTP complet
-                    out.println("HTTP/1.1 302 Found");
-                    out.println("Location: /cache/list");
-                    out.println(); // Ligne vide importante pour la réponse HTTP
-                    out.flush(); // Assurer que la réponse est envoyée
-                } else {
-                    sendError("400 Bad Request", "URL ou UserID manquant");
-                }
+    // Horloge du cache, mise à jour à chaque tick de la roue d'expiration
+    static long currentTime() {
+        return expirationWheel != null ? expirationWheel.now() : System.currentTimeMillis();
+    }
+
+    // Après un changement de durée depuis la console, reprogrammer les entrées concernées
+    private static void rescheduleExpirations(boolean dynamic) {
+        USER_CACHES.forEach((userId, userCache) -> userCache.forEach((key, entry) -> {
+            if (entry.isDynamic == dynamic && userCache.get(key) == entry) {
+                expirationWheel.schedule(entry, entry.getRetentionTime());
             }
-        }
+        }));
     }
 
-    // fonctionnaliter de listing
-    public static class CacheInfo {
-        private final String url;
-        private final long expirationTime;
-        private final boolean isDynamic;
-        private final String userId;
+    public static void removeFromCache(String url, String userId) {
+        ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(userId);
+        if (userCache != null) {
+            removeVariants(userId, userCache, CacheKey.parse(url));
+            if (userCache.isEmpty()) {
+                USER_CACHES.remove(userId);
+            }
+        }
+        if (diskCache != null) {
+            diskCache.remove(userId, url);
+        }
+    }
 
-        public CacheInfo(String url, long expirationTime, boolean isDynamic, String userId) {
-            this.url = url;
-            this.expirationTime = expirationTime;
-            this.isDynamic = isDynamic;
-            this.userId = userId;
+    // Retirer url et, si XAMPP l'a déclarée avec Vary, toutes ses variantes ; vrai si une entrée a été retirée
+    private static boolean removeVariants(String userId, ConcurrentHashMap<CacheKey, CacheEntry> userCache, CacheKey url) {
+        boolean removedAny = false;
+        for (CacheEntry entry : CACHE_INDEX.withPath(url.path())) {
+            if (entry.ref.userId.equals(userId) && entry.ref.key.isVariantOf(url)) {
+                removedAny |= removeEntry(userId, userCache, entry.ref.key, entry);
+            }
         }
+        return removedAny;
+    }
 
-        public String getUrl() { return url; }
-        public long getExpirationTime() { return expirationTime; }
-        public boolean isDynamic() { return isDynamic; }
-        public String getUserId() { return userId; }
+    // Invalidation groupée depuis la console ou /cache/purge :
+    // "tag:produit-42" (tag), "/produits/*" (préfixe de chemin), "/produits/liste.php" (chemin, tous paramètres)
+    public static int invalidate(String target) {
+        if (target.startsWith("tag:")) {
+            return invalidateTag(target.substring(4));
+        }
+        if (target.endsWith("*")) {
+            return invalidatePrefix(target.substring(0, target.length() - 1));
+        }
+        return invalidatePath(target);
     }
 
-    public static List<CacheInfo> listCacheEntries() {
-        List<CacheInfo> cacheInfos = new ArrayList<>();
+    public static int invalidatePath(String path) {
+        String canonical = CacheIndex.pathOf(path);
+        return invalidateEntries(CACHE_INDEX.withPath(canonical),
+                diskCache != null ? diskCache.removePath(canonical) : Collections.emptyList());
+    }
 
-        USER_CACHES.forEach((userId, userCache) -> {
-            userCache.forEach((url, entry) -> {
-                long expirationTime = entry.isDynamic ?
-                        entry.creationTime + DYNAMIC_PAGE_EXPIRATION :
-                        entry.creationTime + STATIC_PAGE_EXPIRATION;
-
-                cacheInfos.add(new CacheInfo(
-                        url,
-                        expirationTime,
-                        entry.isDynamic,
-                        userId
-                ));
-            });
-        });
+    public static int invalidatePrefix(String prefix) {
+        return invalidateEntries(CACHE_INDEX.withPrefix(prefix),
+                diskCache != null ? diskCache.removePrefix(prefix) : Collections.emptyList());
+    }
 
-        return cacheInfos;
+    public static int invalidateTag(String tag) {
+        return invalidateEntries(CACHE_INDEX.withTag(tag),
+                diskCache != null ? diskCache.removeTag(tag) : Collections.emptyList());
     }
-    public static void removeFromCache(String url, String userId) {
-        ConcurrentHashMap<String, CacheEntry> userCache = USER_CACHES.get(userId);
-        if (userCache != null) {
-            userCache.remove(url);
-            if (userCache.isEmpty()) {
-                USER_CACHES.remove(userId);
+
+    // Retirer les entrées trouvées par l'index ; retourne le nombre de pages (utilisateur + clé) supprimées
+    private static int invalidateEntries(List<CacheEntry> entries, List<DiskCache.Record> diskRecords) {
+        Set<EntryRef> removed = new HashSet<>();
+        Set<String> owners = new HashSet<>();
+        for (CacheEntry entry : entries) {
+            ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(entry.ref.userId);
+            if (userCache != null && removeEntry(entry.ref.userId, userCache, entry.ref.key, entry)) {
+                removed.add(entry.ref);
+                owners.add(entry.ref.userId);
             }
         }
+        for (DiskCache.Record record : diskRecords) {
+            removed.add(new EntryRef(record.getOwner(), CacheKey.parse(record.getKey())));
+        }
+        removeEmptyCaches(owners);
+        invalidatedCount.addAndGet(removed.size());
+        return removed.size();
+    }
+
+    // Oublier les caches utilisateurs vidés par une suppression
+    private static void removeEmptyCaches(Set<String> owners) {
+        for (String owner : owners) {
+            USER_CACHES.computeIfPresent(owner, (id, cache) -> cache.isEmpty() ? null : cache);
+        }
     }
 
     // Nouvelle classe pour gérer les commandes
@@ -490,9 +2326,11 @@ public class ServeurWeb {
             System.out.println("set-dynamic-expiration <milliseconds> : Modifier l'expiration des pages dynamiques");
             System.out.println("set-static-expiration <milliseconds> : Modifier l'expiration des pages statiques");
             System.out.println("clear-all : Supprimer tous les caches");
-            System.out.println("list-cache : Afficher toutes les entrées en cache");
+            System.out.println("list-cache [préfixe] : Afficher les entrées en cache (toutes, ou celles d'un préfixe de chemin)");
             System.out.println("remove-cache <url> : Supprimer une entrée spécifique du cache pour tous les utilisateurs");
+            System.out.println("purge <chemin | préfixe* | tag:nom> : Invalider toutes les pages d'un chemin, d'un préfixe ou d'un tag");
             System.out.println("stats : Afficher les statistiques du cache");
+            System.out.println("log-level <DEBUG|INFO|WARN|ERROR|OFF> : Modifier le niveau du journal");
             System.out.println("help : Afficher l'aide");
             System.out.println("exit : Quitter le serveur");
             System.out.println("================================\n");
@@ -501,7 +2339,10 @@ public class ServeurWeb {
                 try {
                     System.out.print("> ");
                     String command = consoleReader.readLine();
-                    if (command == null || command.trim().isEmpty()) continue;
+                    if (command == null) {
+                        return; // entrée standard fermée (serveur lancé sans console)
+                    }
+                    if (command.trim().isEmpty()) continue;
 
                     processCommand(command.trim());
                 } catch (IOException e) {
@@ -546,18 +2387,28 @@ public class ServeurWeb {
                         break;
 
                     case "list-cache":
-                        List<ServeurWeb.CacheInfo> caches = ServeurWeb.listCacheEntries();
+                        // Page par page : la mémoire utilisée reste bornée quelle que soit la taille du cache
+                        String listPrefix = parts.length > 1 ? parts[1] : null;
                         System.out.println("\n=== Liste des entrées en cache ===");
-                        if (caches.isEmpty()) {
-                            System.out.println("Aucune entrée en cache.");
-                        } else {
-                            for (ServeurWeb.CacheInfo info : caches) {
-                                long timeRemaining = (info.getExpirationTime() - System.currentTimeMillis()) / 1000;
+                        String cursor = null;
+                        int listed = 0;
+                        do {
+                            ServeurWeb.CachePage page = ServeurWeb.listCacheEntries(new ServeurWeb.CacheQuery(
+                                    null, null, listPrefix, "url", cursor, ServeurWeb.CacheQuery.MAX_LIMIT));
+                            long now = System.currentTimeMillis();
+                            for (ServeurWeb.CacheInfo info : page.getEntries()) {
+                                long timeRemaining = (info.getExpirationTime() - now) / 1000;
                                 System.out.println("URL: " + info.getUrl() +
                                         " | Type: " + (info.isDynamic() ? "Dynamique" : "Statique") +
                                         " | Expiration: " + timeRemaining + "s" +
-                                        " | User ID: " + info.getUserId());
+                                        " | Taille: " + info.getSize() + " octets" +
+                                        " | User ID: " + (info.isShared() ? "Partagé (tous)" : info.getUserId()));
                             }
+                            listed += page.getEntries().size();
+                            cursor = page.getNextCursor();
+                        } while (cursor != null);
+                        if (listed == 0) {
+                            System.out.println("Aucune entrée en cache.");
                         }
                         System.out.println("==========================\n");
                         break;
@@ -572,6 +2423,24 @@ public class ServeurWeb {
                         System.out.println(entriesRemoved + " entrée(s) supprimée(s) pour l'URL: " + urlToRemove);
                         break;
 
+                    case "purge":
+                        if (parts.length < 2) {
+                            System.out.println("Usage: purge <chemin | préfixe* | tag:nom>");
+                            return;
+                        }
+                        int pagesInvalidated = ServeurWeb.invalidate(parts[1]);
+                        System.out.println(pagesInvalidated + " page(s) invalidée(s) pour : " + parts[1]);
+                        break;
+
+                    case "log-level":
+                        if (parts.length < 2) {
+                            System.out.println("Usage: log-level <DEBUG|INFO|WARN|ERROR|OFF> (actuel : " + Log.getLevel() + ")");
+                            return;
+                        }
+                        Log.setLevel(Log.Level.fromConfig(parts[1], Log.getLevel()));
+                        System.out.println("Niveau du journal : " + Log.getLevel());
+                        break;
+
                     case "help":
                         printHelp();
                         break;
@@ -591,17 +2460,133 @@ public class ServeurWeb {
         }
 
         private void printCacheStats() {
-            List<ServeurWeb.CacheInfo> cacheInfos = ServeurWeb.listCacheEntries();
-            int totalEntries = cacheInfos.size();
-            long dynamicEntries = cacheInfos.stream().filter(ServeurWeb.CacheInfo::isDynamic).count();
+            long totalEntries = ServeurWeb.getCacheEntryCount();
+            long dynamicEntries = ServeurWeb.getDynamicEntryCount();
             long staticEntries = totalEntries - dynamicEntries;
+            long sharedEntries = ServeurWeb.getSharedEntryCount();
 
             System.out.println("\n=== Statistiques du Cache ===");
             System.out.println("Nombre total d'entrées: " + totalEntries);
             System.out.println("Pages dynamiques: " + dynamicEntries);
-            System.out.println("Pages statiques: " + staticEntries);
+            System.out.println("Pages statiques: " + staticEntries + " (dont " + sharedEntries + " partagées entre utilisateurs)");
+
+            CacheMemory memory = ServeurWeb.getCacheMemory();
+            if (memory != null) {
+                System.out.println("Mémoire utilisée: " + memory.getUsedBytes() + " / " + memory.getMaxBytes() +
+                        " octets (" + memory.getMode() + ")" +
+                        (memory.getMode() == CacheMemory.Mode.OFF_HEAP ? " | Slabs alloués: " + memory.getSlabBytes() + " octets" : "") +
+                        " | Entrées refusées (budget): " + memory.getRejectedCount());
+            }
+
+            EvictionPolicy<?> policy = ServeurWeb.getEvictionPolicy();
+            if (policy != null) {
+                System.out.println("Politique d'éviction: " + policy.getName() +
+                        " | Hits: " + policy.getHits() +
+                        " | Misses: " + policy.getMisses() +
+                        String.format(" | Taux de hit: %.1f%%", policy.getHitRatio() * 100) +
+                        " | Évictions: " + policy.getEvictions() +
+                        " | Admissions refusées: " + policy.getRejections());
+            }
             System.out.println("Expiration dynamique: " + ServeurWeb.getDynamicPageExpiration() + "ms");
             System.out.println("Expiration statique: " + ServeurWeb.getStaticPageExpiration() + "ms");
+            System.out.println("Revalidations (304 de XAMPP): " + ServeurWeb.getRevalidatedCount() +
+                    " | Servies expirées pendant rafraîchissement: " + ServeurWeb.getStaleServedCount() +
+                    " | Servies expirées sur erreur de XAMPP: " + ServeurWeb.getStaleOnErrorCount());
+            System.out.println("Compression gzip: " + (ServeurWeb.isCompressionEnabled() ? "active" : "inactive") +
+                    " | Pages compressées: " + ServeurWeb.getCompressedCount() +
+                    " | Octets économisés: " + ServeurWeb.getCompressionSavedBytes() +
+                    " | Envois gzip: " + ServeurWeb.getGzipServedCount() +
+                    " | Décompressions (navigateur sans gzip): " + ServeurWeb.getDecompressedCount());
+            System.out.println("Index d'invalidation: " + ServeurWeb.getIndexedPathCount() + " chemin(s), " +
+                    ServeurWeb.getIndexedTagCount() + " tag(s) | Pages invalidées: " + ServeurWeb.getInvalidatedCount());
+            DiskCache disk = ServeurWeb.getDiskCache();
+            if (disk != null) {
+                System.out.println("Cache disque: " + disk.getEntryCount() + " entrées, " + disk.getLiveBytes() +
+                        " octets vivants, " + disk.getSegmentCount() + "/" + disk.getMaxSegments() + " segments" +
+                        " | Lectures: " + disk.getReadCount() +
+                        " | Remontées en mémoire: " + disk.getPromotionCount() +
+                        " | Compactions: " + disk.getCompactionCount() +
+                        " | Segments recyclés: " + disk.getRecycledCount() +
+                        " | Écritures en attente: " + disk.getPendingWriteCount() +
+                        " | Écritures abandonnées: " + disk.getDroppedWriteCount());
+            }
+            Prefetcher prefetch = ServeurWeb.getPrefetcher();
+            if (prefetch != null) {
+                System.out.println("Préchargement: profondeur " + prefetch.getMaxDepth() +
+                        " | Pages chargées: " + prefetch.getFetchedCount() +
+                        " | Déjà en cache: " + prefetch.getAlreadyCachedCount() +
+                        " | En attente: " + prefetch.getQueueSize() +
+                        " | Abandonnées (file pleine): " + prefetch.getDroppedCount() +
+                        " | Échecs: " + prefetch.getFailedCount() +
+                        " | Pauses (XAMPP à " + prefetch.getAverageLatencyMillis() + "ms en moyenne): " +
+                        prefetch.getBackoffCount());
+            }
+            SessionStore sessions = ServeurWeb.getSessionStore();
+            if (sessions != null) {
+                System.out.println("Sessions PHP: " + sessions.getSize() + " / " + sessions.getMaxSessions() +
+                        " | Créées: " + sessions.getCreatedCount() +
+                        " | Expirées (inactives " + sessions.getIdleTimeout() + "ms): " + sessions.getExpiredCount() +
+                        " | Évincées (limite): " + sessions.getEvictedCount());
+            }
+            ExpirationWheel<?> wheel = ServeurWeb.getExpirationWheel();
+            if (wheel != null) {
+                System.out.println("Roue d'expiration: " + wheel.getScheduledCount() + " échéance(s) programmée(s)" +
+                        " | Entrées expirées: " + wheel.getExpiredCount());
+            }
+
+            UpstreamClient upstream = ServeurWeb.getUpstreamClient();
+            if (upstream != null) {
+                System.out.println("Pool XAMPP: " + upstream.getLeasedConnections() + " connexion(s) utilisée(s), " +
+                        upstream.getIdleConnections() + " libre(s)" +
+                        " | Réutilisations: " + upstream.getPoolHits() +
+                        " | Nouvelles connexions: " + upstream.getPoolMisses() +
+                        " | Attentes: " + upstream.getPoolWaits() +
+                        " | Évictions: " + upstream.getPoolEvictions());
+            }
+
+            BackendPool pool = ServeurWeb.getBackendPool();
+            if (pool != null) {
+                System.out.println("Serveurs XAMPP (" + pool.getPolicy() + "): " + pool.getAvailableCount() + "/" +
+                        pool.size() + " disponible(s) | Sans serveur disponible: " + pool.getPanicCount());
+                for (BackendPool.Backend backend : pool.getBackends()) {
+                    String state = !backend.isHealthy() ? "hors service" : backend.isEjected() ? "écarté" : "disponible";
+                    System.out.println("  " + backend.getUrl() + " : " + state +
+                            " | En cours: " + backend.getOutstanding() +
+                            " | Requêtes: " + backend.getRequestCount() +
+                            " | Erreurs: " + backend.getFailureCount() +
+                            " | Éjections: " + backend.getEjectionCount() +
+                            " | " + Metrics.quantiles(backend.getLatency()));
+                }
+            }
+
+            RequestCoalescer<String, ServeurWeb.UpstreamResult> coalescer = ServeurWeb.getRequestCoalescer();
+            System.out.println("Regroupement des requêtes: " + (ServeurWeb.isRequestCoalescing() ? "actif" : "inactif") +
+                    " | Appels XAMPP menés: " + coalescer.getLeaderCount() +
+                    " | Requêtes regroupées: " + coalescer.getCoalescedCount() +
+                    " | Délais dépassés: " + coalescer.getTimeoutCount() +
+                    " | Échecs de la meneuse: " + coalescer.getFailureCount() +
+                    " | En cours: " + coalescer.getInFlightCount());
+            System.out.println("Latences: requêtes " + Metrics.quantiles(Metrics.REQUEST_DURATION) +
+                    " | recherche cache " + Metrics.quantiles(Metrics.CACHE_LOOKUP_DURATION) +
+                    " | XAMPP " + Metrics.quantiles(Metrics.UPSTREAM_DURATION));
+            System.out.println("Connexions actives: " + Metrics.ACTIVE_CONNECTIONS.get() +
+                    " | Octets reçus: " + Metrics.BYTES_IN.sum() + " | Octets envoyés: " + Metrics.BYTES_OUT.sum());
+            AsyncLogWriter logWriter = Log.getWriter();
+            if (logWriter != null) {
+                System.out.println("Journal: niveau " + Log.getLevel() +
+                        " | Anneau: " + logWriter.getPendingCount() + " / " + logWriter.getCapacity() +
+                        (logWriter.isBlockWhenFull() ? " (bloquant)" : " (abandon si plein)") +
+                        " | Écrits: " + logWriter.getWrittenCount() +
+                        " | Abandonnés: " + logWriter.getDroppedCount());
+            }
+
+            ConnectionExecutor executor = ServeurWeb.getConnectionExecutor();
+            if (executor != null) {
+                System.out.println("Exécuteur: " + executor.getMode() +
+                        " | Gestionnaires actifs: " + executor.getActiveHandlers() +
+                        " | File d'attente: " + executor.getQueueDepth() +
+                        " | Connexions refusées (503): " + executor.getRejectedCount());
+            }
             System.out.println("==========================\n");
         }
 
@@ -612,9 +2597,11 @@ public class ServeurWeb {
             System.out.println("set-dynamic-expiration <milliseconds> : Définir le temps d'expiration des pages dynamiques");
             System.out.println("set-static-expiration <milliseconds> : Définir le temps d'expiration des pages statiques");
             System.out.println("clear-all : Supprimer tous les caches");
-            System.out.println("list-cache : Afficher toutes les entrées en cache");
+            System.out.println("list-cache [préfixe] : Afficher les entrées en cache (toutes, ou celles d'un préfixe de chemin)");
             System.out.println("remove-cache <url> : Supprimer une entrée spécifique du cache pour tous les utilisateurs");
+            System.out.println("purge <chemin | préfixe* | tag:nom> : Invalider toutes les pages d'un chemin, d'un préfixe ou d'un tag");
             System.out.println("stats : Afficher les statistiques actuelles du cache");
+            System.out.println("log-level <DEBUG|INFO|WARN|ERROR|OFF> : Modifier le niveau des messages du journal");
             System.out.println("help : Afficher ce message d'aide");
             System.out.println("exit : Arrêter le serveur");
             System.out.println("=======================\n");
@@ -622,30 +2609,39 @@ public class ServeurWeb {
     }
 
     public static int removeFromCacheByUrl(String url) {
-        int count = 0;
-        for (ConcurrentHashMap<String, CacheEntry> userCache : USER_CACHES.values()) {
-            if (userCache.remove(url) != null) {
-                count++;
+        CacheKey key = CacheKey.parse(url);
+        Set<String> owners = new HashSet<>();
+        for (CacheEntry entry : CACHE_INDEX.withPath(key.path())) {
+            ConcurrentHashMap<CacheKey, CacheEntry> userCache = USER_CACHES.get(entry.ref.userId);
+            if (entry.ref.key.isVariantOf(key) && userCache != null &&
+                    removeEntry(entry.ref.userId, userCache, entry.ref.key, entry)) {
+                owners.add(entry.ref.userId);
             }
         }
 
-        // Nettoyer les caches utilisateurs vides
-        USER_CACHES.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+        // Nettoyer les caches utilisateurs vidés
+        removeEmptyCaches(owners);
 
-        return count;
+        if (diskCache != null) {
+            owners.addAll(diskCache.removeKey(url));
+        }
+        return owners.size();
     }
 
     // Ajoutez ces variables et méthodes à la classe ServeurWeb
     private static volatile boolean isRunning = true;
     private static ServerSocket serverSocket;
+    private static NioServeur nioServeur;
 
     // Getters et setters pour les expirations
     public static void setDynamicPageExpiration(long expiration) {
         DYNAMIC_PAGE_EXPIRATION = expiration;
+        rescheduleExpirations(true);
     }
 
     public static void setStaticPageExpiration(long expiration) {
         STATIC_PAGE_EXPIRATION = expiration;
+        rescheduleExpirations(false);
     }
 
     public static long getDynamicPageExpiration() {
@@ -656,9 +2652,116 @@ public class ServeurWeb {
         return STATIC_PAGE_EXPIRATION;
     }
 
+    public static ConnectionExecutor getConnectionExecutor() {
+        return connectionExecutor;
+    }
+
+    public static UpstreamClient getUpstreamClient() {
+        return upstreamClient;
+    }
+
+    public static BackendPool getBackendPool() {
+        return backendPool;
+    }
+
+    public static CacheMemory getCacheMemory() {
+        return cacheMemory;
+    }
+
+    public static EvictionPolicy<?> getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    public static ExpirationWheel<?> getExpirationWheel() {
+        return expirationWheel;
+    }
+
+    public static long getRevalidatedCount() {
+        return revalidatedCount.get();
+    }
+
+    public static long getStaleServedCount() {
+        return staleServedCount.get();
+    }
+
+    public static long getStaleOnErrorCount() {
+        return staleOnErrorCount.get();
+    }
+
+    public static boolean isCompressionEnabled() {
+        return COMPRESSION_ENABLED;
+    }
+
+    public static long getCompressedCount() {
+        return compressedCount.get();
+    }
+
+    public static long getCompressionSavedBytes() {
+        return compressionSavedBytes.get();
+    }
+
+    public static long getGzipServedCount() {
+        return gzipServedCount.get();
+    }
+
+    public static long getDecompressedCount() {
+        return decompressedCount.get();
+    }
+
+    public static long getCacheEntryCount() {
+        return cacheEntryCount.get();
+    }
+
+    public static long getDynamicEntryCount() {
+        return dynamicEntryCount.get();
+    }
+
+    public static long getSharedEntryCount() {
+        return sharedEntryCount.get();
+    }
+
+    public static int getIndexedPathCount() {
+        return CACHE_INDEX.getPathCount();
+    }
+
+    public static int getIndexedTagCount() {
+        return CACHE_INDEX.getTagCount();
+    }
+
+    public static long getInvalidatedCount() {
+        return invalidatedCount.get();
+    }
+
+    public static DiskCache getDiskCache() {
+        return diskCache;
+    }
+
+    public static Prefetcher getPrefetcher() {
+        return prefetcher;
+    }
+
+    public static SessionStore getSessionStore() {
+        return sessionStore;
+    }
+
+    public static RequestCoalescer<String, UpstreamResult> getRequestCoalescer() {
+        return requestCoalescer;
+    }
+
+    public static boolean isRequestCoalescing() {
+        return REQUEST_COALESCING;
+    }
+
     // Méthode pour vider tous les caches
     public static void clearAllCaches() {
-        USER_CACHES.clear();
+        USER_CACHES.forEach((userId, userCache) -> {
+            userCache.forEach((key, entry) -> removeEntry(userId, userCache, key, entry));
+        });
+        USER_CACHES.entrySet().removeIf(entry -> entry.getValue().isEmpty());
+        VARY_HEADERS.clear();
+        if (diskCache != null) {
+            diskCache.clear();
+        }
     }
 
     // Méthode pour arrêter le serveur
@@ -668,10 +2771,29 @@ public class ServeurWeb {
             if (serverSocket != null && !serverSocket.isClosed()) {
                 serverSocket.close();
             }
+            if (nioServeur != null) {
+                nioServeur.stop();
+            }
             cacheCleanupService.shutdown();
+            if (connectionExecutor != null) {
+                connectionExecutor.shutdown();
+            }
+            if (prefetcher != null) {
+                prefetcher.shutdown();
+            }
+            if (backendPool != null) {
+                backendPool.shutdown();
+            }
+            if (upstreamClient != null) {
+                upstreamClient.close();
+            }
+            if (diskCache != null) {
+                diskCache.close();
+            }
         } catch (IOException e) {
-            e.printStackTrace();
+            Log.error("Erreur pendant l'arrêt du serveur", e);
         }
+        Log.shutdown();
     }
 
 }
\ No newline at end of file
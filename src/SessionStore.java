@@ -0,0 +1,239 @@
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Sessions PHP vues par le proxy : identifiants posés par XAMPP (Set-Cookie) et renvoyés
+// par les navigateurs (Cookie). Une session inutilisée pendant idleTimeout est oubliée ;
+// au-delà de maxSessions, la plus ancienne non utilisée récemment est évincée (seconde chance).
+public class SessionStore {
+    private static final int MAX_ID_LENGTH = 128;
+
+    public static final class Session {
+        private final String id;
+        private final long creationTime;
+        private volatile long lastAccess;
+        private volatile boolean referenced; // utilisée depuis le dernier passage de l'éviction
+        private volatile String backend; // serveur XAMPP qui détient la session (répartition collante)
+
+        private Session(String id, long now) {
+            this.id = id;
+            this.creationTime = now;
+            this.lastAccess = now;
+        }
+
+        public String getId() { return id; }
+        public long getCreationTime() { return creationTime; }
+        public long getLastAccess() { return lastAccess; }
+    }
+
+    private final String cookieName;
+    private final long idleTimeout;
+    private final int maxSessions;
+    private final ConcurrentHashMap<String, Session> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Session> order = new ConcurrentLinkedQueue<>(); // ordre d'arrivée
+    private final AtomicInteger orderSize = new AtomicInteger(); // order.size() parcourt toute la file
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong expiredCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+
+    public SessionStore(String cookieName, long idleTimeout, int maxSessions) {
+        this.cookieName = cookieName;
+        this.idleTimeout = idleTimeout;
+        this.maxSessions = maxSessions;
+    }
+
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    // Session id utilisée maintenant ; retourne vrai si elle était déjà connue
+    public boolean touch(String id, long now) {
+        Session session = sessions.get(id);
+        if (session != null) {
+            session.lastAccess = now;
+            session.referenced = true;
+            return true;
+        }
+        Session created = new Session(id, now);
+        if (sessions.putIfAbsent(id, created) != null) {
+            return true;
+        }
+        enqueue(created);
+        createdCount.incrementAndGet();
+        if (sessions.size() > maxSessions) {
+            evict();
+        }
+        return false;
+    }
+
+    // Serveur XAMPP attaché à la session, ou null
+    public String getBackend(String id) {
+        Session session = id != null ? sessions.get(id) : null;
+        return session != null ? session.backend : null;
+    }
+
+    public void assignBackend(String id, String backend) {
+        Session session = sessions.get(id);
+        if (session != null) {
+            session.backend = backend;
+        }
+    }
+
+    public boolean remove(String id) {
+        return sessions.remove(id) != null;
+    }
+
+    // Oublier les sessions inutilisées depuis idleTimeout ; retourne le nombre de sessions retirées
+    public int expireIdle(long now) {
+        int removed = 0;
+        for (int i = orderSize.get(); i > 0; i--) {
+            Session session = dequeue();
+            if (session == null) {
+                break;
+            }
+            if (sessions.get(session.id) != session) {
+                continue; // déjà retirée
+            }
+            if (now - session.lastAccess >= idleTimeout) {
+                if (sessions.remove(session.id, session)) {
+                    expiredCount.incrementAndGet();
+                    removed++;
+                }
+            } else {
+                enqueue(session);
+            }
+        }
+        return removed;
+    }
+
+    // Seconde chance : une session utilisée depuis le dernier passage repart en fin de file
+    private void evict() {
+        for (int attempts = 2 * orderSize.get(); attempts > 0 && sessions.size() > maxSessions; attempts--) {
+            Session session = dequeue();
+            if (session == null) {
+                return;
+            }
+            if (sessions.get(session.id) != session) {
+                continue;
+            }
+            if (session.referenced) {
+                session.referenced = false;
+                enqueue(session);
+            } else if (sessions.remove(session.id, session)) {
+                evictedCount.incrementAndGet();
+            }
+        }
+    }
+
+    private void enqueue(Session session) {
+        order.add(session);
+        orderSize.incrementAndGet();
+    }
+
+    private Session dequeue() {
+        Session session = order.poll();
+        if (session != null) {
+            orderSize.decrementAndGet();
+        }
+        return session;
+    }
+
+    // Valeur du cookie de session dans un en-tête Cookie ("a=1; PHPSESSID=abc; b=2"), ou null
+    public String fromCookieHeader(String header) {
+        if (header == null) {
+            return null;
+        }
+        int length = header.length();
+        int start = 0;
+        while (start < length) {
+            int end = header.indexOf(';', start);
+            if (end < 0) {
+                end = length;
+            }
+            int equals = header.indexOf('=', start);
+            if (equals > start && equals < end && nameMatches(header, start, equals)) {
+                return validId(cookieValue(header, equals + 1, end));
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    // Cookie de session posé par un en-tête Set-Cookie ("PHPSESSID=abc; path=/; HttpOnly"), ou null
+    public String fromSetCookie(String header) {
+        int end = header.indexOf(';');
+        if (end < 0) {
+            end = header.length();
+        }
+        int equals = header.indexOf('=');
+        if (equals <= 0 || equals > end || !nameMatches(header, 0, equals)) {
+            return null;
+        }
+        return validId(cookieValue(header, equals + 1, end));
+    }
+
+    // Vrai si le Set-Cookie supprime le cookie (session_destroy : valeur "deleted" ou Max-Age <= 0)
+    public static boolean isDeletion(String header) {
+        String[] parts = header.split(";");
+        if (parts[0].trim().endsWith("=deleted")) {
+            return true;
+        }
+        for (int i = 1; i < parts.length; i++) {
+            String attribute = parts[i].trim();
+            if (attribute.regionMatches(true, 0, "max-age=", 0, 8)) {
+                try {
+                    return Long.parseLong(attribute.substring(8).trim()) <= 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Identifiant de session PHP : lettres, chiffres, ',' et '-' ; sinon ignoré (pas d'entrée créée)
+    private static String validId(String id) {
+        if (id == null || id.length() > MAX_ID_LENGTH) {
+            return null;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == ',' || c == '-')) {
+                return null;
+            }
+        }
+        return id;
+    }
+
+    private boolean nameMatches(String header, int start, int end) {
+        while (start < end && header.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && header.charAt(end - 1) == ' ') {
+            end--;
+        }
+        return end - start == cookieName.length() && header.regionMatches(start, cookieName, 0, cookieName.length());
+    }
+
+    private static String cookieValue(String header, int start, int end) {
+        while (start < end && header.charAt(start) == ' ') {
+            start++;
+        }
+        while (end > start && header.charAt(end - 1) == ' ') {
+            end--;
+        }
+        if (end - start >= 2 && header.charAt(start) == '"' && header.charAt(end - 1) == '"') {
+            start++;
+            end--;
+        }
+        return start < end ? header.substring(start, end) : null;
+    }
+
+    public int getSize() { return sessions.size(); }
+    public int getMaxSessions() { return maxSessions; }
+    public long getIdleTimeout() { return idleTimeout; }
+    public long getCreatedCount() { return createdCount.get(); }
+    public long getExpiredCount() { return expiredCount.get(); }
+    public long getEvictedCount() { return evictedCount.get(); }
+}
@@ -0,0 +1,484 @@
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Client HTTP/1.1 vers XAMPP avec un pool borné de connexions persistantes par hôte.
+// Évite l'établissement d'une connexion TCP à chaque échec du cache.
+public class UpstreamClient {
+    private static final int MAX_DRAIN_BYTES = 64 * 1024; // reste de corps lu à la fermeture pour garder la connexion
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int maxConnectionsPerHost;
+    private final long maxIdleTime;
+    private final long acquireTimeout;
+    private final Map<String, HostPool> pools = new ConcurrentHashMap<>();
+
+    // Métriques du pool
+    private final AtomicLong poolHits = new AtomicLong(); // connexion réutilisée
+    private final AtomicLong poolMisses = new AtomicLong(); // nouvelle connexion ouverte
+    private final AtomicLong poolWaits = new AtomicLong(); // attente d'une connexion libre
+    private final AtomicLong poolEvictions = new AtomicLong(); // connexion inactive ou morte fermée
+
+    public UpstreamClient(int connectTimeout, int readTimeout, int maxConnectionsPerHost,
+                          long maxIdleTime, long acquireTimeout) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.maxIdleTime = maxIdleTime;
+        this.acquireTimeout = acquireTimeout;
+    }
+
+    // Envoyer une requête ; la réponse doit être fermée pour rendre la connexion au pool
+    public Response execute(String baseUrl, String method, String target, Map<String, String> headers,
+                            byte[] body) throws IOException {
+        URL url = new URL(baseUrl);
+        String host = url.getHost();
+        int port = url.getPort() != -1 ? url.getPort() : url.getDefaultPort();
+        HostPool pool = pools.computeIfAbsent(host + ":" + port, key -> new HostPool(host, port));
+
+        pool.acquirePermit();
+        boolean idempotent = "GET".equals(method) || "HEAD".equals(method);
+        try {
+            PooledConnection connection = pool.borrow();
+            try {
+                return send(pool, connection, method, target, headers, body);
+            } catch (IOException | RuntimeException e) {
+                connection.closeQuietly();
+                // Une connexion réutilisée a pu être fermée par Apache : on réessaie une fois sur une neuve
+                if (!(e instanceof IOException) || !connection.reused || !idempotent) {
+                    throw e;
+                }
+                poolEvictions.incrementAndGet();
+                PooledConnection fresh = pool.open();
+                try {
+                    return send(pool, fresh, method, target, headers, body);
+                } catch (IOException | RuntimeException retryError) {
+                    fresh.closeQuietly();
+                    throw retryError;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            pool.permits.release();
+            throw e;
+        }
+    }
+
+    private Response send(HostPool pool, PooledConnection connection, String method, String target,
+                          Map<String, String> headers, byte[] body) throws IOException {
+        StringBuilder head = new StringBuilder();
+        head.append(method).append(' ').append(target).append(" HTTP/1.1\r\n");
+        head.append("Host: ").append(pool.hostHeader).append("\r\n");
+        head.append("Connection: keep-alive\r\n");
+        for (Map.Entry<String, String> header : headers.entrySet()) {
+            head.append(header.getKey()).append(": ").append(header.getValue()).append("\r\n");
+        }
+        if (body != null && body.length > 0) {
+            head.append("Content-Length: ").append(body.length).append("\r\n");
+        }
+        head.append("\r\n");
+
+        connection.out.write(head.toString().getBytes(StandardCharsets.ISO_8859_1));
+        if (body != null && body.length > 0) {
+            connection.out.write(body);
+        }
+        connection.out.flush();
+
+        // Ligne de statut : HTTP/1.1 200 OK
+        String statusLine = readLine(connection.in);
+        if (statusLine == null) {
+            throw new EOFException("Connexion fermée par le serveur amont");
+        }
+        String[] statusParts = statusLine.split(" ", 3);
+        if (statusParts.length < 2) {
+            throw new IOException("Ligne de statut invalide : " + statusLine);
+        }
+        int status;
+        try {
+            status = Integer.parseInt(statusParts[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Ligne de statut invalide : " + statusLine);
+        }
+        String reason = statusParts.length > 2 ? statusParts[2] : "";
+
+        Map<String, List<String>> responseHeaders = new LinkedHashMap<>();
+        String line;
+        while ((line = readLine(connection.in)) != null && !line.isEmpty()) {
+            int colon = line.indexOf(':');
+            if (colon > 0) {
+                responseHeaders.computeIfAbsent(line.substring(0, colon).trim().toLowerCase(), k -> new ArrayList<>())
+                        .add(line.substring(colon + 1).trim());
+            }
+        }
+
+        List<String> contentLength = responseHeaders.get("content-length");
+        if (contentLength != null && !isValidLength(contentLength.get(0))) {
+            throw new IOException("Content-Length invalide : " + contentLength.get(0));
+        }
+        return new Response(pool, connection, method, status, reason, responseHeaders);
+    }
+
+    // Content-Length : entier décimal positif
+    static boolean isValidLength(String value) {
+        String length = value.trim();
+        if (length.isEmpty() || length.length() > 18) {
+            return false;
+        }
+        for (int i = 0; i < length.length(); i++) {
+            if (length.charAt(i) < '0' || length.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Lecture d'une ligne terminée par CRLF (ou LF) directement en octets
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+        int b;
+        while ((b = in.read()) != -1) {
+            if (b == '\n') {
+                byte[] bytes = line.toByteArray();
+                int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+                return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+            }
+            line.write(b);
+        }
+        return line.size() > 0 ? line.toString(StandardCharsets.ISO_8859_1) : null;
+    }
+
+    // Connexions d'un hôte : pile de connexions libres + sémaphore pour la limite par hôte
+    private class HostPool {
+        private final String host;
+        private final int port;
+        private final String hostHeader;
+        private final Semaphore permits = new Semaphore(maxConnectionsPerHost, true);
+        private final Deque<PooledConnection> idle = new ArrayDeque<>();
+
+        HostPool(String host, int port) {
+            this.host = host;
+            this.port = port;
+            this.hostHeader = port == 80 ? host : host + ":" + port;
+        }
+
+        void acquirePermit() throws IOException {
+            if (permits.tryAcquire()) {
+                return;
+            }
+            poolWaits.incrementAndGet();
+            try {
+                if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+                    throw new IOException("Aucune connexion libre vers " + hostHeader + " après " + acquireTimeout + "ms");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Attente d'une connexion interrompue");
+            }
+        }
+
+        // Connexion libre la plus récente, sinon nouvelle connexion
+        PooledConnection borrow() throws IOException {
+            long now = System.currentTimeMillis();
+            synchronized (idle) {
+                PooledConnection connection;
+                while ((connection = idle.pollFirst()) != null) {
+                    if (now - connection.lastUsed > maxIdleTime || connection.socket.isClosed()) {
+                        connection.closeQuietly();
+                        poolEvictions.incrementAndGet();
+                        continue;
+                    }
+                    connection.reused = true;
+                    poolHits.incrementAndGet();
+                    return connection;
+                }
+            }
+            return open();
+        }
+
+        PooledConnection open() throws IOException {
+            poolMisses.incrementAndGet();
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), connectTimeout);
+                socket.setSoTimeout(readTimeout);
+                socket.setTcpNoDelay(true);
+                return new PooledConnection(socket);
+            } catch (IOException e) {
+                socket.close();
+                throw e;
+            }
+        }
+
+        void release(PooledConnection connection, boolean reusable) {
+            if (reusable) {
+                connection.lastUsed = System.currentTimeMillis();
+                synchronized (idle) {
+                    idle.addFirst(connection);
+                }
+            } else {
+                connection.closeQuietly();
+            }
+            permits.release();
+        }
+
+        int idleCount() {
+            synchronized (idle) {
+                return idle.size();
+            }
+        }
+    }
+
+    private static class PooledConnection {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private long lastUsed = System.currentTimeMillis();
+        private boolean reused;
+
+        PooledConnection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream());
+            this.out = new BufferedOutputStream(socket.getOutputStream());
+        }
+
+        void closeQuietly() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // rien à faire
+            }
+        }
+    }
+
+    // Réponse du serveur amont. Le corps est délimité par Content-Length, par le codage
+    // chunked ou par la fermeture de la connexion (dans ce cas elle n'est pas réutilisée).
+    public static class Response implements Closeable {
+        private final HostPool pool;
+        private final PooledConnection connection;
+        private final int status;
+        private final String reason;
+        private final Map<String, List<String>> headers;
+        private final InputStream body;
+        private final boolean reusable;
+        private boolean closed;
+
+        private Response(HostPool pool, PooledConnection connection, String method, int status, String reason,
+                         Map<String, List<String>> headers) {
+            this.pool = pool;
+            this.connection = connection;
+            this.status = status;
+            this.reason = reason;
+            this.headers = headers;
+
+            String connectionHeader = header("connection");
+            boolean serverKeepsAlive = connectionHeader == null || !connectionHeader.equalsIgnoreCase("close");
+            String contentLength = header("content-length");
+            String transferEncoding = header("transfer-encoding");
+
+            if ("HEAD".equals(method) || status == 204 || status == 304 || status / 100 == 1) {
+                this.body = new ByteArrayInputStream(new byte[0]);
+                this.reusable = serverKeepsAlive;
+            } else if (transferEncoding != null && transferEncoding.toLowerCase().contains("chunked")) {
+                this.body = new ChunkedInputStream(connection.in);
+                this.reusable = serverKeepsAlive;
+            } else if (contentLength != null) {
+                this.body = new BoundedInputStream(connection.in, Long.parseLong(contentLength.trim()));
+                this.reusable = serverKeepsAlive;
+            } else {
+                this.body = connection.in; // corps jusqu'à la fermeture
+                this.reusable = false;
+            }
+        }
+
+        public int getStatus() { return status; }
+        public String getReason() { return reason; }
+        public Map<String, List<String>> getHeaders() { return headers; }
+        public InputStream getBody() { return body; }
+
+        // Première valeur d'un en-tête (nom en minuscules)
+        public String header(String name) {
+            List<String> values = headers.get(name);
+            return values == null || values.isEmpty() ? null : values.get(0);
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // Consommer le reste du corps pour pouvoir réutiliser la connexion, au plus MAX_DRAIN_BYTES :
+            // au-delà (gros téléchargement abandonné par le client), fermer coûte moins que tout lire
+            boolean reuse = reusable && !(body instanceof BoundedInputStream &&
+                    ((BoundedInputStream) body).remaining > MAX_DRAIN_BYTES);
+            if (reuse) {
+                try {
+                    byte[] skip = new byte[4096];
+                    long drained = 0;
+                    int count;
+                    while ((count = body.read(skip)) != -1) {
+                        drained += count;
+                        if (drained > MAX_DRAIN_BYTES) {
+                            reuse = false;
+                            break;
+                        }
+                    }
+                } catch (IOException e) {
+                    reuse = false;
+                }
+            }
+            pool.release(connection, reuse);
+        }
+    }
+
+    private static class BoundedInputStream extends InputStream {
+        private final InputStream in;
+        private long remaining;
+
+        BoundedInputStream(InputStream in, long length) {
+            this.in = in;
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = in.read();
+            if (b == -1) {
+                throw new EOFException("Corps de réponse tronqué");
+            }
+            remaining--;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count == -1) {
+                throw new EOFException("Corps de réponse tronqué");
+            }
+            remaining -= count;
+            return count;
+        }
+    }
+
+    private static class ChunkedInputStream extends InputStream {
+        private final InputStream in;
+        private long chunkRemaining;
+        private boolean finished;
+
+        ChunkedInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (finished) {
+                return -1;
+            }
+            if (chunkRemaining == 0) {
+                String sizeLine = readLine(in);
+                if (sizeLine == null) {
+                    throw new EOFException("Fin de flux dans un corps chunked");
+                }
+                int extension = sizeLine.indexOf(';');
+                String size = (extension >= 0 ? sizeLine.substring(0, extension) : sizeLine).trim();
+                try {
+                    chunkRemaining = Long.parseLong(size, 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Taille de bloc invalide : " + sizeLine);
+                }
+                if (chunkRemaining < 0) {
+                    throw new IOException("Taille de bloc invalide : " + sizeLine);
+                }
+                if (chunkRemaining == 0) {
+                    // Dernier bloc : ignorer les éventuels trailers
+                    String trailer;
+                    while ((trailer = readLine(in)) != null && !trailer.isEmpty()) {
+                        // ignorer
+                    }
+                    finished = true;
+                    return -1;
+                }
+            }
+            int count = in.read(buffer, offset, (int) Math.min(length, chunkRemaining));
+            if (count == -1) {
+                throw new EOFException("Bloc chunked tronqué");
+            }
+            chunkRemaining -= count;
+            if (chunkRemaining == 0) {
+                readLine(in); // CRLF de fin de bloc
+            }
+            return count;
+        }
+    }
+
+    public long getPoolHits() { return poolHits.get(); }
+    public long getPoolMisses() { return poolMisses.get(); }
+    public long getPoolWaits() { return poolWaits.get(); }
+    public long getPoolEvictions() { return poolEvictions.get(); }
+
+    public int getIdleConnections() {
+        int total = 0;
+        for (HostPool pool : pools.values()) {
+            total += pool.idleCount();
+        }
+        return total;
+    }
+
+    public int getLeasedConnections() {
+        int total = 0;
+        for (HostPool pool : pools.values()) {
+            total += maxConnectionsPerHost - pool.permits.availablePermits();
+        }
+        return total;
+    }
+
+    // Fermer les connexions restées libres plus de maxIdleTime
+    public void evictIdleConnections() {
+        long now = System.currentTimeMillis();
+        for (HostPool pool : pools.values()) {
+            synchronized (pool.idle) {
+                Iterator<PooledConnection> iterator = pool.idle.iterator();
+                while (iterator.hasNext()) {
+                    PooledConnection connection = iterator.next();
+                    if (now - connection.lastUsed > maxIdleTime) {
+                        iterator.remove();
+                        connection.closeQuietly();
+                        poolEvictions.incrementAndGet();
+                    }
+                }
+            }
+        }
+    }
+
+    // Fermer les connexions libres (arrêt du serveur)
+    public void close() {
+        for (HostPool pool : pools.values()) {
+            synchronized (pool.idle) {
+                for (PooledConnection connection : pool.idle) {
+                    connection.closeQuietly();
+                }
+                pool.idle.clear();
+            }
+        }
+    }
+}